@@ -0,0 +1,9 @@
+// Ackermann's function: deep, non-tail recursion, a frame per call.
+
+fun ack(m, n) {
+    daca (m == 0) returneaza n + 1;
+    daca (n == 0) returneaza ack(m - 1, 1);
+    returneaza ack(m - 1, ack(m, n - 1));
+}
+
+afiseaza ack(2, 2000);
@@ -0,0 +1,15 @@
+// Integer and real arithmetic at the top level, so every accumulator is
+// a global and only the loop bodies can be typed.
+
+var n = 2000000;
+var intregi = 0;
+var reali = 0.0;
+var amestec = 1;
+pentru (var i = 0; i < n; i = i + 1) {
+    intregi = intregi + i * 7 % 13 - 6;
+    reali = reali + i * 0.5 - 0.25;
+    amestec = (amestec * 31 + i) % 1000003;
+}
+afiseaza intregi;
+afiseaza reali;
+afiseaza amestec;
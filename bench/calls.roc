@@ -0,0 +1,23 @@
+// A loop calling small functions, which update locals and a global.
+
+var contor = 0;
+
+fun aduna(a, b) {
+    returneaza a + b;
+}
+
+fun numara() {
+    contor = contor + 1;
+}
+
+fun ruleaza(n) {
+    var s = 0;
+    pentru (var i = 0; i < n; i = i + 1) {
+        s = aduna(s, i);
+        numara();
+    }
+    returneaza s;
+}
+
+afiseaza ruleaza(3000000);
+afiseaza contor;
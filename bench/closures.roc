@@ -0,0 +1,24 @@
+// 200k closures kept alive, each made in a function with seven locals
+// of which it captures two.
+
+fun fa(i, urmator) {
+    var a = i;
+    var b = i * 2;
+    var c = i * 3;
+    var d = i * 4;
+    var e = i * 5;
+    var f = i * 6;
+    var g = i * 7;
+    fun nod(cere) {
+        daca (cere) returneaza a + g;
+        returneaza urmator;
+    }
+    returneaza nod;
+}
+
+var lista = nul;
+pentru (var i = 0; i < 200000; i = i + 1) lista = fa(i, lista);
+
+var s = 0;
+pentru (var l = lista; l != nul; l = l(fals)) s = s + l(adevarat);
+afiseaza s;
@@ -0,0 +1,8 @@
+// Recursive calls with little else in them.
+
+fun fib(n) {
+    daca (n < 2) returneaza n;
+    returneaza fib(n - 1) + fib(n - 2);
+}
+
+afiseaza fib(27);
@@ -0,0 +1,14 @@
+// Twenty calls of a function running a million-iteration loop, so the
+// calls after the first few run compiled.
+
+fun bucla(n) {
+    var s = 0;
+    pentru (var i = 0; i < n; i = i + 1) {
+        s = s + i % 3;
+    }
+    returneaza s;
+}
+
+var total = 0;
+pentru (var k = 0; k < 20; k = k + 1) total = total + bucla(1000000);
+afiseaza total;
@@ -0,0 +1,19 @@
+// Calls and a loop over locals: fib(27) and 5M iterations in a function.
+
+fun fib(n) {
+    daca (n < 2) returneaza n;
+    returneaza fib(n - 1) + fib(n - 2);
+}
+
+fun bucla(n) {
+    var s = 0;
+    var i = 0;
+    cattimp (i < n) {
+        s = s + i;
+        i = i + 1;
+    }
+    returneaza s;
+}
+
+afiseaza fib(27);
+afiseaza bucla(5000000);
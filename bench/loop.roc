@@ -0,0 +1,9 @@
+// An integer loop at the top level, over globals.
+
+var suma = 0;
+var i = 0;
+cattimp (i < 5000000) {
+    suma = suma + i % 7;
+    i = i + 1;
+}
+afiseaza suma;
@@ -0,0 +1,19 @@
+// A million method calls on one instance.
+
+clasa Contor {
+    init() {
+        this.n = 0;
+    }
+
+    inc(k) {
+        this.n = this.n + k;
+    }
+}
+
+fun ruleaza(n) {
+    var c = Contor();
+    pentru (var i = 0; i < n; i = i + 1) c.inc(1);
+    returneaza c.n;
+}
+
+afiseaza ruleaza(1000000);
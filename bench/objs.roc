@@ -0,0 +1,25 @@
+// Instances created and their fields read and written in a loop.
+
+clasa Punct {
+    init(x, y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    muta(dx, dy) {
+        this.x = this.x + dx;
+        this.y = this.y + dy;
+    }
+}
+
+fun ruleaza(n) {
+    var s = 0;
+    pentru (var i = 0; i < n; i = i + 1) {
+        var p = Punct(i, i + 1);
+        p.muta(1, 2);
+        s = s + p.x + p.y;
+    }
+    returneaza s;
+}
+
+afiseaza ruleaza(1000000);
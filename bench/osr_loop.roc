@@ -0,0 +1,14 @@
+// One call running one long loop, which has to go on compiled from the
+// middle of the call to get any faster.
+
+fun ruleaza(n) {
+    var s = 0;
+    var i = 0;
+    cattimp (i < n) {
+        s = s + i * 3 % 11;
+        i = i + 1;
+    }
+    returneaza s;
+}
+
+afiseaza ruleaza(20000000);
@@ -0,0 +1,47 @@
+#!/bin/sh
+# Times every benchmark on every engine, with the JIT and without, and
+# checks they all print the same thing. The times are wall clock in
+# milliseconds for the whole run, JVM startup included.
+#
+#   bench/run.sh [script.roc ...]
+
+cd "$(dirname "$0")/.." || exit 1
+
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+javac -d "$work/classes" $(find src -name '*.java') || exit 1
+
+if [ $# -eq 0 ]; then
+    set -- bench/*.roc
+fi
+
+configs="ast ast,--no-jit vm vm,--no-jit nodes nodes,--no-jit"
+
+printf '%-16s' script
+for config in $configs; do
+    printf '%14s' "$(echo "$config" | sed 's/,--no-jit/ nojit/')"
+done
+echo
+
+failed=0
+for script in "$@"; do
+    printf '%-16s' "$(basename "$script" .roc)"
+    expected=
+    for config in $configs; do
+        flags=$(echo "$config" | sed 's/^/--engine=/; s/,/ /')
+        start=$(date +%s%N)
+        output=$(java -cp "$work/classes" roc.Roc --no-cache $flags "$script" 2>&1)
+        end=$(date +%s%N)
+        if [ -z "$expected" ]; then
+            expected=$output
+        elif [ "$output" != "$expected" ]; then
+            failed=1
+            printf '%14s' DIFERIT
+            continue
+        fi
+        printf '%14s' $(( (end - start) / 1000000 ))
+    done
+    echo
+done
+exit $failed
@@ -0,0 +1,22 @@
+// 200k instances with three fields each, walked ten times.
+
+clasa Nod {
+    init(valoare, urmator) {
+        this.valoare = valoare;
+        this.patrat = valoare * valoare;
+        this.urmator = urmator;
+    }
+}
+
+var lista = nul;
+pentru (var i = 0; i < 200000; i = i + 1) lista = Nod(i, lista);
+
+fun parcurge(lista) {
+    var s = 0;
+    pentru (var n = lista; n != nul; n = n.urmator) s = s + n.patrat - n.valoare;
+    returneaza s;
+}
+
+var total = 0;
+pentru (var k = 0; k < 10; k = k + 1) total = total + parcurge(lista);
+afiseaza total;
@@ -0,0 +1,25 @@
+// A particle falling and bouncing, all in reals.
+
+fun simuleaza(pasi) {
+    var x = 0.0;
+    var y = 100.0;
+    var vx = 1.5;
+    var vy = 0.0;
+    var dt = 0.001;
+    var sarituri = 0;
+    pentru (var i = 0; i < pasi; i = i + 1) {
+        vy = vy - 9.81 * dt;
+        x = x + vx * dt;
+        y = y + vy * dt;
+        daca (y < 0.0) {
+            y = -y;
+            vy = -vy * 0.9;
+            sarituri = sarituri + 1;
+        }
+    }
+    afiseaza x;
+    afiseaza y;
+    returneaza sarituri;
+}
+
+afiseaza simuleaza(5000000);
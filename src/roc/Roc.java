@@ -1,61 +1,191 @@
 package roc;
 
+import roc.cache.CompilationCache;
 import roc.interpreter.Interpreter;
 import roc.interpreter.RuntimeError;
+import roc.jit.Jit;
+import roc.lexer.MappedSource;
+import roc.lexer.ParallelScanner;
 import roc.lexer.Scanner;
+import roc.lexer.Source;
+import roc.lexer.StreamSource;
 import roc.lexer.Token;
 import roc.lexer.TokenType;
+import roc.module.ModuleLoader;
+import roc.optimizer.Optimizer;
 import roc.parser.Expr;
+import roc.parser.FlatAst;
 import roc.parser.Parser;
 import roc.parser.Stmt;
 import roc.resolver.Resolver;
+import roc.resolver.TypeInference;
+import roc.vm.VM;
 
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
 public class Roc {
 
-    private static final Interpreter interpreter = new Interpreter();
-    private static boolean hadError = false;
+    private static final long STACK_SIZE = 1L << 28;
+
+    private static Interpreter interpreter;
+    private static ModuleLoader modules;
+    // modules compile on worker threads and report through here as well
+    private static volatile boolean hadError = false;
     static boolean hadRuntimeError = false;
+    private static boolean parallelLexing = false;
+    private static boolean optimize = true;
+    private static boolean optimizeReport = false;
+    private static boolean useCache = true;
+    // the tree walker unless '--engine=vm', or '--engine=nodes' for its
+    // self-specializing expression trees
+    private static boolean useVm = false;
+    private static boolean useNodes = false;
+
+    // set while a module compiles on a worker thread, so its errors name
+    // the file and can be told apart from the other modules' errors
+    private static final ThreadLocal<String> module = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> moduleHadError = new ThreadLocal<>();
 
     public static void main(String[] args) throws Exception {
 
-        if (args.length != 1) {
-            System.err.println("Utilizare: 'roc <nume_script>'");
-            System.exit(64);
+        String fileName = null;
+        for (String arg : args) {
+            if (arg.equals("--parallel-lex")) {
+                parallelLexing = true;
+            } else if (arg.equals("--no-optimize")) {
+                optimize = false;
+            } else if (arg.equals("--optimize-report")) {
+                optimizeReport = true;
+            } else if (arg.equals("--no-cache")) {
+                useCache = false;
+            } else if (arg.equals("--engine=vm")) {
+                useVm = true;
+                useNodes = false;
+            } else if (arg.equals("--engine=nodes")) {
+                useVm = false;
+                useNodes = true;
+            } else if (arg.equals("--engine=ast")) {
+                useVm = false;
+                useNodes = false;
+            } else if (arg.equals("--no-jit")) {
+                Jit.disable();
+            } else if (fileName == null) {
+                fileName = arg;
+            } else {
+                usage();
+            }
+        }
+
+        if (fileName == null) {
+            usage();
         } else {
-            readFile(args[0]);
+            readFile(fileName);
         }
     }
 
+    private static void usage() {
+        System.err.println("Utilizare: 'roc [--parallel-lex] [--no-optimize] [--optimize-report] [--no-cache] [--engine=ast|vm|nodes] [--no-jit] <nume_script>' ('-' citeste de la stdin)");
+        System.exit(64);
+    }
+
     private static void readFile(String fileName) throws Exception {
 
-        byte[] bytes = Files.readAllBytes(Paths.get(fileName));
-        run(new String(bytes, Charset.defaultCharset()));
-    }
+        // '-' reads the script from stdin
+        modules = new ModuleLoader(optimize, useCache);
 
-    private static void run(String source) {
+        if (fileName.equals("-")) {
+            interpreter = new Interpreter(modules, Paths.get(""));
+            run(new StreamSource(System.in, Charset.defaultCharset()), null);
+            return;
+        }
 
-        Scanner scanner = new Scanner(source);
+        Path path = Paths.get(fileName).toAbsolutePath();
+        interpreter = new Interpreter(modules, path.getParent());
+        CompilationCache cache = null;
+        if (useCache) {
+            cache = new CompilationCache(path, optimize);
+            FlatAst ast = cache.load();
+            if (ast != null) {
+                execute(ast.statements(), null);
+                return;
+            }
+        }
+        run(MappedSource.open(path, Charset.defaultCharset()), cache);
+    }
 
-        List<Token> tokens = scanner.scanTokens();
+    private static void run(Source source, CompilationCache cache) {
 
-        Parser parser = new Parser(tokens);
+        Parser parser;
+        if (parallelLexing) {
+            parser = new Parser(ParallelScanner.scan(source));
+        } else {
+            // tokens are scanned while the parser asks for them
+            parser = new Parser(new Scanner(source).stream());
+        }
         List<Stmt> statements = parser.parse();
 
         if (hadError) System.exit(65);
         if (hadRuntimeError) System.exit(70);
 
+        if (optimize) {
+            Optimizer optimizer = new Optimizer();
+            statements = optimizer.optimize(statements);
+            if (optimizeReport) {
+                System.err.println("[optimizare] " + optimizer.removedNodes() + " noduri eliminate");
+            }
+        }
+
         Resolver resolver = new Resolver(interpreter);
         resolver.resolve(statements);
 
+        // imported modules may still be compiling
+        modules.awaitAll();
+
         // Stop if there was a resolution error.
         if (hadError) return;
 
-        interpreter.interpret(statements);
+        TypeInference types = new TypeInference();
+        types.infer(statements);
+        if (cache != null) cache.store(FlatAst.flatten(statements));
+
+        execute(statements, types);
+    }
+
+    // The globals and modules are the interpreter's whichever engine runs.
+    // The program gets a thread of its own, whose stack has room for
+    // Interpreter.MAX_CALLS calls of the tree walker, the engine using the
+    // most Java stack per call, at under 2 KB. The default stack runs out
+    // after some 600 of them. The JVM only reserves the size as
+    // address space and commits pages as deep as the program recurses, so
+    // one that does not recurse pays nothing for it.
+    //
+    // types is null for a program read from the cache, whose nodes carry
+    // their types but not the slot types the VM needs.
+    private static void execute(List<Stmt> statements, TypeInference types) {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                if (useVm) {
+                    new VM(interpreter).interpret(statements, types);
+                } else {
+                    if (useNodes) interpreter.useNodes();
+                    interpreter.interpret(statements);
+                }
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        }, "roc", STACK_SIZE);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure[0] instanceof RuntimeException e) throw e;
+        if (failure[0] instanceof Error e) throw e;
     }
 
     public static void error(int line, String message) {
@@ -70,6 +200,28 @@ public class Roc {
         }
     }
 
+    public static void enterModule(String file) {
+        module.set(file);
+        moduleHadError.set(false);
+    }
+
+    // the module this thread compiles, null for the main file
+    public static String currentModule() {
+        return module.get();
+    }
+
+    public static boolean moduleHadError() {
+        return moduleHadError.get() == Boolean.TRUE;
+    }
+
+    // true when the module compiled without errors
+    public static boolean leaveModule() {
+        boolean clean = !moduleHadError();
+        module.remove();
+        moduleHadError.remove();
+        return clean;
+    }
+
     public static void runtimeError(RuntimeError error) {
         System.err.println("[linia " + error.token.line + "] " + error.getMessage());
         hadRuntimeError = true;
@@ -77,8 +229,10 @@ public class Roc {
 
     private static void report(int line, String where,
                                String message) {
+        String file = module.get();
         System.err.println(
-                "[linia " + line + "] Eroare" + where + ": " + message);
+                "[" + (file == null ? "" : file + " ") + "linia " + line + "] Eroare" + where + ": " + message);
+        if (file != null) moduleHadError.set(true);
         hadError = true;
     }
 }
@@ -0,0 +1,285 @@
+package roc.cache;
+
+import roc.interpreter.Operators;
+import roc.lexer.MappedSource;
+import roc.lexer.ParallelScanner;
+import roc.lexer.Scanner;
+import roc.lexer.Token;
+import roc.lexer.TokenBuffer;
+import roc.lexer.TokenType;
+import roc.optimizer.Optimizer;
+import roc.parser.Expr;
+import roc.parser.FlatAst;
+import roc.parser.Parser;
+import roc.parser.Stmt;
+import roc.resolver.Resolver;
+import roc.resolver.TypeInference;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+// Keeps the parsed, optimized and resolved program next to the script
+// ('script.roc' -> 'script.rocc'), so an unchanged script skips the
+// scanner, the parser, the optimizer and the resolver on the next run.
+//
+// An entry is only read back by the build of the compiler that wrote it:
+// the header holds a hash of the compiled classes that decide what ends
+// up in the file, so any change to them is a miss instead of a version
+// number someone has to remember to bump. The arrays of the flat AST are
+// written as variable-length numbers, seven bits a byte with the sign in
+// the lowest one, and the offsets and the token lines, which only grow,
+// as the difference from the one before. Most of them take a byte.
+public class CompilationCache {
+
+    private static final int MAGIC = 0x524f4343; // "ROCC"
+
+    // Every class that decides what is stored, with the classes nested in
+    // them: the token sources and the parser build the tree, the optimizer
+    // folds it with Operators, the resolver and the type inference write
+    // its annotations, and FlatAst and this class encode it.
+    private static final Class<?>[] COMPILER = {
+            MappedSource.class, Scanner.class, TokenBuffer.class, ParallelScanner.class,
+            Token.class, TokenType.class, Parser.class, Expr.class, Stmt.class,
+            Optimizer.class, Operators.class, Resolver.class, TypeInference.class,
+            FlatAst.class, CompilationCache.class
+    };
+    private static byte[] build;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INTEGER = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+
+    private final Path script;
+    private final Path file;
+    private final boolean optimized;
+    private byte[] key;
+
+    public CompilationCache(Path script, boolean optimized) {
+        this.script = script;
+        this.optimized = optimized;
+        String name = script.getFileName().toString();
+        this.file = script.resolveSibling(name.endsWith(".roc") ? name + "c" : name + ".rocc");
+    }
+
+    // The resolved program, or null when there is no usable cache entry.
+    // The resolver's depths and slots travel in the node annotations.
+    public FlatAst load() {
+        if (!Files.isRegularFile(file)) return null;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.get() != (optimized ? 1 : 0)) return null;
+            if (!Arrays.equals(readBytes(in), build()) || !Arrays.equals(readBytes(in), key())) return null;
+
+            return read(in);
+        } catch (IOException | RuntimeException e) {
+            // a stale or damaged file is just a miss
+            return null;
+        }
+    }
+
+    // Written only for programs that passed the resolver, since the
+    // resolution is part of the entry.
+    public void store(FlatAst ast) {
+        Path temp = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeByte(optimized ? 1 : 0);
+                writeBytes(out, build());
+                writeBytes(out, key());
+                write(out, ast);
+            }
+            // readers only ever see a complete file
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            // the cache is only an optimization, a read-only directory is fine
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private byte[] key() throws IOException {
+        if (key != null) return key;
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            MessageDigest digest = digest();
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            key = digest.digest();
+            return key;
+        }
+    }
+
+    // modules are cached from several threads at once
+    private static synchronized byte[] build() throws IOException {
+        if (build != null) return build;
+        MessageDigest digest = digest();
+        for (Class<?> type : COMPILER) {
+            hashClass(digest, type);
+        }
+        build = digest.digest();
+        return build;
+    }
+
+    private static void hashClass(MessageDigest digest, Class<?> type) throws IOException {
+        String name = type.getName();
+        try (InputStream in = type.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            // with no class files to read there is nothing to tell builds apart by
+            if (in == null) throw new IOException("Clasa " + name + " nu poate fi citita");
+            digest.update(in.readAllBytes());
+        }
+        for (Class<?> nested : type.getDeclaredClasses()) {
+            hashClass(digest, nested);
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void write(DataOutputStream out, FlatAst ast) throws IOException {
+        writeInt(out, ast.root);
+        writeInts(out, ast.kinds, ast.nodeCount, false);
+        writeInts(out, ast.offsets, ast.nodeCount, true);
+        writeInts(out, ast.data, ast.dataCount, false);
+        writeInts(out, ast.tokenTypes, ast.tokenCount, false);
+        writeInts(out, ast.tokenLines, ast.tokenCount, true);
+        writeInts(out, ast.tokenLexemes, ast.tokenCount, false);
+        writeInts(out, ast.tokenLiterals, ast.tokenCount, false);
+
+        writeInt(out, ast.stringCount);
+        for (int i = 0; i < ast.stringCount; i++) {
+            writeBytes(out, ast.strings[i].getBytes(StandardCharsets.UTF_8));
+        }
+
+        writeInt(out, ast.constantCount);
+        for (int i = 0; i < ast.constantCount; i++) {
+            Object value = ast.constants[i];
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Long) {
+                out.writeByte(INTEGER);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof String text) {
+                out.writeByte(STRING);
+                writeBytes(out, text.getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IOException("Constanta necunoscuta " + value);
+            }
+        }
+    }
+
+    private static FlatAst read(ByteBuffer in) throws IOException {
+        FlatAst ast = new FlatAst();
+        ast.root = readInt(in);
+        ast.kinds = readInts(in, false);
+        ast.offsets = readInts(in, true);
+        ast.data = readInts(in, false);
+        ast.tokenTypes = readInts(in, false);
+        ast.tokenLines = readInts(in, true);
+        ast.tokenLexemes = readInts(in, false);
+        ast.tokenLiterals = readInts(in, false);
+        ast.nodeCount = ast.kinds.length;
+        ast.dataCount = ast.data.length;
+        ast.tokenCount = ast.tokenTypes.length;
+
+        ast.stringCount = readInt(in);
+        ast.strings = new String[ast.stringCount];
+        for (int i = 0; i < ast.stringCount; i++) {
+            ast.strings[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+        }
+
+        ast.constantCount = readInt(in);
+        ast.constants = new Object[ast.constantCount];
+        for (int i = 0; i < ast.constantCount; i++) {
+            byte tag = in.get();
+            switch (tag) {
+                case NULL -> ast.constants[i] = null;
+                case FALSE -> ast.constants[i] = false;
+                case TRUE -> ast.constants[i] = true;
+                case INTEGER -> ast.constants[i] = in.getLong();
+                case DOUBLE -> ast.constants[i] = in.getDouble();
+                case STRING -> ast.constants[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+                default -> throw new IOException("Constanta necunoscuta " + tag);
+            }
+        }
+        return ast;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int count, boolean growing) throws IOException {
+        writeInt(out, count);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeInt(out, growing ? values[i] - previous : values[i]);
+            previous = values[i];
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in, boolean growing) {
+        int[] values = new int[readInt(in)];
+        int previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            int value = readInt(in);
+            values[i] = growing ? previous + value : value;
+            previous = values[i];
+        }
+        return values;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[readInt(in)];
+        in.get(bytes);
+        return bytes;
+    }
+
+    // the sign goes to the lowest bit, so -1 takes a byte as well
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        int bits = (value << 1) ^ (value >> 31);
+        while ((bits & ~0x7f) != 0) {
+            out.writeByte(bits & 0x7f | 0x80);
+            bits >>>= 7;
+        }
+        out.writeByte(bits);
+    }
+
+    private static int readInt(ByteBuffer in) {
+        int bits = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            bits |= (b & 0x7f) << shift;
+            if (b >= 0) break;
+        }
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+}
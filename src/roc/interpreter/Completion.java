@@ -0,0 +1,12 @@
+package roc.interpreter;
+
+// How a statement finished. The statements around it pass anything but
+// NORMAL up until a loop or the function call takes it; a return leaves
+// its value with the interpreter, a tail call the call to make instead.
+public enum Completion {
+    NORMAL,
+    RETURN,
+    TAIL_CALL,
+    BREAK,
+    CONTINUE
+}
@@ -0,0 +1,17 @@
+package roc.interpreter;
+
+// What the unboxed integer paths throw when a result does not fit in a
+// long, or when a local the type inference proved an integer holds the
+// real an earlier overflow left in it. Those expressions only read
+// variables, so the one that started unboxed works itself out again on
+// boxed values, where Operators goes on in double.
+public final class IntegerOverflow extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final IntegerOverflow INSTANCE = new IntegerOverflow();
+
+    private IntegerOverflow() {
+        super(null, null, false, false);
+    }
+}
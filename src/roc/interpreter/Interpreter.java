@@ -1,24 +1,65 @@
 package roc.interpreter;
 
 import roc.Roc;
+import roc.jit.CompiledFunction;
+import roc.jit.Jit;
 import roc.lexer.Token;
 import roc.lexer.TokenType;
+import roc.memory.Cell;
 import roc.memory.Environment;
+import roc.memory.FrameStack;
+import roc.module.ModuleLoader;
+import roc.nodes.ExprNode;
+import roc.nodes.NodeBuilder;
 import roc.parser.Expr;
 import roc.parser.Stmt;
+import roc.resolver.TypeInference;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
 
     public final Environment globals = new Environment();
+    private static final Cell[] NO_UPVALUES = new Cell[0];
+
     private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
+    final FrameStack frames = new FrameStack();
+    // the upvalues of the function running now
+    Cell[] upvalues;
+    // the function the tree walker runs, unless it is a method, and the
+    // iterations its loops made in this call, which tell it it is hot
+    RocFunction running;
+    long backEdges;
+    // the value of the last returneaza, for the call it ends
+    Object returned;
+    // the call a returneaza left to the call it ends, which makes it
+    // once the returning function's frame is gone
+    RocCallable tailCallee;
+    // set when the callee is a method run on it without being bound
+    RocInstance tailReceiver;
+    List<Object> tailArguments;
+    // past this many nested calls the program is assumed to recurse forever
+    public static final int MAX_CALLS = 100_000;
+    private int calls;
+    // evaluate the expressions as self-specializing node trees
+    private boolean nodes;
+    private final ModuleLoader modules;
+    // imports are looked up next to the script being run
+    private final Path directory;
 
     public Interpreter() {
+        this(new ModuleLoader(true, false), Paths.get(""));
+    }
+
+    public Interpreter(ModuleLoader modules, Path directory) {
+        this.modules = modules;
+        this.directory = directory;
         globals.define("clock", new RocCallable() {
             @Override
             public int arity() {
@@ -37,6 +78,10 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         });
     }
 
+    public void useNodes() {
+        nodes = true;
+    }
+
     public void interpret(List<Stmt> statements) {
         try {
             for (Stmt statement : statements) {
@@ -50,13 +95,32 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
 
+        // an integer that overflowed is stored boxed, as the real it became
+        if (expr.depth >= 0 && !nodes) {
+            int type = TypeInference.typeOf(expr.value);
+            try {
+                if (type == TypeInference.INTEGER) {
+                    environment.assignLongAt(expr.depth, expr.slot, evaluateLong(expr.value));
+                    return null;
+                }
+                if (type == TypeInference.REAL) {
+                    environment.assignDoubleAt(expr.depth, expr.slot, evaluateDouble(expr.value));
+                    return null;
+                }
+            } catch (IntegerOverflow overflow) {
+                // falls back to the boxed value below
+            }
+        }
+
         Object value = evaluate(expr.value);
 
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
+        if (expr.depth >= 0) {
+            environment.assignAt(expr.depth, expr.slot, value);
+        } else if (expr.upvalue >= 0) {
+            upvalues[expr.upvalue].value = value;
         } else {
-            globals.assign(expr.name, value);
+            if (expr.global < 0) expr.global = globals.slot(expr.name.lexeme);
+            globals.assign(expr.name, expr.global, value);
         }
         return null;
     }
@@ -64,90 +128,77 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
 
+        // operands proven numeric are computed unboxed, all the way down,
+        // unless an integer among them overflows
+        try {
+            if (expr.operands == TypeInference.INTEGER) {
+                Object value = integerBinary(expr);
+                if (value != null) return value;
+            } else if (expr.operands == TypeInference.REAL) {
+                Object value = realBinary(expr);
+                if (value != null) return value;
+            }
+        } catch (IntegerOverflow overflow) {
+            // the operands again, boxed
+        }
+
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
 
-        switch (expr.operator.type) {
-            case MINUS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left - (double) right;
-            case STAR:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left * (double) right;
-            case SLASH:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left / (double) right;
-            case PLUS:
-                if ((left instanceof Double && right instanceof Double)) {
-                    return (double) left + (double) right;
-                } else if (left instanceof String || right instanceof String) {
-                    return stringify(left) + stringify(right);
-                }
-                throw new RuntimeError(expr.operator,
-                        "Operanzii trebuie sa fie doua numere sau doi intregi");
-            case MODULO:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left % (double) right;
-                }
-                throw new RuntimeError(expr.operator,
-                        "Operanzii trebuie sa fie doua numere sau doi intregi");
-            case GREATER:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left > (double) right;
-            case GREATER_EQUALS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left >= (double) right;
-            case LESS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left < (double) right;
-            case LESS_EQUALS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left <= (double) right;
-
-            case EXMARK_EQUALS:
-                return !isEqual(left, right);
-            case EQUALS_EQUALS:
-                return isEqual(left, right);
-            default:
-                return null;
-        }
+        return Operators.binary(expr.operator, left, right);
     }
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
 
-        Object callee = evaluate(expr.calle);
+        // a method called right away runs on its instance without being bound
+        if (expr.calle instanceof Expr.Get get) return invoke(expr, get, false);
+        if (expr.calle instanceof Expr.Super method) return invoke(expr, method, false);
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments) {
-            arguments.add(evaluate(argument));
-        }
+        Object callee = evaluate(expr.calle);
+        List<Object> arguments = arguments(expr);
+        return callable(callee, arguments, expr.paren).call(this, arguments, expr.paren);
+    }
 
-        if (!(callee instanceof RocCallable)) {
-            throw new RuntimeError(expr.paren, "Putem apela doar functii");
-        }
+    @Override
+    public Object visitGetExpr(Expr.Get expr) {
+        return property(expr, evaluate(expr.object));
+    }
 
-        RocCallable function = (RocCallable) callee;
+    // in tail position the call is left to the trampoline, like tailCall does
+    private Object invoke(Expr.Call expr, Expr.Get get, boolean tail) {
 
-        if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Trebuie " + function.arity() + " argumente" +
-                    "dar au fost date " + arguments.size());
+        Object object = evaluate(get.object);
+        if (object instanceof RocInstance instance) {
+            RocFunction method = cache(get).method(instance);
+            if (method != null) {
+                List<Object> arguments = arguments(expr);
+                if (tail) return tailInvoke(instance, method, arguments, expr.paren);
+                callable(method, arguments, expr.paren);
+                return method.invoke(instance, arguments, expr.paren);
+            }
         }
-
-        return function.call(this, arguments);
+        Object callee = property(get, object);
+        List<Object> arguments = arguments(expr);
+        if (tail) return tailCall(callee, arguments, expr.paren);
+        return callable(callee, arguments, expr.paren).call(this, arguments, expr.paren);
     }
 
-    @Override
-    public Object visitGetExpr(Expr.Get expr) {
+    private Object property(Expr.Get expr, Object object) {
 
-        Object object = evaluate(expr.object);
-        if (object instanceof RocInstance) {
-            return ((RocInstance) object).get(expr.name);
+        if (object instanceof RocInstance instance) return cache(expr).get(instance);
+        if (object instanceof RocModule) {
+            return ((RocModule) object).get(expr.name);
         }
 
         throw new RuntimeError(expr.name, "Poti avea proprietati doar pe instante");
     }
 
+    private static PropertyCache cache(Expr.Get expr) {
+        if (expr.cache == null) expr.cache = new PropertyCache(expr.name);
+        return (PropertyCache) expr.cache;
+    }
+
     @Override
     public Object visitGroupingExpr(Expr.Grouping expr) {
         return evaluate(expr.expression);
@@ -163,9 +214,9 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         Object left = evaluate(expr.left);
         if (expr.operator.type == TokenType.OR) {
-            if (isTruthy(left)) return left;
+            if (Operators.isTruthy(left)) return left;
         } else {
-            if (!isTruthy(left)) return left;
+            if (!Operators.isTruthy(left)) return left;
         }
         return evaluate(expr.right);
     }
@@ -175,68 +226,96 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         Object object = evaluate(expr.object);
 
-        if (!(object instanceof RocInstance)) {
+        if (!(object instanceof RocInstance instance)) {
             throw new RuntimeError(expr.name, "Doar instantele pot avea proprietati");
         }
 
         Object value = evaluate(expr.value);
-        ((RocInstance) object).set(expr.name, value);
+        if (expr.cache == null) expr.cache = new PropertyCache(expr.name);
+        ((PropertyCache) expr.cache).set(instance, value);
         return null;
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
 
-        int distance = locals.get(expr);
-        RocClass superClass = (RocClass) environment.getAt(distance, "super");
+        RocInstance object = (RocInstance) lookUpVariable(expr.keyword,
+                expr.thisDepth, expr.thisSlot, expr.thisUpvalue);
+        return superMethod(expr).bind(object);
+    }
+
+    private Object invoke(Expr.Call expr, Expr.Super method, boolean tail) {
 
-        RocInstance object = (RocInstance) environment.getAt(distance - 1, "this");
+        RocInstance object = (RocInstance) lookUpVariable(method.keyword,
+                method.thisDepth, method.thisSlot, method.thisUpvalue);
+        RocFunction function = superMethod(method);
+        List<Object> arguments = arguments(expr);
+        if (tail) return tailInvoke(object, function, arguments, expr.paren);
+        callable(function, arguments, expr.paren);
+        return function.invoke(object, arguments, expr.paren);
+    }
+
+    private RocFunction superMethod(Expr.Super expr) {
+
+        RocClass superClass = (RocClass) lookUpVariable(expr.keyword, expr.depth, expr.slot, expr.upvalue);
         RocFunction method = superClass.findMethod(expr.method.lexeme);
 
         if (method == null) {
             throw new RuntimeError(expr.method, "Proprietate nedefinita '" +
                     expr.method.lexeme + "'");
         }
-        return method.bind(object);
+        return method;
     }
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
 
-        lookUpVariable(expr.keyword, expr);
-        return null;
+        return lookUpVariable(expr.keyword, expr.depth, expr.slot, expr.upvalue);
     }
 
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
 
-        Object right = evaluate(expr.right);
-        switch (expr.operator.type) {
-            case MINUS:
-                checkNumberOperand(expr.operator, right);
-                return -(double) right;
-            case EXMARK:
-                return !isTruthy(right);
-            default:
-                return null;
+        try {
+            if (expr.type == TypeInference.INTEGER) return evaluateLong(expr);
+            if (expr.type == TypeInference.REAL) return evaluateDouble(expr);
+        } catch (IntegerOverflow overflow) {
+            // the operand again, boxed
         }
+
+        Object right = evaluate(expr.right);
+        return Operators.unary(expr.operator, right);
     }
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
 
-        return lookUpVariable(expr.name, expr);
+        if (expr.depth >= 0 || expr.upvalue >= 0) {
+            return lookUpVariable(expr.name, expr.depth, expr.slot, expr.upvalue);
+        }
+        // the slot is bound once per site, the variable may be declared later
+        if (expr.global < 0) expr.global = globals.slot(expr.name.lexeme);
+        return globals.get(expr.name, expr.global);
     }
 
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
+    public Completion visitBlockStmt(Stmt.Block stmt) {
 
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+        Environment frame = frames.push(environment, stmt.frameSize);
+        try {
+            return executeBlock(stmt.statements, frame);
+        } finally {
+            frames.pop(frame);
+        }
     }
 
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
+    public Completion visitBreakStmt(Stmt.Break stmt) {
+        return Completion.BREAK;
+    }
+
+    @Override
+    public Completion visitClassStmt(Stmt.Class stmt) {
 
         Object superclass = null;
         if (stmt.superclass != null) {
@@ -247,75 +326,145 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             }
         }
 
-        environment.define(stmt.name.lexeme, null);
+        define(stmt.slot, stmt.name, null);
 
+        Environment declaring = environment;
         if (stmt.superclass != null) {
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            environment = new Environment(environment, 1);
+            environment.define(0, superclass);
         }
 
         Map<String, RocFunction> methods = new HashMap<>();
         for (Stmt.Function method : stmt.methods) {
-            RocFunction function = new RocFunction(method, environment, "init".equals(method.name.lexeme));
+            RocFunction function = new RocFunction(this, method, capture(method), "init".equals(method.name.lexeme));
             methods.put(method.name.lexeme, function);
         }
 
         RocClass clasa = new RocClass(stmt.name.lexeme, (RocClass) superclass, methods);
-        environment.assign(stmt.name, clasa);
-
-        if (superclass != null) {
-            environment = environment.enclosing;
-        }
-        return null;
+        environment = declaring;
+        store(stmt.slot, stmt.name, clasa);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
 
         evaluate(stmt.expression);
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
+    public Completion visitContinueStmt(Stmt.Continue stmt) {
+        return Completion.CONTINUE;
+    }
 
-        RocFunction function = new RocFunction(stmt, environment, false);
-        environment.define(stmt.name.lexeme, function);
-        return null;
+    @Override
+    public Completion visitForStmt(Stmt.For stmt) {
+
+        // one scope for the whole loop, the increment runs in it directly
+        Environment previous = this.environment;
+        Environment frame = frames.push(previous, stmt.frameSize);
+        try {
+            this.environment = frame;
+            if (stmt.initializer != null) {
+                execute(stmt.initializer);
+            }
+            while (stmt.condition == null || Operators.isTruthy(evaluate(stmt.condition))) {
+                Completion completion = execute(stmt.body);
+                if (completion == Completion.BREAK) break;
+                if (completion == Completion.RETURN || completion == Completion.TAIL_CALL) return completion;
+                if (stmt.increment != null) {
+                    evaluate(stmt.increment);
+                }
+                if (++backEdges == Jit.THRESHOLD && running != null) {
+                    Completion resumed = resume(stmt);
+                    if (resumed != null) return resumed;
+                }
+            }
+        } finally {
+            this.environment = previous;
+            frames.pop(frame);
+        }
+        return Completion.NORMAL;
+    }
+
+    @Override
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
+
+        RocFunction function = new RocFunction(this, stmt, capture(stmt), false);
+        store(stmt.slot, stmt.name, function);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
 
-        if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+        if (Operators.isTruthy(evaluate(stmt.condition))) {
+            return execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
+    public Completion visitImportStmt(Stmt.Import stmt) {
 
-        Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
-        return null;
+        define(stmt.slot, stmt.path.get(stmt.path.size() - 1), load(stmt));
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitPrintStmt(Stmt.Print stmt) {
 
-        Object value = null;
-        if (stmt.value != null) {
-            value = evaluate(stmt.value);
+        Object value = evaluate(stmt.expression);
+        System.out.println(Operators.stringify(value));
+        return Completion.NORMAL;
+    }
+
+    @Override
+    public Completion visitReturnStmt(Stmt.Return stmt) {
+
+        // returneaza f(...) is always a tail call, and one to a function
+        // running in a tree walker is left to the call this one ends
+        if (stmt.value instanceof Expr.Call call) {
+            Object result;
+            if (call.calle instanceof Expr.Get get) {
+                result = invoke(call, get, true);
+            } else if (call.calle instanceof Expr.Super method) {
+                result = invoke(call, method, true);
+            } else {
+                result = tailCall(evaluate(call.calle), arguments(call), call.paren);
+            }
+            if (result == Completion.TAIL_CALL) return Completion.TAIL_CALL;
+            returned = result;
+            return Completion.RETURN;
         }
 
-        throw new Return(value);
+        returned = stmt.value != null ? evaluate(stmt.value) : null;
+        return Completion.RETURN;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
+
+        // a local proven numeric is kept unboxed in its frame, the node
+        // trees keep their own specializations instead
+        if (stmt.slot >= 0 && stmt.initializer != null && !nodes) {
+            int type = TypeInference.typeOf(stmt.initializer);
+            try {
+                if (type == TypeInference.INTEGER) {
+                    environment.defineLong(stmt.slot, evaluateLong(stmt.initializer));
+                    return Completion.NORMAL;
+                }
+                if (type == TypeInference.REAL) {
+                    environment.defineDouble(stmt.slot, evaluateDouble(stmt.initializer));
+                    return Completion.NORMAL;
+                }
+            } catch (IntegerOverflow overflow) {
+                // falls back to the boxed value below
+            }
+        }
 
         Object value = null;
 
@@ -323,91 +472,357 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             value = evaluate(stmt.initializer);
         }
 
-        environment.define(stmt.name.lexeme, value);
-        return null;
+        define(stmt.slot, stmt.name, value);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
+
+        while (Operators.isTruthy(evaluate(stmt.condition))) {
+            Completion completion = execute(stmt.body);
+            if (completion == Completion.BREAK) break;
+            if (completion == Completion.RETURN || completion == Completion.TAIL_CALL) return completion;
+            if (++backEdges == Jit.THRESHOLD && running != null) {
+                Completion resumed = resume(stmt);
+                if (resumed != null) return resumed;
+            }
+        }
+
+        return Completion.NORMAL;
+    }
+
+    // A loop that ran hot goes on in the compiled function, from its head
+    // and with the locals the frames hold now, and the compiled code runs
+    // the rest of the function. Null when it stays in the tree walker.
+    private Completion resume(Stmt loop) {
+        CompiledFunction compiled = running.loopEntry();
+        if (compiled == null) return null;
 
-        while (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.body);
+        Object result = compiled.resume(loop, environment);
+        if (result == Completion.TAIL_CALL) return Completion.TAIL_CALL;
+        returned = result;
+        return Completion.RETURN;
+    }
+
+    // top-level declarations have no slot and go to the globals by name
+    private void define(int slot, Token name, Object value) {
+        if (slot < 0) {
+            environment.define(name.lexeme, value);
+        } else {
+            environment.define(slot, value);
         }
+    }
 
-        return null;
+    // for functions and classes, whose own slot their methods or body may
+    // have captured already
+    private void store(int slot, Token name, Object value) {
+        if (slot < 0) {
+            environment.define(name.lexeme, value);
+        } else {
+            environment.assignAt(0, slot, value);
+        }
+    }
+
+    // The cells a new closure keeps: locals of the frames open here, boxed
+    // on the way, and upvalues of the function declaring it.
+    private Cell[] capture(Stmt.Function function) {
+        int[] captures = function.captures;
+        if (captures.length == 0) return NO_UPVALUES;
+
+        Cell[] cells = new Cell[captures.length / 2];
+        for (int i = 0; i < cells.length; i++) {
+            int depth = captures[2 * i];
+            int index = captures[2 * i + 1];
+            cells[i] = depth >= 0 ? environment.capture(depth, index) : upvalues[index];
+        }
+        return cells;
+    }
+
+    // The calls every engine has in progress share one limit, so a
+    // program recurses as deep on any of them, with the JIT or without.
+    // A call from outside the program has nothing to point at, and is
+    // reported at the first call site below it.
+    public void enterCall(Token paren) {
+        if (calls == MAX_CALLS) {
+            if (paren == null) throw new StackOverflowError();
+            throw tooManyCalls(paren);
+        }
+        calls++;
+    }
+
+    public static RuntimeError tooManyCalls(Token paren) {
+        return new RuntimeError(paren, "Prea multe apeluri una in alta");
+    }
+
+    public void leaveCall() {
+        calls--;
+    }
+
+    // TAIL_CALL, with the call in tail position left to the RocFunction.call
+    // the returning function goes back to. For the compiled code too, which
+    // returns the same, and whose callee may be a function of the VM.
+    public Object tailCall(Object callee, List<Object> arguments, Token paren) {
+        tailCallee = callable(callee, arguments, paren);
+        tailArguments = arguments;
+        return Completion.TAIL_CALL;
+    }
+
+    // the same for a method to run on the instance without binding it
+    public Object tailInvoke(RocInstance receiver, RocFunction method, List<Object> arguments, Token paren) {
+        callable(method, arguments, paren);
+        tailCallee = method;
+        tailReceiver = receiver;
+        tailArguments = arguments;
+        return Completion.TAIL_CALL;
+    }
+
+    // makes the tail call a compiled function called directly returned
+    public Object finishTailCall() {
+        RocCallable function = tailCallee;
+        RocInstance receiver = tailReceiver;
+        List<Object> arguments = takeTailArguments();
+        if (function instanceof RocFunction tail) return tail.call(receiver, arguments);
+        return function.call(this, arguments);
+    }
+
+    // The callee of the tail call left pending, for the VM, which makes the
+    // ones to its own functions itself instead of calling finishTailCall.
+    public RocCallable tailCallee() {
+        return tailCallee;
+    }
+
+    public List<Object> takeTailArguments() {
+        List<Object> arguments = tailArguments;
+        tailCallee = null;
+        tailReceiver = null;
+        tailArguments = null;
+        return arguments;
+    }
+
+    private List<Object> arguments(Expr.Call call) {
+        List<Object> arguments = new ArrayList<>();
+        for (Expr argument : call.arguments) {
+            arguments.add(evaluate(argument));
+        }
+        return arguments;
+    }
+
+    private static RocCallable callable(Object callee, List<Object> arguments, Token paren) {
+        if (!(callee instanceof RocCallable function)) {
+            throw new RuntimeError(paren, "Putem apela doar functii");
+        }
+        checkArity(function.arity(), arguments.size(), paren);
+        return function;
+    }
+
+    // the one message every engine gives for a call with the wrong count
+    public static void checkArity(int arity, int count, Token paren) {
+        if (count != arity) {
+            throw new RuntimeError(paren, "Trebuie " + arity + " argumente dar au fost date " + count);
+        }
     }
 
     private Object evaluate(Expr expr) {
+        if (nodes) {
+            Object node = expr.node;
+            if (node == null) node = NodeBuilder.build(expr, this);
+            return ((ExprNode) node).execute(this);
+        }
         return expr.accept(this);
     }
 
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    // null for the operators left to Operators
+    private Object integerBinary(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case PLUS:
+            case MINUS:
+            case STAR:
+            case MODULO:
+                return evaluateLong(expr);
+            case SLASH:
+                return evaluateDouble(expr);
+            case GREATER:
+                return evaluateLong(expr.left) > evaluateLong(expr.right);
+            case GREATER_EQUALS:
+                return evaluateLong(expr.left) >= evaluateLong(expr.right);
+            case LESS:
+                return evaluateLong(expr.left) < evaluateLong(expr.right);
+            case LESS_EQUALS:
+                return evaluateLong(expr.left) <= evaluateLong(expr.right);
+            case EQUALS_EQUALS:
+                return evaluateLong(expr.left) == evaluateLong(expr.right);
+            case EXMARK_EQUALS:
+                return evaluateLong(expr.left) != evaluateLong(expr.right);
+            default:
+                return null;
+        }
+    }
+
+    // equality stays with Operators, where NaN equals itself
+    private Object realBinary(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case PLUS:
+            case MINUS:
+            case STAR:
+            case SLASH:
+            case MODULO:
+                return evaluateDouble(expr);
+            case GREATER:
+                return evaluateDouble(expr.left) > evaluateDouble(expr.right);
+            case GREATER_EQUALS:
+                return evaluateDouble(expr.left) >= evaluateDouble(expr.right);
+            case LESS:
+                return evaluateDouble(expr.left) < evaluateDouble(expr.right);
+            case LESS_EQUALS:
+                return evaluateDouble(expr.left) <= evaluateDouble(expr.right);
+            default:
+                return null;
+        }
+    }
+
+    // An expression the type inference proved to be an integer. Only the
+    // leaves are unboxed, the nodes in between never box anything. It
+    // throws IntegerOverflow when the integer does not fit in a long after
+    // all, for whoever started it to evaluate it boxed.
+    private long evaluateLong(Expr expr) {
+        if (expr instanceof Expr.Variable variable) {
+            if (variable.depth >= 0) return environment.getLongAt(variable.depth, variable.slot);
+            return Operators.integer(lookUpVariable(variable.name, variable.depth, variable.slot, variable.upvalue));
+        }
+        if (expr instanceof Expr.Literal literal) return (long) literal.value;
+        if (expr instanceof Expr.Binary binary) {
+            long left = evaluateLong(binary.left);
+            long right = evaluateLong(binary.right);
+            switch (binary.operator.type) {
+                case PLUS:
+                    return Operators.addExact(left, right);
+                case MINUS:
+                    return Operators.subtractExact(left, right);
+                case STAR:
+                    return Operators.multiplyExact(left, right);
+                case MODULO:
+                    if (right == 0) throw new RuntimeError(binary.operator, "Impartire la zero");
+                    return left % right;
+            }
+        }
+        if (expr instanceof Expr.Unary unary) return Operators.negateExact(evaluateLong(unary.right));
+        if (expr instanceof Expr.Grouping grouping) return evaluateLong(grouping.expression);
+        return Operators.integer(evaluate(expr));
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) {
+    // an expression proven to be a number, integers widened
+    private double evaluateDouble(Expr expr) {
+        if (expr instanceof Expr.Variable variable) {
+            if (variable.depth >= 0) return environment.getDoubleAt(variable.depth, variable.slot);
+            return Operators.toDouble(lookUpVariable(variable.name, variable.depth, variable.slot, variable.upvalue));
+        }
+        if (expr instanceof Expr.Literal literal) return Operators.toDouble(literal.value);
+        if (expr instanceof Expr.Binary binary) {
+            if (binary.type == TypeInference.INTEGER) return evaluateLong(binary);
+            double left = evaluateDouble(binary.left);
+            double right = evaluateDouble(binary.right);
+            switch (binary.operator.type) {
+                case PLUS:
+                    return left + right;
+                case MINUS:
+                    return left - right;
+                case STAR:
+                    return left * right;
+                case SLASH:
+                    return left / right;
+                case MODULO:
+                    return left % right;
+            }
+        }
+        if (expr instanceof Expr.Unary unary) return -evaluateDouble(unary.right);
+        if (expr instanceof Expr.Grouping grouping) return evaluateDouble(grouping.expression);
+        return Operators.toDouble(evaluate(expr));
+    }
+
+    private Completion execute(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    Completion executeBlock(List<Stmt> statements, Environment environment) {
 
         Environment previous = this.environment;
         try {
             this.environment = environment;
             for (Stmt statement : statements) {
-                execute(statement);
+                Completion completion = execute(statement);
+                if (completion != Completion.NORMAL) return completion;
             }
+            return Completion.NORMAL;
         } finally {
             this.environment = previous;
         }
     }
 
-    private boolean isTruthy(Object object) {
-
-        if (object == null) return false;
-        if (object instanceof Boolean) return (boolean) object;
-        return true;
+    // the variables as the nodes see them, from the frames open here
+    public Object local(int depth, int slot) {
+        return environment.getAt(depth, slot);
     }
 
-    private String stringify(Object object) {
-
-        if (object == null) return "nil";
+    public void assignLocal(int depth, int slot, Object value) {
+        environment.assignAt(depth, slot, value);
+    }
 
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                text = text.substring(0, text.length() - 2);
-            }
-            return text;
-        }
+    public Object upvalue(int index) {
+        return upvalues[index].value;
+    }
 
-        return object.toString();
+    public void assignUpvalue(int index, Object value) {
+        upvalues[index].value = value;
     }
 
-    private boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null) return false;
+    // only waits for the compilation, the module runs on first use
+    public RocModule load(Stmt.Import stmt) {
 
-        return a.equals(b);
-    }
+        Path file = moduleFile(stmt);
+        if (!Files.isRegularFile(file)) {
+            throw new RuntimeError(stmt.keyword, "Nu exista modulul '" + moduleName(stmt) + "'");
+        }
 
-    private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) return;
-        throw new RuntimeError(operator, "Operandul trebuie sa fie numar.");
+        RocModule module = modules.module(file, stmt.keyword);
+        if (!module.compiled()) {
+            throw new RuntimeError(stmt.keyword, "Modulul '" + moduleName(stmt) + "' are erori");
+        }
+        return module;
     }
 
-    private void checkNumberOperands(Token operator,
-                                     Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) return;
+    // false when there is no such module
+    public boolean preload(Stmt.Import stmt) {
+        Path file = moduleFile(stmt);
+        if (!Files.isRegularFile(file)) return false;
+        modules.request(file, stmt.keyword);
+        return true;
+    }
 
-        throw new RuntimeError(operator, "Operanzii trebuie sa fie numere.");
+    public static String moduleName(Stmt.Import stmt) {
+        StringBuilder name = new StringBuilder();
+        for (Token part : stmt.path) {
+            if (name.length() > 0) name.append('.');
+            name.append(part.lexeme);
+        }
+        return name.toString();
     }
 
-    public void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    private Path moduleFile(Stmt.Import stmt) {
+        Path file = directory;
+        for (int i = 0; i < stmt.path.size() - 1; i++) {
+            file = file.resolve(stmt.path.get(i).lexeme);
+        }
+        return file.resolve(stmt.path.get(stmt.path.size() - 1).lexeme + ".roc");
     }
 
-    private Object lookUpVariable(Token name, Expr expr) {
+    // with neither a depth nor an upvalue the resolver left the name to the globals
+    private Object lookUpVariable(Token name, int depth, int slot, int upvalue) {
 
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
+        if (depth >= 0) {
+            return environment.getAt(depth, slot);
+        } else if (upvalue >= 0) {
+            return upvalues[upvalue].value;
         } else {
             return globals.get(name);
         }
@@ -0,0 +1,231 @@
+package roc.interpreter;
+
+import roc.lexer.Token;
+
+// What the operators do to values. Shared by everything that has to agree
+// with the interpreter on the result of an expression.
+public final class Operators {
+
+    private Operators() {
+    }
+
+    public static Object binary(Token operator, Object left, Object right) {
+
+        // Two integers give an integer, anything else numeric is done in
+        // double. The exceptions are '/', which always divides as reals, and
+        // a result too big for a long, which is worked out in double too.
+        switch (operator.type) {
+            case MINUS:
+                if (left instanceof Long && right instanceof Long) {
+                    return subtract((long) left, (long) right);
+                }
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) - toDouble(right);
+            case STAR:
+                if (left instanceof Long && right instanceof Long) {
+                    return multiply((long) left, (long) right);
+                }
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) * toDouble(right);
+            case SLASH:
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) / toDouble(right);
+            case PLUS:
+                if (left instanceof Long && right instanceof Long) {
+                    return add((long) left, (long) right);
+                } else if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) + toDouble(right);
+                } else if (left instanceof String || right instanceof String) {
+                    return stringify(left) + stringify(right);
+                }
+                throw new RuntimeError(operator,
+                        "Operanzii trebuie sa fie doua numere, intregi sau reale, sau unul un sir");
+            case MODULO:
+                if (left instanceof Long && right instanceof Long) {
+                    if ((long) right == 0) {
+                        throw new RuntimeError(operator, "Impartire la zero");
+                    }
+                    return (long) left % (long) right;
+                } else if (isNumber(left) && isNumber(right)) {
+                    return toDouble(left) % toDouble(right);
+                }
+                throw new RuntimeError(operator,
+                        "Operanzii trebuie sa fie doua numere, intregi sau reale");
+            case GREATER:
+                if (left instanceof Long && right instanceof Long) {
+                    return (long) left > (long) right;
+                }
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) > toDouble(right);
+            case GREATER_EQUALS:
+                if (left instanceof Long && right instanceof Long) {
+                    return (long) left >= (long) right;
+                }
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) >= toDouble(right);
+            case LESS:
+                if (left instanceof Long && right instanceof Long) {
+                    return (long) left < (long) right;
+                }
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) < toDouble(right);
+            case LESS_EQUALS:
+                if (left instanceof Long && right instanceof Long) {
+                    return (long) left <= (long) right;
+                }
+                checkNumberOperands(operator, left, right);
+                return toDouble(left) <= toDouble(right);
+
+            case EXMARK_EQUALS:
+                return !isEqual(left, right);
+            case EQUALS_EQUALS:
+                return isEqual(left, right);
+            default:
+                return null;
+        }
+    }
+
+    public static Object unary(Token operator, Object right) {
+
+        switch (operator.type) {
+            case MINUS:
+                if (right instanceof Long) return negate((long) right);
+                checkNumberOperand(operator, right);
+                return -(double) right;
+            case EXMARK:
+                return !isTruthy(right);
+            default:
+                return null;
+        }
+    }
+
+    // Integer arithmetic never wraps around. A result a long cannot hold is
+    // worked out in double instead, the way every number was before there
+    // were integers.
+    public static Object add(long left, long right) {
+        try {
+            return Math.addExact(left, right);
+        } catch (ArithmeticException e) {
+            return (double) left + (double) right;
+        }
+    }
+
+    public static Object subtract(long left, long right) {
+        try {
+            return Math.subtractExact(left, right);
+        } catch (ArithmeticException e) {
+            return (double) left - (double) right;
+        }
+    }
+
+    public static Object multiply(long left, long right) {
+        try {
+            return Math.multiplyExact(left, right);
+        } catch (ArithmeticException e) {
+            return (double) left * (double) right;
+        }
+    }
+
+    public static Object negate(long right) {
+        try {
+            return Math.negateExact(right);
+        } catch (ArithmeticException e) {
+            return -(double) right;
+        }
+    }
+
+    // The unboxed paths have no way to hand back a real, so there a result
+    // that does not fit in a long is reported for the expression to be
+    // worked out again boxed.
+    public static long addExact(long left, long right) {
+        try {
+            return Math.addExact(left, right);
+        } catch (ArithmeticException e) {
+            throw IntegerOverflow.INSTANCE;
+        }
+    }
+
+    public static long subtractExact(long left, long right) {
+        try {
+            return Math.subtractExact(left, right);
+        } catch (ArithmeticException e) {
+            throw IntegerOverflow.INSTANCE;
+        }
+    }
+
+    public static long multiplyExact(long left, long right) {
+        try {
+            return Math.multiplyExact(left, right);
+        } catch (ArithmeticException e) {
+            throw IntegerOverflow.INSTANCE;
+        }
+    }
+
+    public static long negateExact(long right) {
+        try {
+            return Math.negateExact(right);
+        } catch (ArithmeticException e) {
+            throw IntegerOverflow.INSTANCE;
+        }
+    }
+
+    // a value the type inference proved an integer, unless it overflowed
+    public static long integer(Object value) {
+        if (value instanceof Long number) return number;
+        throw IntegerOverflow.INSTANCE;
+    }
+
+    public static boolean isTruthy(Object object) {
+
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean) object;
+        return true;
+    }
+
+    public static String stringify(Object object) {
+
+        if (object == null) return "nil";
+
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return object.toString();
+    }
+
+    public static boolean isEqual(Object a, Object b) {
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+
+        // 1 == 1.0
+        if (a instanceof Long && b instanceof Double || a instanceof Double && b instanceof Long) {
+            return toDouble(a) == toDouble(b);
+        }
+        return a.equals(b);
+    }
+
+    public static boolean isNumber(Object value) {
+        return value instanceof Long || value instanceof Double;
+    }
+
+    static double toDouble(Object value) {
+        if (value instanceof Long) return (long) value;
+        return (double) value;
+    }
+
+    private static void checkNumberOperand(Token operator, Object operand) {
+        if (operand instanceof Double) return;
+        throw new RuntimeError(operator, "Operandul trebuie sa fie numar.");
+    }
+
+    private static void checkNumberOperands(Token operator,
+                                            Object left, Object right) {
+        if (isNumber(left) && isNumber(right)) return;
+
+        throw new RuntimeError(operator, "Operanzii trebuie sa fie numere.");
+    }
+}
@@ -0,0 +1,74 @@
+package roc.interpreter;
+
+import roc.lexer.Token;
+
+// The inline cache of one property site. For the last few shapes seen
+// there it keeps the slot of the field, or -1 and the method when
+// instances of that shape do not have the field; shapes belong to one
+// class, so the method is that class's. For a set it keeps the slot the
+// field goes in and the shape the instance has afterwards. Past that many
+// shapes the site does the lookups every time. The VM's instances are
+// cached the same way, with methods of their own kind.
+public final class PropertyCache {
+
+    private static final int ENTRIES = 4;
+
+    private final Token name;
+    private final Shape[] shapes = new Shape[ENTRIES];
+    private final int[] slots = new int[ENTRIES];
+    private final Object[] methods = new Object[ENTRIES];
+    private final Shape[] next = new Shape[ENTRIES];
+    private int size;
+
+    public PropertyCache(Token name) {
+        this.name = name;
+    }
+
+    public Object get(ShapedInstance instance) {
+        int entry = entry(instance, false);
+        if (entry < 0) return instance.get(name);
+
+        if (slots[entry] >= 0) return instance.values[slots[entry]];
+        if (methods[entry] != null) return instance.bind(methods[entry]);
+        return instance.get(name);
+    }
+
+    // the method a call of the name runs on the instance, or null when the
+    // instance has a field by that name or there is neither
+    public RocFunction method(RocInstance instance) {
+        int entry = entry(instance, false);
+        if (entry >= 0) return (RocFunction) methods[entry];
+        if (instance.shape.slot(name.lexeme) >= 0) return null;
+        return instance.clasa.findMethod(name.lexeme);
+    }
+
+    public void set(ShapedInstance instance, Object value) {
+        int entry = entry(instance, true);
+        if (entry < 0) {
+            instance.set(name, value);
+        } else {
+            instance.put(next[entry], slots[entry], value);
+        }
+    }
+
+    // the entry for the instance's shape, added if there is room, or -1
+    private int entry(ShapedInstance instance, boolean set) {
+        Shape shape = instance.shape;
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape) return i;
+        }
+        if (size == ENTRIES) return -1;
+
+        int slot = shape.slot(name.lexeme);
+        shapes[size] = shape;
+        slots[size] = slot;
+        next[size] = shape;
+        if (slot < 0 && set) {
+            slots[size] = shape.size();
+            next[size] = shape.add(name.lexeme);
+        } else if (slot < 0) {
+            methods[size] = instance.findMethod(name.lexeme);
+        }
+        return size++;
+    }
+}
@@ -1,12 +0,0 @@
-package roc.interpreter;
-
-public class Return extends RuntimeException {
-
-    final Object value;
-
-    Return(Object value) {
-
-        super(null, null, false, false);
-        this.value = value;
-    }
-}
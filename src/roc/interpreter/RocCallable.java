@@ -1,5 +1,7 @@
 package roc.interpreter;
 
+import roc.lexer.Token;
+
 import java.util.List;
 
 public interface RocCallable {
@@ -7,4 +9,9 @@ public interface RocCallable {
     int arity();
 
     Object call(Interpreter interpreter, List<Object> arguments);
+
+    // with the call site, for the engines that count the call against it
+    default Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        return call(interpreter, arguments);
+    }
 }
@@ -1,18 +1,30 @@
 package roc.interpreter;
 
+import roc.lexer.Token;
+
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class RocClass implements RocCallable {
 
     final String name;
-    final RocClass superclass;
+    // its own methods over the ones it inherits, so a lookup is one step
+    // however deep the hierarchy
     private final Map<String, RocFunction> methods;
+    private final RocFunction initializer;
+    // the shape its instances start on
+    final Shape shape = new Shape();
 
     public RocClass(String name, RocClass superclass, Map<String, RocFunction> methods) {
         this.name = name;
-        this.superclass = superclass;
+        if (superclass != null) {
+            Map<String, RocFunction> inherited = new HashMap<>(superclass.methods);
+            inherited.putAll(methods);
+            methods = inherited;
+        }
         this.methods = methods;
+        this.initializer = methods.get("init");
     }
 
     @Override
@@ -22,31 +34,26 @@ public class RocClass implements RocCallable {
 
     @Override
     public int arity() {
-        RocFunction initializer = findMethod("init");
         if (initializer == null) return 0;
         return initializer.arity();
     }
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(interpreter, arguments, null);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
 
         RocInstance instance = new RocInstance(this);
-        RocFunction initializer = findMethod("init");
         if (initializer != null) {
-            initializer.bind(instance).call(interpreter, arguments);
+            initializer.invoke(instance, arguments, paren);
         }
         return instance;
     }
 
     RocFunction findMethod(String name) {
-        if (methods.containsKey(name)) {
-            return methods.get(name);
-        }
-
-        if (superclass != null) {
-            return superclass.findMethod(name);
-        }
-
-        return null;
+        return methods.get(name);
     }
 }
@@ -1,5 +1,9 @@
 package roc.interpreter;
 
+import roc.jit.CompiledFunction;
+import roc.jit.Jit;
+import roc.lexer.Token;
+import roc.memory.Cell;
 import roc.memory.Environment;
 import roc.parser.Stmt;
 
@@ -7,14 +11,33 @@ import java.util.List;
 
 public class RocFunction implements RocCallable {
 
+    // the interpreter holding this function's resolution, which is not the
+    // caller's one when the function comes from another module
+    private final Interpreter owner;
     private final Stmt.Function declaration;
-    private final Environment closure;
+    // only the variables of enclosing functions the body uses
+    private final Cell[] upvalues;
+    // set on a bound method, it takes the first slot of the frame
+    private final RocInstance instance;
 
     private final boolean isInitializer;
 
-    public RocFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+    // calls and iterations of its own loops run in the tree walker so far,
+    // negative once it was compiled or found it cannot be
+    private long hotness;
+    // what the function runs as once it got hot, if it could be compiled
+    private CompiledFunction compiled;
+
+    public RocFunction(Interpreter owner, Stmt.Function declaration, Cell[] upvalues, boolean isInitializer) {
+        this(owner, declaration, upvalues, null, isInitializer);
+    }
+
+    private RocFunction(Interpreter owner, Stmt.Function declaration, Cell[] upvalues,
+                        RocInstance instance, boolean isInitializer) {
+        this.owner = owner;
         this.declaration = declaration;
-        this.closure = closure;
+        this.upvalues = upvalues;
+        this.instance = instance;
         this.isInitializer = isInitializer;
     }
 
@@ -26,19 +49,110 @@ public class RocFunction implements RocCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call((RocInstance) null, arguments);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        return counted(null, arguments, paren);
+    }
+
+    // A method of a class called on the instance directly, without binding
+    // it first. Never compiled, like the bound ones.
+    public Object invoke(RocInstance receiver, List<Object> arguments, Token paren) {
+        return counted(receiver, arguments, paren);
+    }
+
+    // A call made at a site of the program counts against MAX_CALLS, and
+    // one the Java stack has no room for fails the same way.
+    private Object counted(RocInstance receiver, List<Object> arguments, Token paren) {
+        owner.enterCall(paren);
+        try {
+            return call(receiver, arguments);
+        } catch (StackOverflowError e) {
+            if (paren == null) throw e;
+            throw Interpreter.tooManyCalls(paren);
+        } finally {
+            owner.leaveCall();
+        }
+    }
 
-        Environment environment = new Environment(closure);
+    // With no receiver a function runs on the instance it is bound to, if
+    // any. A tail call is made here, once the frame of the function making
+    // it is gone, so tail recursion runs in constant stack.
+    Object call(RocInstance receiver, List<Object> arguments) {
+        RocFunction function = this;
+        for (;;) {
+            if (receiver == null) receiver = function.instance;
+            CompiledFunction compiled = receiver == null ? function.compiled() : null;
+            Object result = compiled != null ? compiled.call(arguments) : function.run(receiver, arguments);
+            if (result != Completion.TAIL_CALL) return result;
+
+            Interpreter owner = function.owner;
+            RocCallable callee = owner.tailCallee;
+            receiver = owner.tailReceiver;
+            arguments = owner.takeTailArguments();
+            // anything else is called once, it has no frame to give up
+            if (!(callee instanceof RocFunction next)) return callee.call(owner, arguments);
+            function = next;
+        }
+    }
+
+    // the code to run instead, once the function got hot
+    private CompiledFunction compiled() {
+        if (hotness >= Jit.THRESHOLD) compile();
+        return compiled;
+    }
+
+    // the code a loop that ran hot in the tree walker goes on in, if any
+    CompiledFunction loopEntry() {
+        compile();
+        return compiled;
+    }
+
+    // Compiled once or never. Methods are not, they run on a receiver the
+    // compiled code has no slot for.
+    private void compile() {
+        if (hotness < 0) return;
+        hotness = Long.MIN_VALUE;
+        if (instance == null && !isInitializer) compiled = Jit.compile(owner, this, declaration);
+    }
+
+    // the result, or TAIL_CALL with the call to make left with the owner
+    private Object run(RocInstance instance, List<Object> arguments) {
+
+        // the instance and then the parameters take the first slots of the frame
+        Environment environment = owner.frames.push(null, declaration.frameSize);
+        int first = 0;
+        if (instance != null) environment.define(first++, instance);
         for (int i = 0; i < declaration.params.size(); i++) {
-            environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+            environment.define(first + i, arguments.get(i));
         }
 
+        // the loops count for this call alone, not for the caller's
+        Cell[] caller = owner.upvalues;
+        RocFunction running = owner.running;
+        long loops = owner.backEdges;
+        owner.upvalues = upvalues;
+        owner.running = instance == null ? this : null;
+        owner.backEdges = 0;
+        Completion completion;
         try {
-            interpreter.executeBlock(declaration.body, environment);
-        } catch (Return returnValue) {
-            if(isInitializer) return closure.getAt(0, "this");
-            return returnValue.value;
+            completion = owner.executeBlock(declaration.body, environment);
+        } finally {
+            hotness += 1 + owner.backEdges;
+            owner.upvalues = caller;
+            owner.running = running;
+            owner.backEdges = loops;
+            owner.frames.pop(environment);
         }
-        return null;
+        if (completion == Completion.TAIL_CALL) return completion;
+        if (isInitializer) return instance;
+        if (completion != Completion.RETURN) return null;
+
+        Object value = owner.returned;
+        owner.returned = null;
+        return value;
     }
 
     @Override
@@ -48,8 +162,6 @@ public class RocFunction implements RocCallable {
 
     RocFunction bind(RocInstance instance) {
 
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new RocFunction(declaration, environment, isInitializer);
+        return new RocFunction(owner, declaration, upvalues, instance, isInitializer);
     }
 }
@@ -1,32 +1,22 @@
 package roc.interpreter;
 
-import roc.lexer.Token;
+public class RocInstance extends ShapedInstance {
 
-import java.util.HashMap;
-import java.util.Map;
-
-public class RocInstance {
-
-    private final RocClass clasa;
-    private final Map<String, Object> fields = new HashMap<>();
+    final RocClass clasa;
 
     RocInstance(RocClass clasa) {
+        super(clasa.shape);
         this.clasa = clasa;
     }
 
-    public Object get(Token name) {
-
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
-        }
-
-        RocFunction method = clasa.findMethod(name.lexeme);
-        if (method != null) return method.bind(this);
-        throw new RuntimeError(name, "Proprietate nedefinita '" + name.lexeme + "'");
+    @Override
+    protected Object findMethod(String name) {
+        return clasa.findMethod(name);
     }
 
-    public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+    @Override
+    protected Object bind(Object method) {
+        return ((RocFunction) method).bind(this);
     }
 
     @Override
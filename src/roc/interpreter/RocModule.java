@@ -0,0 +1,41 @@
+package roc.interpreter;
+
+import roc.lexer.Token;
+import roc.parser.Stmt;
+
+import java.util.List;
+
+public class RocModule {
+
+    private final String name;
+    private final Interpreter interpreter;
+    // null when the module did not compile
+    private final List<Stmt> statements;
+    private boolean started = false;
+
+    public RocModule(String name, Interpreter interpreter, List<Stmt> statements) {
+        this.name = name;
+        this.interpreter = interpreter;
+        this.statements = statements;
+    }
+
+    public boolean compiled() {
+        return statements != null;
+    }
+
+    // The top-level code runs the first time something is read from the
+    // module. A circular import sees what has been defined so far.
+    public Object get(Token name) {
+
+        if (!started) {
+            started = true;
+            interpreter.executeBlock(statements, interpreter.globals);
+        }
+        return interpreter.globals.get(name);
+    }
+
+    @Override
+    public String toString() {
+        return "<modulul " + name + ">";
+    }
+}
@@ -0,0 +1,46 @@
+package roc.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The fields an instance has and the slot each one is in. A class starts
+// its instances on an empty shape of its own, and setting a field an
+// instance lacks moves it to the shape with that field added. Every
+// instance taking that step gets the same shape, so instances given their
+// fields in the same order share one table instead of a map each.
+public final class Shape {
+
+    private final Map<String, Integer> slots;
+    // the shapes one more field leads to
+    private final Map<String, Shape> transitions = new HashMap<>();
+
+    public Shape() {
+        this(new HashMap<>());
+    }
+
+    private Shape(Map<String, Integer> slots) {
+        this.slots = slots;
+    }
+
+    // -1 for a field the shape does not have
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    // the shape with the field in the next slot
+    Shape add(String name) {
+        Shape next = transitions.get(name);
+        if (next == null) {
+            Map<String, Integer> added = new HashMap<>(slots);
+            added.put(name, slots.size());
+            next = new Shape(added);
+            transitions.put(name, next);
+        }
+        return next;
+    }
+}
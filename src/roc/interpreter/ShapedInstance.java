@@ -0,0 +1,55 @@
+package roc.interpreter;
+
+import roc.lexer.Token;
+
+import java.util.Arrays;
+
+// What the tree walker's instances and the VM's have in common: fields in
+// the slots a shape gives them, so a PropertyCache serves the property
+// sites of either. Their methods stay with their own kind of class.
+public abstract class ShapedInstance {
+
+    private static final Object[] NO_FIELDS = new Object[0];
+
+    Shape shape;
+    Object[] values = NO_FIELDS;
+
+    protected ShapedInstance(Shape shape) {
+        this.shape = shape;
+    }
+
+    // the method of its class by the name, or null
+    protected abstract Object findMethod(String name);
+
+    // the method bound to this instance
+    protected abstract Object bind(Object method);
+
+    public Object get(Token name) {
+
+        int slot = shape.slot(name.lexeme);
+        if (slot >= 0) return values[slot];
+
+        Object method = findMethod(name.lexeme);
+        if (method != null) return bind(method);
+        throw new RuntimeError(name, "Proprietate nedefinita '" + name.lexeme + "'");
+    }
+
+    public void set(Token name, Object value) {
+
+        int slot = shape.slot(name.lexeme);
+        if (slot >= 0) {
+            values[slot] = value;
+        } else {
+            put(shape.add(name.lexeme), shape.size(), value);
+        }
+    }
+
+    // the shape is the one after the field is set
+    void put(Shape next, int slot, Object value) {
+        if (next != shape) {
+            if (slot == values.length) values = Arrays.copyOf(values, Math.max(4, slot * 2));
+            shape = next;
+        }
+        values[slot] = value;
+    }
+}
@@ -0,0 +1,274 @@
+package roc.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Just enough of the class file format for the compiled functions: one
+// class, its constant pool and methods with their code. It is written as
+// version 49, which the JVM still checks by inferring the types itself,
+// so there are no stack map frames to compute.
+final class ClassFile {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolSize = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<Method> methods = new ArrayList<>();
+
+    ClassFile(String name, String superName) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+    }
+
+    Method method(int access, String name, String descriptor) {
+        Method method = new Method(access, utf8(name), utf8(descriptor));
+        methods.add(method);
+        return method;
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            int code = utf8("Code");
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolSize);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (Method method : methods) {
+                method.write(out, code);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, 1, 1, out -> out.writeUTF(value));
+    }
+
+    int classRef(String name) {
+        int utf8 = utf8(name);
+        return entry("C" + name, 7, 1, out -> out.writeShort(utf8));
+    }
+
+    int string(String value) {
+        int utf8 = utf8(value);
+        return entry("S" + value, 8, 1, out -> out.writeShort(utf8));
+    }
+
+    int integer(int value) {
+        return entry("I" + value, 3, 1, out -> out.writeInt(value));
+    }
+
+    // longs and doubles take two entries of the pool
+    int longConstant(long value) {
+        return entry("J" + value, 5, 2, out -> out.writeLong(value));
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return entry("D" + bits, 6, 2, out -> out.writeLong(bits));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return member(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return member(10, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor) {
+        return member(11, owner, name, descriptor);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + " " + descriptor, 12, 1, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return entry(tag + owner + "." + name + descriptor, tag, 1, out -> {
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private int entry(String key, int tag, int size, Body body) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+
+        index = poolSize;
+        try {
+            poolOut.writeByte(tag);
+            body.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        poolSize += size;
+        if (poolSize > 0xFFFF) throw new TooLarge();
+        entries.put(key, index);
+        return index;
+    }
+
+    // thrown when the code does not fit in what a method can hold
+    static final class TooLarge extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TooLarge() {
+            super(null, null, false, false);
+        }
+    }
+
+    static final class Label {
+        private int position = -1;
+        // the stack depth the jumps leave, for the code after the label
+        private int stack = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+    }
+
+    // The code of one method. Every instruction is given its effect on the
+    // operand stack, so the deepest point is known when it is written out.
+    final class Method {
+
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final List<Label> labels = new ArrayList<>();
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        private Method(int access, int name, int descriptor) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        ClassFile owner() {
+            return ClassFile.this;
+        }
+
+        void locals(int count) {
+            maxLocals = Math.max(maxLocals, count);
+        }
+
+        void op(int opcode, int effect) {
+            code.write(opcode);
+            adjust(effect);
+        }
+
+        void op1(int opcode, int operand, int effect) {
+            code.write(opcode);
+            code.write(operand);
+            adjust(effect);
+        }
+
+        void op2(int opcode, int operand, int effect) {
+            code.write(opcode);
+            code.write(operand >> 8);
+            code.write(operand);
+            adjust(effect);
+        }
+
+        void invokeinterface(int method, int argumentSlots, int effect) {
+            code.write(0xB9);
+            code.write(method >> 8);
+            code.write(method);
+            code.write(argumentSlots + 1);
+            code.write(0);
+            adjust(effect);
+        }
+
+        Label label() {
+            Label label = new Label();
+            labels.add(label);
+            return label;
+        }
+
+        void jump(int opcode, Label target, int effect) {
+            adjust(effect);
+            target.stack = stack;
+            target.jumps.add(code.size());
+            code.write(opcode);
+            code.write(0);
+            code.write(0);
+        }
+
+        void place(Label label) {
+            label.position = code.size();
+            if (label.stack >= 0) stack = label.stack;
+        }
+
+        // the depth after code only jumps reach, like the one after a goto
+        void stack(int depth) {
+            stack = depth;
+        }
+
+        int stack() {
+            return stack;
+        }
+
+        private void adjust(int effect) {
+            stack += effect;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void write(DataOutputStream out, int codeAttribute) throws IOException {
+            byte[] bytes = code.toByteArray();
+            if (bytes.length > 0xFFFF) throw new TooLarge();
+            for (Label label : labels) {
+                for (int jump : label.jumps) {
+                    int offset = label.position - jump;
+                    if (offset != (short) offset) throw new TooLarge();
+                    bytes[jump + 1] = (byte) (offset >> 8);
+                    bytes[jump + 2] = (byte) offset;
+                }
+            }
+
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + bytes.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+}
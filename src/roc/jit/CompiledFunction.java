@@ -0,0 +1,181 @@
+package roc.jit;
+
+import roc.interpreter.Completion;
+import roc.interpreter.Interpreter;
+import roc.interpreter.PropertyCache;
+import roc.interpreter.RocCallable;
+import roc.interpreter.RocFunction;
+import roc.interpreter.RocInstance;
+import roc.interpreter.RocModule;
+import roc.interpreter.RuntimeError;
+import roc.interpreter.ShapedInstance;
+import roc.lexer.Token;
+import roc.memory.Environment;
+import roc.parser.Stmt;
+
+import java.util.Arrays;
+import java.util.List;
+
+// What the class generated for a function extends. The generated code
+// only does arithmetic, jumps and locals itself, everything else comes
+// back here and does what the interpreter would.
+public abstract class CompiledFunction {
+
+    protected final Interpreter interpreter;
+    protected final Environment globals;
+    // what the function's name holds while it still names this function
+    protected final Object function;
+    // the tokens the errors point at and the caches of the property sites
+    protected final Object[] constants;
+    // raised by an integer that did not fit in a long, until the code
+    // that took it works it out again boxed
+    protected boolean overflowed;
+
+    protected CompiledFunction(Interpreter interpreter, Object function, Object[] constants) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+        this.function = function;
+        this.constants = constants;
+    }
+
+    // TAIL_CALL when the function ended in a call RocFunction.call makes
+    public abstract Object call(List<Object> arguments);
+
+    // The rest of the function from the head of one of its loops, with the
+    // locals the tree walker left in the frames, returning what call would.
+    public abstract Object resume(Stmt loop, Environment frame);
+
+    protected final Object global(Token name, int slot) {
+        return globals.get(name, slot);
+    }
+
+    protected final void setGlobal(Token name, int slot, Object value) {
+        globals.assign(name, slot, value);
+    }
+
+    protected final Object call(Object callee, Object[] arguments, Token paren) {
+        if (!(callee instanceof RocCallable function)) {
+            throw new RuntimeError(paren, "Putem apela doar functii");
+        }
+        Interpreter.checkArity(function.arity(), arguments.length, paren);
+        return function.call(interpreter, Arrays.asList(arguments), paren);
+    }
+
+    protected final Object tailCall(Object callee, Object[] arguments, Token paren) {
+        return interpreter.tailCall(callee, Arrays.asList(arguments), paren);
+    }
+
+    // around the function calling itself directly, which counts as any call
+    protected final void enter(Token paren) {
+        interpreter.enterCall(paren);
+    }
+
+    protected final void leave() {
+        interpreter.leaveCall();
+    }
+
+    // what the function calling itself directly got back, its tail call made
+    protected final Object result(Object value) {
+        return value == Completion.TAIL_CALL ? interpreter.finishTailCall() : value;
+    }
+
+    protected static Object property(Object object, PropertyCache cache, Token name) {
+        if (object instanceof ShapedInstance instance) return cache.get(instance);
+        if (object instanceof RocModule module) return module.get(name);
+        throw new RuntimeError(name, "Poti avea proprietati doar pe instante");
+    }
+
+    // the method a call of the name runs on the object, or null when
+    // reading the property has to decide
+    protected static RocFunction method(Object object, PropertyCache cache) {
+        if (object instanceof RocInstance instance) return cache.method(instance);
+        return null;
+    }
+
+    protected final Object invoke(Object object, RocFunction method, Object[] arguments, Token paren) {
+        Interpreter.checkArity(method.arity(), arguments.length, paren);
+        return method.invoke((RocInstance) object, Arrays.asList(arguments), paren);
+    }
+
+    protected final Object tailInvoke(Object object, RocFunction method, Object[] arguments, Token paren) {
+        return interpreter.tailInvoke((RocInstance) object, method, Arrays.asList(arguments), paren);
+    }
+
+    protected static Object instance(Object object, Token name) {
+        if (!(object instanceof ShapedInstance)) {
+            throw new RuntimeError(name, "Doar instantele pot avea proprietati");
+        }
+        return object;
+    }
+
+    protected static void setProperty(Object object, Object value, PropertyCache cache) {
+        cache.set((ShapedInstance) object, value);
+    }
+
+    // The integer helpers raise the flag instead of wrapping around, and
+    // what they give back then means nothing.
+    protected final long add(long left, long right) {
+        try {
+            return Math.addExact(left, right);
+        } catch (ArithmeticException overflow) {
+            overflowed = true;
+            return 0;
+        }
+    }
+
+    protected final long subtract(long left, long right) {
+        try {
+            return Math.subtractExact(left, right);
+        } catch (ArithmeticException overflow) {
+            overflowed = true;
+            return 0;
+        }
+    }
+
+    protected final long multiply(long left, long right) {
+        try {
+            return Math.multiplyExact(left, right);
+        } catch (ArithmeticException overflow) {
+            overflowed = true;
+            return 0;
+        }
+    }
+
+    protected final long negate(long right) {
+        if (right == Long.MIN_VALUE) {
+            overflowed = true;
+            return 0;
+        }
+        return -right;
+    }
+
+    // an operand that overflowed is left for the boxed code to divide
+    protected final long remainder(long left, long right, Token operator) {
+        if (overflowed) return 0;
+        if (right == 0) throw new RuntimeError(operator, "Impartire la zero");
+        return left % right;
+    }
+
+    // a value the type inference proved an integer, unless it overflowed
+    protected final long integer(Object value) {
+        if (value instanceof Long number) return number;
+        overflowed = true;
+        return 0;
+    }
+
+    // the locals resume starts with, a slot not declared yet still null
+    protected static Object valueAt(Environment frame, int distance, int slot) {
+        return frame.getAt(distance, slot);
+    }
+
+    protected static double doubleAt(Environment frame, int distance, int slot) {
+        Object value = frame.getAt(distance, slot);
+        return value == null ? 0 : toDouble(value);
+    }
+
+    // a value the type inference proved to be a number
+    protected static double toDouble(Object value) {
+        if (value instanceof Long) return (long) value;
+        return (double) value;
+    }
+}
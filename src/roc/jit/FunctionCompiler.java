@@ -0,0 +1,1299 @@
+package roc.jit;
+
+import roc.interpreter.PropertyCache;
+import roc.lexer.Token;
+import roc.lexer.TokenType;
+import roc.memory.Environment;
+import roc.parser.Expr;
+import roc.parser.Stmt;
+import roc.resolver.TypeInference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Turns one function into the bytecode of a class extending
+// CompiledFunction. Every local of the function gets a JVM local of its
+// own, unboxed when the type inference proved it an integer or a real,
+// so the arithmetic on it is plain long and double code HotSpot can
+// optimise like any Java method. Calls, globals and properties go
+// through the helpers of CompiledFunction.
+//
+// Only functions that neither capture nor declare anything are
+// compiled, they are the ones whose locals never leave the frame.
+//
+// An integer too big for a long raises the flag of CompiledFunction, and
+// a local keeps the real it turned into in an object local right after
+// its long, null while the long holds it. Whatever takes the long of an
+// integer expression checks the flag and, when it is up, evaluates the
+// expression again on boxed values, which it can since such an
+// expression only reads locals.
+//
+// The body is compiled twice: once as run, and once as resume, which
+// starts at the head of a loop the tree walker was running instead, with
+// the locals its frames held. That way a function called once whose
+// loop runs hot goes on compiled from the next iteration.
+final class FunctionCompiler implements Expr.Visitor<Integer>, Stmt.Visitor<Void> {
+
+    static final String NAME = "roc/jit/CompiledCode";
+
+    // thrown for what only the tree walker runs
+    static final class Unsupported extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    // what a value is on the operand stack or in a local
+    private static final int OBJECT = 0;
+    private static final int LONG = 1;
+    private static final int DOUBLE = 2;
+    private static final int BOOLEAN = 3;
+
+    private static final String SUPER = "roc/jit/CompiledFunction";
+    private static final String OPERATORS = "roc/interpreter/Operators";
+    private static final String TOKEN = "Lroc/lexer/Token;";
+    private static final String CACHE = "Lroc/interpreter/PropertyCache;";
+    private static final String FUNCTION = "Lroc/interpreter/RocFunction;";
+    private static final String OBJECT_TYPE = "Ljava/lang/Object;";
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int LCONST_0 = 0x09;
+    private static final int LCONST_1 = 0x0A;
+    private static final int DCONST_0 = 0x0E;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int LLOAD = 0x16;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int AALOAD = 0x32;
+    private static final int LSTORE = 0x37;
+    private static final int DSTORE = 0x39;
+    private static final int ASTORE = 0x3A;
+    private static final int AASTORE = 0x53;
+    private static final int POP = 0x57;
+    private static final int POP2 = 0x58;
+    private static final int DUP = 0x59;
+    private static final int SWAP = 0x5F;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6B;
+    private static final int DDIV = 0x6F;
+    private static final int DREM = 0x73;
+    private static final int DNEG = 0x77;
+    private static final int IXOR = 0x82;
+    private static final int L2D = 0x8A;
+    private static final int LCMP = 0x94;
+    private static final int DCMPL = 0x97;
+    private static final int DCMPG = 0x98;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9A;
+    private static final int IFLT = 0x9B;
+    private static final int IFGE = 0x9C;
+    private static final int IFGT = 0x9D;
+    private static final int IFLE = 0x9E;
+    private static final int IF_ACMPNE = 0xA6;
+    private static final int GOTO = 0xA7;
+    private static final int ARETURN = 0xB0;
+    private static final int RETURN = 0xB1;
+    private static final int GETSTATIC = 0xB2;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int ANEWARRAY = 0xBD;
+    private static final int CHECKCAST = 0xC0;
+    private static final int INSTANCEOF = 0xC1;
+    private static final int IFNULL = 0xC6;
+    private static final int IFNONNULL = 0xC7;
+
+    private final Stmt.Function declaration;
+    private final Environment globals;
+    private final String run;
+
+    // by the node opening each frame: the type of every slot, then the JVM local
+    private final Map<Object, int[]> types = new IdentityHashMap<>();
+    private final Map<Object, int[]> locals = new IdentityHashMap<>();
+    private final Map<Object, int[]> kinds = new IdentityHashMap<>();
+    // innermost last
+    private final List<Object> open = new ArrayList<>();
+    // the first JVM local no slot uses
+    private int size;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Token, Integer> tokens = new IdentityHashMap<>();
+
+    private final ClassFile file = new ClassFile(NAME, SUPER);
+    private ClassFile.Method code;
+    // right after the prologue, where a tail call to the function itself starts over
+    private ClassFile.Label top;
+    // where evadeaza and continua jump in the innermost loop
+    private ClassFile.Label exit;
+    private ClassFile.Label next;
+    // while compiling resume: every loop, its head and the frames open there
+    private boolean resuming;
+    private final List<Stmt> loops = new ArrayList<>();
+    private final List<ClassFile.Label> heads = new ArrayList<>();
+    private final List<List<Object>> frames = new ArrayList<>();
+    // while compiling an integer expression again after it overflowed:
+    // nothing is unboxed, and the integer locals are read boxed
+    private boolean generic;
+
+    FunctionCompiler(Stmt.Function declaration, Environment globals) {
+        this.declaration = declaration;
+        this.globals = globals;
+        this.run = "(" + OBJECT_TYPE.repeat(declaration.params.size()) + ")" + OBJECT_TYPE;
+    }
+
+    byte[] compile() {
+        if (declaration.captures.length > 0) throw new Unsupported();
+
+        open(declaration, declaration.frameSize);
+        int[] parameters = types.get(declaration);
+        for (int i = 0; i < declaration.params.size(); i++) {
+            parameters[i] = TypeInference.ANY;
+        }
+        scan(declaration.body);
+        open.clear();
+        allocate();
+
+        constructor();
+        entry();
+
+        code = file.method(ClassFile.ACC_PUBLIC, "run", run);
+        prologue();
+        top = code.label();
+        code.place(top);
+        body();
+        resume();
+        return file.toBytes();
+    }
+
+    private void body() {
+        open.add(declaration);
+        for (Stmt statement : declaration.body) {
+            statement.accept(this);
+        }
+        open.remove(open.size() - 1);
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+    }
+
+    // resume(Stmt, Environment) finds the loop among the constants, loads
+    // every slot of the frames open at its head and jumps there. Its
+    // arguments move past the locals first, the parameters' ones included.
+    private void resume() {
+        code = file.method(ClassFile.ACC_PUBLIC, "resume", "(Lroc/parser/Stmt;Lroc/memory/Environment;)" + OBJECT_TYPE);
+        int loop = size;
+        int frame = size + 1;
+        code.locals(size + 2);
+        // both loaded first, the loop may go where the frame came in
+        code.op1(ALOAD, 1, 1);
+        code.op1(ALOAD, 2, 1);
+        code.op1(ASTORE, frame, -1);
+        code.op1(ASTORE, loop, -1);
+        prologue();
+
+        ClassFile.Label dispatch = code.label();
+        code.jump(GOTO, dispatch, 0);
+        top = code.label();
+        code.place(top);
+        resuming = true;
+        body();
+        resuming = false;
+
+        code.place(dispatch);
+        for (int i = 0; i < loops.size(); i++) {
+            ClassFile.Label other = code.label();
+            code.op1(ALOAD, loop, 1);
+            constants.add(loops.get(i));
+            constant(constants.size() - 1, "roc/parser/Stmt");
+            code.jump(IF_ACMPNE, other, -2);
+            List<Object> open = frames.get(i);
+            for (int depth = 0; depth < open.size(); depth++) {
+                Object node = open.get(open.size() - 1 - depth);
+                int[] frameKinds = kinds.get(node);
+                int[] frameLocals = locals.get(node);
+                for (int slot = 0; slot < frameKinds.length; slot++) {
+                    code.op1(ALOAD, frame, 1);
+                    pushInt(depth);
+                    pushInt(slot);
+                    String descriptor = "(Lroc/memory/Environment;II)";
+                    switch (frameKinds[slot]) {
+                        case LONG:
+                            invoke(INVOKESTATIC, SUPER, "valueAt", descriptor + OBJECT_TYPE);
+                            storeBoxed(frameLocals[slot]);
+                            break;
+                        case DOUBLE:
+                            invoke(INVOKESTATIC, SUPER, "doubleAt", descriptor + "D");
+                            store(DOUBLE, frameLocals[slot]);
+                            break;
+                        default:
+                            invoke(INVOKESTATIC, SUPER, "valueAt", descriptor + OBJECT_TYPE);
+                            store(OBJECT, frameLocals[slot]);
+                    }
+                }
+            }
+            code.jump(GOTO, heads.get(i), 0);
+            code.place(other);
+        }
+        code.op(ACONST_NULL, 1);
+        code.op(ARETURN, -1);
+    }
+
+    // where resume can start, right before the loop's condition
+    private void head(Stmt loop, ClassFile.Label start) {
+        if (!resuming) return;
+        loops.add(loop);
+        heads.add(start);
+        frames.add(new ArrayList<>(open));
+    }
+
+    Object[] constants() {
+        return constants.toArray();
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.Assign expr) {
+        assign(expr);
+        // an assignment evaluates to nil
+        code.op(ACONST_NULL, 1);
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        if (expr.operands == TypeInference.INTEGER && !generic) {
+            switch (expr.operator.type) {
+                case PLUS:
+                    return longs(expr, "add");
+                case MINUS:
+                    return longs(expr, "subtract");
+                case STAR:
+                    return longs(expr, "multiply");
+                case MODULO:
+                    code.op1(ALOAD, 0, 1);
+                    compile(expr.left, LONG);
+                    compile(expr.right, LONG);
+                    token(expr.operator);
+                    invoke(INVOKEVIRTUAL, SUPER, "remainder", "(JJ" + TOKEN + ")J");
+                    return LONG;
+                case SLASH:
+                    return doubles(expr, DDIV);
+                case GREATER:
+                case GREATER_EQUALS:
+                case LESS:
+                case LESS_EQUALS:
+                case EQUALS_EQUALS:
+                case EXMARK_EQUALS:
+                    return bool(expr);
+            }
+        } else if (expr.operands == TypeInference.REAL) {
+            switch (expr.operator.type) {
+                case PLUS:
+                    return doubles(expr, DADD);
+                case MINUS:
+                    return doubles(expr, DSUB);
+                case STAR:
+                    return doubles(expr, DMUL);
+                case SLASH:
+                    return doubles(expr, DDIV);
+                case MODULO:
+                    return doubles(expr, DREM);
+                case GREATER:
+                case GREATER_EQUALS:
+                case LESS:
+                case LESS_EQUALS:
+                    return bool(expr);
+            }
+        }
+
+        switch (expr.operator.type) {
+            case EQUALS_EQUALS:
+            case EXMARK_EQUALS:
+                compile(expr.left, OBJECT);
+                compile(expr.right, OBJECT);
+                invoke(INVOKESTATIC, OPERATORS, "isEqual", "(" + OBJECT_TYPE + OBJECT_TYPE + ")Z");
+                if (expr.operator.type == TokenType.EXMARK_EQUALS) not();
+                return BOOLEAN;
+            default:
+                token(expr.operator);
+                compile(expr.left, OBJECT);
+                compile(expr.right, OBJECT);
+                invoke(INVOKESTATIC, OPERATORS, "binary", "(" + TOKEN + OBJECT_TYPE + OBJECT_TYPE + ")" + OBJECT_TYPE);
+                return OBJECT;
+        }
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.Call expr) {
+        if (expr.calle instanceof Expr.Get get) return methodCall(expr, get, false);
+
+        code.op1(ALOAD, 0, 1);
+        compile(expr.calle, OBJECT);
+
+        ClassFile.Label generic = code.label();
+        ClassFile.Label end = code.label();
+        boolean recursive = isSelf(expr.calle) && expr.arguments.size() == declaration.params.size();
+        if (recursive) {
+            // the function calling itself by its global name, while the
+            // name still holds it, skips the helper and the argument list
+            code.op(DUP, 1);
+            code.op1(ALOAD, 0, 1);
+            code.op2(GETFIELD, file.fieldRef(SUPER, "function", OBJECT_TYPE), 0);
+            code.jump(IF_ACMPNE, generic, -2);
+            code.op(POP, -1);
+            code.op1(ALOAD, 0, 1);
+            token(expr.paren);
+            invoke(INVOKEVIRTUAL, SUPER, "enter", "(" + TOKEN + ")V");
+            code.op1(ALOAD, 0, 1);
+            for (Expr argument : expr.arguments) {
+                compile(argument, OBJECT);
+            }
+            invoke(INVOKEVIRTUAL, NAME, "run", run);
+            invoke(INVOKEVIRTUAL, SUPER, "result", "(" + OBJECT_TYPE + ")" + OBJECT_TYPE);
+            code.op1(ALOAD, 0, 1);
+            invoke(INVOKEVIRTUAL, SUPER, "leave", "()V");
+            code.jump(GOTO, end, 0);
+            code.place(generic);
+        }
+
+        arguments(expr.arguments);
+        token(expr.paren);
+        invoke(INVOKEVIRTUAL, SUPER, "call", "(" + OBJECT_TYPE + "[" + OBJECT_TYPE + TOKEN + ")" + OBJECT_TYPE);
+        if (recursive) code.place(end);
+        return OBJECT;
+    }
+
+    // A method called right away runs on its instance without being bound.
+    // Anything else the name gives is read and called as usual. In tail
+    // position both are left to the trampoline instead.
+    private Integer methodCall(Expr.Call expr, Expr.Get get, boolean tail) {
+        ClassFile.Label generic = code.label();
+        ClassFile.Label end = code.label();
+        code.op1(ALOAD, 0, 1);
+        compile(get.object, OBJECT);
+        code.op(DUP, 1);
+        int cache = cache(get.name);
+        invoke(INVOKESTATIC, SUPER, "method", "(" + OBJECT_TYPE + CACHE + ")" + FUNCTION);
+        code.op(DUP, 1);
+        code.jump(IFNULL, generic, -1);
+        arguments(expr.arguments);
+        token(expr.paren);
+        invoke(INVOKEVIRTUAL, SUPER, tail ? "tailInvoke" : "invoke",
+                "(" + OBJECT_TYPE + FUNCTION + "[" + OBJECT_TYPE + TOKEN + ")" + OBJECT_TYPE);
+        code.jump(GOTO, end, 0);
+
+        code.place(generic);
+        code.op(POP, -1);
+        constant(cache, "roc/interpreter/PropertyCache");
+        token(get.name);
+        invoke(INVOKESTATIC, SUPER, "property", "(" + OBJECT_TYPE + CACHE + TOKEN + ")" + OBJECT_TYPE);
+        arguments(expr.arguments);
+        token(expr.paren);
+        invoke(INVOKEVIRTUAL, SUPER, tail ? "tailCall" : "call", "(" + OBJECT_TYPE + "[" + OBJECT_TYPE + TOKEN + ")" + OBJECT_TYPE);
+        code.place(end);
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitGetExpr(Expr.Get expr) {
+        compile(expr.object, OBJECT);
+        cache(expr.name);
+        token(expr.name);
+        invoke(INVOKESTATIC, SUPER, "property", "(" + OBJECT_TYPE + CACHE + TOKEN + ")" + OBJECT_TYPE);
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Long number) {
+            if (number == 0 || number == 1) {
+                code.op(number == 0 ? LCONST_0 : LCONST_1, 2);
+            } else {
+                code.op2(LDC2_W, file.longConstant(number), 2);
+            }
+            return LONG;
+        }
+        if (value instanceof Double number) {
+            code.op2(LDC2_W, file.doubleConstant(number), 2);
+            return DOUBLE;
+        }
+        if (value instanceof String text) {
+            constant(file.string(text));
+        } else if (value instanceof Boolean) {
+            code.op2(GETSTATIC, file.fieldRef("java/lang/Boolean", (Boolean) value ? "TRUE" : "FALSE",
+                    "Ljava/lang/Boolean;"), 1);
+        } else if (value == null) {
+            code.op(ACONST_NULL, 1);
+        } else {
+            throw new Unsupported();
+        }
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitLogicalExpr(Expr.Logical expr) {
+        // gives back one of its operands
+        ClassFile.Label end = code.label();
+        compile(expr.left, OBJECT);
+        code.op(DUP, 1);
+        truthy();
+        code.jump(expr.operator.type == TokenType.OR ? IFNE : IFEQ, end, -1);
+        code.op(POP, -1);
+        compile(expr.right, OBJECT);
+        code.place(end);
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitSetExpr(Expr.Set expr) {
+        compile(expr.object, OBJECT);
+        token(expr.name);
+        invoke(INVOKESTATIC, SUPER, "instance", "(" + OBJECT_TYPE + TOKEN + ")" + OBJECT_TYPE);
+        compile(expr.value, OBJECT);
+        cache(expr.name);
+        invoke(INVOKESTATIC, SUPER, "setProperty", "(" + OBJECT_TYPE + OBJECT_TYPE + CACHE + ")V");
+        code.op(ACONST_NULL, 1);
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitSuperExpr(Expr.Super expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Integer visitThisExpr(Expr.This expr) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        switch (expr.operator.type) {
+            case MINUS:
+                if (expr.type == TypeInference.INTEGER && !generic) {
+                    code.op1(ALOAD, 0, 1);
+                    compile(expr.right, LONG);
+                    invoke(INVOKEVIRTUAL, SUPER, "negate", "(J)J");
+                    return LONG;
+                }
+                if (expr.type == TypeInference.REAL) {
+                    compile(expr.right, DOUBLE);
+                    code.op(DNEG, 0);
+                    return DOUBLE;
+                }
+                break;
+            case EXMARK:
+                compile(expr.right, OBJECT);
+                truthy();
+                not();
+                return BOOLEAN;
+        }
+        token(expr.operator);
+        compile(expr.right, OBJECT);
+        invoke(INVOKESTATIC, OPERATORS, "unary", "(" + TOKEN + OBJECT_TYPE + ")" + OBJECT_TYPE);
+        return OBJECT;
+    }
+
+    @Override
+    public Integer visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth >= 0) {
+            int kind = kinds.get(frame(expr.depth))[expr.slot];
+            int local = locals.get(frame(expr.depth))[expr.slot];
+            if (kind == LONG && generic) {
+                loadBoxed(local);
+                return OBJECT;
+            }
+            load(kind, local);
+            return kind;
+        }
+        code.op1(ALOAD, 0, 1);
+        token(expr.name);
+        pushInt(globals.slot(expr.name.lexeme));
+        invoke(INVOKEVIRTUAL, SUPER, "global", "(" + TOKEN + "I)" + OBJECT_TYPE);
+        return OBJECT;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        open.add(stmt);
+        for (Stmt statement : stmt.statements) {
+            statement.accept(this);
+        }
+        open.remove(open.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        code.jump(GOTO, exit, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        code.jump(GOTO, next, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        effect(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        open.add(stmt);
+        if (stmt.initializer != null) stmt.initializer.accept(this);
+
+        ClassFile.Label start = code.label();
+        ClassFile.Label increment = code.label();
+        ClassFile.Label end = code.label();
+        code.place(start);
+        head(stmt, start);
+        if (stmt.condition != null) branchIfFalse(stmt.condition, end);
+        loop(stmt.body, end, increment);
+        code.place(increment);
+        if (stmt.increment != null) effect(stmt.increment);
+        code.jump(GOTO, start, 0);
+        code.place(end);
+
+        open.remove(open.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        ClassFile.Label otherwise = code.label();
+        branchIfFalse(stmt.condition, otherwise);
+        stmt.thenBranch.accept(this);
+        if (stmt.elseBranch == null) {
+            code.place(otherwise);
+            return null;
+        }
+
+        ClassFile.Label end = code.label();
+        code.jump(GOTO, end, 0);
+        code.place(otherwise);
+        stmt.elseBranch.accept(this);
+        code.place(end);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        throw new Unsupported();
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        code.op2(GETSTATIC, file.fieldRef("java/lang/System", "out", "Ljava/io/PrintStream;"), 1);
+        compile(stmt.expression, OBJECT);
+        invoke(INVOKESTATIC, OPERATORS, "stringify", "(" + OBJECT_TYPE + ")Ljava/lang/String;");
+        invoke(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/String;)V");
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value instanceof Expr.Call call) {
+            tailCall(call);
+            return null;
+        }
+        if (stmt.value != null) {
+            compile(stmt.value, OBJECT);
+        } else {
+            code.op(ACONST_NULL, 1);
+        }
+        code.op(ARETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        int kind = kinds.get(frame(0))[stmt.slot];
+        if (kind == LONG && stmt.initializer != null) {
+            storeLong(stmt.initializer, locals.get(frame(0))[stmt.slot]);
+            return null;
+        }
+        if (stmt.initializer != null) {
+            compile(stmt.initializer, kind);
+        } else {
+            code.op(ACONST_NULL, 1);
+        }
+        store(kind, locals.get(frame(0))[stmt.slot]);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        ClassFile.Label start = code.label();
+        ClassFile.Label end = code.label();
+        code.place(start);
+        head(stmt, start);
+        branchIfFalse(stmt.condition, end);
+        loop(stmt.body, end, start);
+        code.jump(GOTO, start, 0);
+        code.place(end);
+        return null;
+    }
+
+    // The function calling itself in tail position, while its global name
+    // still holds it, takes the new arguments and starts over. Any other
+    // function is left to the RocFunction.call this one returns to.
+    private void tailCall(Expr.Call call) {
+        if (call.calle instanceof Expr.Get get) {
+            methodCall(call, get, true);
+            code.op(ARETURN, -1);
+            return;
+        }
+        if (isSelf(call.calle) && call.arguments.size() == declaration.params.size()) {
+            ClassFile.Label generic = code.label();
+            compile(call.calle, OBJECT);
+            code.op1(ALOAD, 0, 1);
+            code.op2(GETFIELD, file.fieldRef(SUPER, "function", OBJECT_TYPE), 0);
+            code.jump(IF_ACMPNE, generic, -2);
+            for (Expr argument : call.arguments) {
+                compile(argument, OBJECT);
+            }
+            int[] parameters = locals.get(declaration);
+            for (int i = call.arguments.size() - 1; i >= 0; i--) {
+                store(OBJECT, parameters[i]);
+            }
+            code.jump(GOTO, top, 0);
+            code.place(generic);
+        }
+
+        code.op1(ALOAD, 0, 1);
+        compile(call.calle, OBJECT);
+        arguments(call.arguments);
+        token(call.paren);
+        invoke(INVOKEVIRTUAL, SUPER, "tailCall", "(" + OBJECT_TYPE + "[" + OBJECT_TYPE + TOKEN + ")" + OBJECT_TYPE);
+        code.op(ARETURN, -1);
+    }
+
+    // the values of the arguments in a new array
+    private void arguments(List<Expr> arguments) {
+        pushInt(arguments.size());
+        code.op2(ANEWARRAY, file.classRef("java/lang/Object"), 0);
+        for (int i = 0; i < arguments.size(); i++) {
+            code.op(DUP, 1);
+            pushInt(i);
+            compile(arguments.get(i), OBJECT);
+            code.op(AASTORE, -3);
+        }
+    }
+
+    private void loop(Stmt body, ClassFile.Label exit, ClassFile.Label next) {
+        ClassFile.Label enclosingExit = this.exit;
+        ClassFile.Label enclosingNext = this.next;
+        this.exit = exit;
+        this.next = next;
+        body.accept(this);
+        this.exit = enclosingExit;
+        this.next = enclosingNext;
+    }
+
+    // The types every slot of the function's frames is written with, which
+    // the type inference already settled, and whether the tree walker has
+    // to run the function after all.
+    private void scan(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            scan(statement);
+        }
+    }
+
+    private void scan(Stmt stmt) {
+        if (stmt instanceof Stmt.Block block) {
+            open(block, block.frameSize);
+            scan(block.statements);
+            open.remove(open.size() - 1);
+        } else if (stmt instanceof Stmt.For loop) {
+            open(loop, loop.frameSize);
+            if (loop.initializer != null) scan(loop.initializer);
+            if (loop.condition != null) scan(loop.condition);
+            if (loop.increment != null) scan(loop.increment);
+            scan(loop.body);
+            open.remove(open.size() - 1);
+        } else if (stmt instanceof Stmt.Var var) {
+            if (var.slot < 0) throw new Unsupported();
+            if (var.initializer != null) scan(var.initializer);
+            write(0, var.slot, var.initializer != null ? type(var.initializer) : TypeInference.ANY);
+        } else if (stmt instanceof Stmt.Expression expression) {
+            scan(expression.expression);
+        } else if (stmt instanceof Stmt.Print print) {
+            scan(print.expression);
+        } else if (stmt instanceof Stmt.If branch) {
+            scan(branch.condition);
+            scan(branch.thenBranch);
+            if (branch.elseBranch != null) scan(branch.elseBranch);
+        } else if (stmt instanceof Stmt.While loop) {
+            scan(loop.condition);
+            scan(loop.body);
+        } else if (stmt instanceof Stmt.Return result) {
+            if (result.value != null) scan(result.value);
+        } else if (!(stmt instanceof Stmt.Break) && !(stmt instanceof Stmt.Continue)) {
+            throw new Unsupported();
+        }
+    }
+
+    private void scan(Expr expr) {
+        if (expr instanceof Expr.Assign assign) {
+            scan(assign.value);
+            if (assign.upvalue >= 0) throw new Unsupported();
+            if (assign.depth >= 0) write(assign.depth, assign.slot, type(assign.value));
+        } else if (expr instanceof Expr.Variable variable) {
+            if (variable.upvalue >= 0) throw new Unsupported();
+        } else if (expr instanceof Expr.Binary binary) {
+            scan(binary.left);
+            scan(binary.right);
+        } else if (expr instanceof Expr.Logical logical) {
+            scan(logical.left);
+            scan(logical.right);
+        } else if (expr instanceof Expr.Unary unary) {
+            scan(unary.right);
+        } else if (expr instanceof Expr.Grouping grouping) {
+            scan(grouping.expression);
+        } else if (expr instanceof Expr.Call call) {
+            scan(call.calle);
+            for (Expr argument : call.arguments) {
+                scan(argument);
+            }
+        } else if (expr instanceof Expr.Get get) {
+            scan(get.object);
+        } else if (expr instanceof Expr.Set set) {
+            scan(set.object);
+            scan(set.value);
+        } else if (!(expr instanceof Expr.Literal)) {
+            throw new Unsupported();
+        }
+    }
+
+    private void open(Object node, int size) {
+        int[] slots = types.computeIfAbsent(node, key -> new int[size]);
+        Arrays.fill(slots, -1);
+        open.add(node);
+    }
+
+    private void write(int depth, int slot, int type) {
+        int[] slots = types.get(frame(depth));
+        slots[slot] = slots[slot] < 0 || slots[slot] == type ? type : TypeInference.ANY;
+    }
+
+    // the type the inference gave a value, as the interpreter will find it
+    private static int type(Expr expr) {
+        if (expr instanceof Expr.Logical logical) {
+            int left = type(logical.left);
+            return left == type(logical.right) ? left : TypeInference.ANY;
+        }
+        int type = TypeInference.typeOf(expr);
+        return type == TypeInference.INTEGER || type == TypeInference.REAL ? type : TypeInference.ANY;
+    }
+
+    // the parameters come first, right after 'this'
+    private void allocate() {
+        int next = 1;
+        for (Map.Entry<Object, int[]> frame : types.entrySet()) {
+            int[] slotTypes = frame.getValue();
+            int[] frameKinds = new int[slotTypes.length];
+            int[] frameLocals = new int[slotTypes.length];
+            for (int i = 0; i < slotTypes.length; i++) {
+                frameKinds[i] = slotTypes[i] == TypeInference.INTEGER ? LONG
+                        : slotTypes[i] == TypeInference.REAL ? DOUBLE : OBJECT;
+            }
+            kinds.put(frame.getKey(), frameKinds);
+            locals.put(frame.getKey(), frameLocals);
+        }
+
+        int[] parameters = locals.get(declaration);
+        for (int i = 0; i < declaration.params.size(); i++) {
+            parameters[i] = next++;
+        }
+        for (Object node : types.keySet()) {
+            int first = node == declaration ? declaration.params.size() : 0;
+            int[] frameKinds = kinds.get(node);
+            int[] frameLocals = locals.get(node);
+            for (int i = first; i < frameKinds.length; i++) {
+                frameLocals[i] = next;
+                next += frameKinds[i] == OBJECT ? 1 : frameKinds[i] == LONG ? 3 : 2;
+            }
+        }
+        // the loads and stores here only take a one byte index, and resume
+        // keeps its two arguments past the rest
+        size = next;
+        if (size + 2 > 256) throw new ClassFile.TooLarge();
+    }
+
+    private void constructor() {
+        String descriptor = "(Lroc/interpreter/Interpreter;" + OBJECT_TYPE + "[" + OBJECT_TYPE + ")V";
+        code = file.method(ClassFile.ACC_PUBLIC, "<init>", descriptor);
+        code.locals(4);
+        for (int i = 0; i < 4; i++) {
+            code.op1(ALOAD, i, 1);
+        }
+        invoke(INVOKESPECIAL, SUPER, "<init>", descriptor);
+        code.op(RETURN, 0);
+    }
+
+    // call(List) takes the arguments out of the list for run
+    private void entry() {
+        code = file.method(ClassFile.ACC_PUBLIC, "call", "(Ljava/util/List;)" + OBJECT_TYPE);
+        code.locals(2);
+        code.op1(ALOAD, 0, 1);
+        int get = file.interfaceMethodRef("java/util/List", "get", "(I)" + OBJECT_TYPE);
+        for (int i = 0; i < declaration.params.size(); i++) {
+            code.op1(ALOAD, 1, 1);
+            pushInt(i);
+            code.invokeinterface(get, 1, -1);
+        }
+        invoke(INVOKEVIRTUAL, NAME, "run", run);
+        code.op(ARETURN, -1);
+    }
+
+    // every local starts out set, so the verifier sees it set wherever it is read
+    private void prologue() {
+        int count = 1 + declaration.params.size();
+        for (Object node : types.keySet()) {
+            int first = node == declaration ? declaration.params.size() : 0;
+            int[] frameKinds = kinds.get(node);
+            int[] frameLocals = locals.get(node);
+            for (int i = first; i < frameKinds.length; i++) {
+                switch (frameKinds[i]) {
+                    case LONG:
+                        code.op(LCONST_0, 2);
+                        break;
+                    case DOUBLE:
+                        code.op(DCONST_0, 2);
+                        break;
+                    default:
+                        code.op(ACONST_NULL, 1);
+                }
+                store(frameKinds[i], frameLocals[i]);
+                count = Math.max(count, frameLocals[i] + (frameKinds[i] == OBJECT ? 1 : frameKinds[i] == LONG ? 3 : 2));
+            }
+        }
+        code.locals(count);
+    }
+
+    private void assign(Expr.Assign expr) {
+        if (expr.depth >= 0) {
+            int kind = kinds.get(frame(expr.depth))[expr.slot];
+            int local = locals.get(frame(expr.depth))[expr.slot];
+            if (kind == LONG) {
+                storeLong(expr.value, local);
+                return;
+            }
+            compile(expr.value, kind);
+            store(kind, local);
+            return;
+        }
+        code.op1(ALOAD, 0, 1);
+        token(expr.name);
+        pushInt(globals.slot(expr.name.lexeme));
+        compile(expr.value, OBJECT);
+        invoke(INVOKEVIRTUAL, SUPER, "setGlobal", "(" + TOKEN + "I" + OBJECT_TYPE + ")V");
+    }
+
+    // an expression whose value nobody uses
+    private void effect(Expr expr) {
+        if (expr instanceof Expr.Assign assign) {
+            assign(assign);
+            return;
+        }
+        int kind = expr.accept(this);
+        if (kind == LONG && !generic) {
+            // an overflow may still have an error to report
+            settle(expr, OBJECT);
+            kind = OBJECT;
+        }
+        code.op(kind == LONG || kind == DOUBLE ? POP2 : POP, kind == LONG || kind == DOUBLE ? -2 : -1);
+    }
+
+    private void branchIfFalse(Expr condition, ClassFile.Label target) {
+        while (condition instanceof Expr.Grouping grouping) {
+            condition = grouping.expression;
+        }
+
+        if (condition instanceof Expr.Binary binary) {
+            boolean integers = binary.operands == TypeInference.INTEGER && !generic;
+            boolean reals = binary.operands == TypeInference.REAL;
+            int jump = -1;
+            int compare = LCMP;
+            switch (binary.operator.type) {
+                case GREATER:
+                    jump = IFLE;
+                    compare = DCMPL;
+                    break;
+                case GREATER_EQUALS:
+                    jump = IFLT;
+                    compare = DCMPL;
+                    break;
+                case LESS:
+                    jump = IFGE;
+                    compare = DCMPG;
+                    break;
+                case LESS_EQUALS:
+                    jump = IFGT;
+                    compare = DCMPG;
+                    break;
+                case EQUALS_EQUALS:
+                    jump = IFNE;
+                    reals = false;
+                    break;
+                case EXMARK_EQUALS:
+                    jump = IFEQ;
+                    reals = false;
+                    break;
+            }
+            if (jump >= 0 && integers) {
+                ClassFile.Label slow = code.label();
+                ClassFile.Label end = code.label();
+                compile(binary.left, LONG);
+                compile(binary.right, LONG);
+                overflowed();
+                code.jump(IFNE, slow, -1);
+                code.op(LCMP, -3);
+                code.jump(jump, target, -1);
+                code.jump(GOTO, end, 0);
+
+                code.place(slow);
+                code.op(POP2, -2);
+                code.op(POP2, -2);
+                clearOverflow();
+                boxed(condition);
+                truthy();
+                code.jump(IFEQ, target, -1);
+                code.place(end);
+                return;
+            }
+            if (jump >= 0 && reals) {
+                // NaN compares false either way
+                compile(binary.left, DOUBLE);
+                compile(binary.right, DOUBLE);
+                code.op(compare, -3);
+                code.jump(jump, target, -1);
+                return;
+            }
+        }
+
+        int kind = condition.accept(this);
+        if (kind == LONG && !generic) {
+            settle(condition, OBJECT);
+            kind = OBJECT;
+        }
+        switch (kind) {
+            case LONG:
+            case DOUBLE:
+                // numbers are always true
+                code.op(POP2, -2);
+                return;
+            case OBJECT:
+                truthy();
+        }
+        code.jump(IFEQ, target, -1);
+    }
+
+    // a comparison as a value
+    private int bool(Expr.Binary expr) {
+        ClassFile.Label otherwise = code.label();
+        ClassFile.Label end = code.label();
+        branchIfFalse(expr, otherwise);
+        code.op(ICONST_1, 1);
+        code.jump(GOTO, end, 0);
+        code.place(otherwise);
+        code.op(ICONST_0, 1);
+        code.place(end);
+        return BOOLEAN;
+    }
+
+    // the helpers check for overflow, which the JVM's own opcodes do not
+    private int longs(Expr.Binary expr, String helper) {
+        code.op1(ALOAD, 0, 1);
+        compile(expr.left, LONG);
+        compile(expr.right, LONG);
+        invoke(INVOKEVIRTUAL, SUPER, helper, "(JJ)J");
+        return LONG;
+    }
+
+    private int doubles(Expr.Binary expr, int opcode) {
+        compile(expr.left, DOUBLE);
+        compile(expr.right, DOUBLE);
+        code.op(opcode, -2);
+        return DOUBLE;
+    }
+
+    private void compile(Expr expr, int kind) {
+        int from = expr.accept(this);
+        if (from == LONG && kind != LONG && !generic) {
+            settle(expr, kind);
+            return;
+        }
+        convert(from, kind);
+    }
+
+    // The long of an integer expression as the kind asked for, or the
+    // expression boxed when it overflowed on the way.
+    private void settle(Expr expr, int kind) {
+        if (expr instanceof Expr.Literal) {
+            convert(LONG, kind);
+            return;
+        }
+        ClassFile.Label fine = code.label();
+        ClassFile.Label end = code.label();
+        overflowed();
+        code.jump(IFEQ, fine, -1);
+        code.op(POP2, -2);
+        clearOverflow();
+        boxed(expr);
+        convert(OBJECT, kind);
+        code.jump(GOTO, end, 0);
+        code.place(fine);
+        convert(LONG, kind);
+        code.place(end);
+    }
+
+    // an integer expression with no unboxed paths, as an object
+    private void boxed(Expr expr) {
+        generic = true;
+        compile(expr, OBJECT);
+        generic = false;
+    }
+
+    // an integer local takes the value, or the real it overflowed into
+    private void storeLong(Expr value, int local) {
+        ClassFile.Label fine = code.label();
+        ClassFile.Label end = code.label();
+        compile(value, LONG);
+        overflowed();
+        code.jump(IFEQ, fine, -1);
+        code.op(POP2, -2);
+        clearOverflow();
+        boxed(value);
+        storeBoxed(local);
+        code.jump(GOTO, end, 0);
+        code.place(fine);
+        store(LONG, local);
+        code.place(end);
+    }
+
+    private void storeBoxed(int local) {
+        ClassFile.Label real = code.label();
+        ClassFile.Label end = code.label();
+        code.op(DUP, 1);
+        code.op2(INSTANCEOF, file.classRef("java/lang/Long"), 0);
+        code.jump(IFEQ, real, -1);
+        code.op2(CHECKCAST, file.classRef("java/lang/Long"), 0);
+        invoke(INVOKEVIRTUAL, "java/lang/Long", "longValue", "()J");
+        store(LONG, local);
+        code.jump(GOTO, end, 0);
+        code.place(real);
+        code.op1(ASTORE, local + 2, -1);
+        code.place(end);
+    }
+
+    // an integer local as an object, whichever of its two holds it
+    private void loadBoxed(int local) {
+        ClassFile.Label end = code.label();
+        code.op1(ALOAD, local + 2, 1);
+        code.op(DUP, 1);
+        code.jump(IFNONNULL, end, -1);
+        code.op(POP, -1);
+        code.op1(LLOAD, local, 2);
+        invoke(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;");
+        code.place(end);
+    }
+
+    private void overflowed() {
+        code.op1(ALOAD, 0, 1);
+        code.op2(GETFIELD, file.fieldRef(SUPER, "overflowed", "Z"), 0);
+    }
+
+    private void raiseOverflow() {
+        code.op1(ALOAD, 0, 1);
+        code.op(ICONST_1, 1);
+        code.op2(PUTFIELD, file.fieldRef(SUPER, "overflowed", "Z"), -2);
+    }
+
+    private void clearOverflow() {
+        code.op1(ALOAD, 0, 1);
+        code.op(ICONST_0, 1);
+        code.op2(PUTFIELD, file.fieldRef(SUPER, "overflowed", "Z"), -2);
+    }
+
+    // A value the type inference proved a double can be unboxed without
+    // checking, and one it proved an integer raises the flag when it is not.
+    private void convert(int from, int to) {
+        if (from == to) return;
+        switch (to) {
+            case OBJECT:
+                if (from == LONG) {
+                    invoke(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;");
+                } else if (from == DOUBLE) {
+                    invoke(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+                } else {
+                    invoke(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+                }
+                return;
+            case LONG:
+                if (from == OBJECT) {
+                    code.op1(ALOAD, 0, 1);
+                    code.op(SWAP, 0);
+                    invoke(INVOKEVIRTUAL, SUPER, "integer", "(" + OBJECT_TYPE + ")J");
+                    return;
+                }
+                break;
+            case DOUBLE:
+                if (from == LONG) {
+                    code.op(L2D, 0);
+                    return;
+                }
+                if (from == OBJECT) {
+                    invoke(INVOKESTATIC, SUPER, "toDouble", "(" + OBJECT_TYPE + ")D");
+                    return;
+                }
+                break;
+        }
+        throw new Unsupported();
+    }
+
+    private void truthy() {
+        invoke(INVOKESTATIC, OPERATORS, "isTruthy", "(" + OBJECT_TYPE + ")Z");
+    }
+
+    private void not() {
+        code.op(ICONST_1, 1);
+        code.op(IXOR, -1);
+    }
+
+    private void load(int kind, int local) {
+        switch (kind) {
+            case LONG:
+                ClassFile.Label valid = code.label();
+                code.op1(ALOAD, local + 2, 1);
+                code.jump(IFNULL, valid, -1);
+                raiseOverflow();
+                code.place(valid);
+                code.op1(LLOAD, local, 2);
+                break;
+            case DOUBLE:
+                code.op1(DLOAD, local, 2);
+                break;
+            default:
+                code.op1(ALOAD, local, 1);
+        }
+    }
+
+    private void store(int kind, int local) {
+        switch (kind) {
+            case LONG:
+                code.op1(LSTORE, local, -2);
+                code.op(ACONST_NULL, 1);
+                code.op1(ASTORE, local + 2, -1);
+                break;
+            case DOUBLE:
+                code.op1(DSTORE, local, -2);
+                break;
+            default:
+                code.op1(ASTORE, local, -1);
+        }
+    }
+
+    private void token(Token token) {
+        Integer index = tokens.get(token);
+        if (index == null) {
+            index = constants.size();
+            constants.add(token);
+            tokens.put(token, index);
+        }
+        constant(index, "roc/lexer/Token");
+    }
+
+    // a cache of its own for every property site, its index for loading it again
+    private int cache(Token name) {
+        constants.add(new PropertyCache(name));
+        constant(constants.size() - 1, "roc/interpreter/PropertyCache");
+        return constants.size() - 1;
+    }
+
+    private void constant(int index, String type) {
+        code.op1(ALOAD, 0, 1);
+        code.op2(GETFIELD, file.fieldRef(SUPER, "constants", "[" + OBJECT_TYPE), 0);
+        pushInt(index);
+        code.op(AALOAD, -1);
+        code.op2(CHECKCAST, file.classRef(type), 0);
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else if (value == (byte) value) {
+            code.op1(BIPUSH, value, 1);
+        } else if (value == (short) value) {
+            code.op2(SIPUSH, value, 1);
+        } else {
+            constant(file.integer(value));
+        }
+    }
+
+    private void constant(int index) {
+        if (index < 256) {
+            code.op1(LDC, index, 1);
+        } else {
+            code.op2(LDC_W, index, 1);
+        }
+    }
+
+    // the stack effect is read off the descriptor
+    private void invoke(int opcode, String owner, String name, String descriptor) {
+        int effect = opcode == INVOKESTATIC ? 0 : -1;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            effect -= c == 'J' || c == 'D' ? 2 : 1;
+            while (descriptor.charAt(i) == '[') i++;
+            if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            i++;
+        }
+        char result = descriptor.charAt(i + 1);
+        effect += result == 'V' ? 0 : result == 'J' || result == 'D' ? 2 : 1;
+        code.op2(opcode, file.methodRef(owner, name, descriptor), effect);
+    }
+
+    private boolean isSelf(Expr callee) {
+        return declaration.slot < 0 && callee instanceof Expr.Variable variable
+                && variable.depth < 0 && variable.upvalue < 0
+                && variable.name.lexeme.equals(declaration.name.lexeme);
+    }
+
+    private Object frame(int depth) {
+        return open.get(open.size() - 1 - depth);
+    }
+}
@@ -0,0 +1,50 @@
+package roc.jit;
+
+import roc.interpreter.Interpreter;
+import roc.parser.Stmt;
+
+import java.lang.invoke.MethodHandles;
+
+// The second tier of the tree walker. A function that ran hot enough in
+// the interpreter is compiled to a hidden class of its own, which HotSpot
+// then compiles further like any other Java code.
+public final class Jit {
+
+    // calls plus iterations of its own loops a function runs interpreted
+    // before it is compiled, and the iterations one call makes before the
+    // loop goes on compiled
+    public static final long THRESHOLD = 1000;
+
+    private static boolean enabled = true;
+
+    private Jit() {
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    // Null when the function has to stay in the tree walker, or the VM. The
+    // function is the value its name holds, a RocFunction or a function of
+    // the VM, so a call through the name can tell it calls itself.
+    public static CompiledFunction compile(Interpreter interpreter, Object function, Stmt.Function declaration) {
+        if (!enabled) return null;
+
+        FunctionCompiler compiler = new FunctionCompiler(declaration, interpreter.globals);
+        byte[] bytes;
+        try {
+            bytes = compiler.compile();
+        } catch (FunctionCompiler.Unsupported | ClassFile.TooLarge e) {
+            return null;
+        }
+
+        try {
+            Class<?> type = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+            return (CompiledFunction) type.getConstructor(Interpreter.class, Object.class, Object[].class)
+                    .newInstance(interpreter, function, compiler.constants());
+        } catch (LinkageError | ReflectiveOperationException e) {
+            // the class did not verify, the tree walker still runs the function right
+            return null;
+        }
+    }
+}
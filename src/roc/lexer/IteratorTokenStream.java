@@ -0,0 +1,51 @@
+package roc.lexer;
+
+import java.util.Iterator;
+
+class IteratorTokenStream implements TokenStream {
+
+    private final Iterator<Token> tokens;
+    private Token previous;
+    private Token current;
+
+    IteratorTokenStream(Iterator<Token> tokens) {
+        this.tokens = tokens;
+        this.current = tokens.next();
+    }
+
+    @Override
+    public TokenType peekType() {
+        return current.type;
+    }
+
+    @Override
+    public Token peek() {
+        return current;
+    }
+
+    @Override
+    public TokenType previousType() {
+        return previous.type;
+    }
+
+    @Override
+    public Token previous() {
+        return previous;
+    }
+
+    @Override
+    public Object previousLiteral() {
+        return previous.literal;
+    }
+
+    @Override
+    public int previousLine() {
+        return previous.line;
+    }
+
+    @Override
+    public void advance() {
+        previous = current;
+        current = tokens.next();
+    }
+}
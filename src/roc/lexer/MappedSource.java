@@ -0,0 +1,67 @@
+package roc.lexer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Reads the script straight from the page cache. Every byte is seen by the
+// scanner as one character, which is fine since everything outside string
+// literals and comments has to be ASCII anyway; the text of a token, or of
+// a character the scanner rejects, is decoded with the real charset only
+// when it is asked for.
+public class MappedSource implements Source {
+
+    private final MappedByteBuffer buffer;
+    private final int length;
+    private final Charset charset;
+    private final boolean utf8;
+
+    private MappedSource(MappedByteBuffer buffer, Charset charset) {
+        this.buffer = buffer;
+        this.length = buffer.limit();
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+    }
+
+    public static MappedSource open(Path path, Charset charset) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Fisierul " + path + " este prea mare");
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), charset);
+        }
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (buffer.get(index) & 0xFF);
+    }
+
+    @Override
+    public boolean isAtEnd(int index) {
+        return index >= length;
+    }
+
+    @Override
+    public boolean continues(int index) {
+        return utf8 && (charAt(index) & 0xC0) == 0x80;
+    }
+
+    @Override
+    public String text(int start, int end) {
+
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+}
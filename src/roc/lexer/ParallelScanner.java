@@ -0,0 +1,84 @@
+package roc.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Lexes big sources on all cores. The source is cut at the first newline
+// after every chunk boundary and each piece is scanned on its own, counting
+// its lines from 1, on the guess that it does not start inside a string
+// literal (comments always end at a newline). The pieces are put back
+// together in source order: their lines are moved by the lines before them,
+// and a piece that ends inside a string proves the guess wrong for the next
+// one, so the two are scanned again as one. Errors
+// are reported as the parser reaches them, so the result is exactly what the
+// serial scanner produces.
+public class ParallelScanner {
+
+    private static final int MIN_CHUNK = 1 << 20;
+
+    public static TokenBuffer scan(Source source) {
+        return scan(source, ForkJoinPool.commonPool(), MIN_CHUNK);
+    }
+
+    // a piece per thread of the pool, but none shorter than minChunk
+    public static TokenBuffer scan(Source source, ForkJoinPool pool, int minChunk) {
+
+        int length = source.length();
+        int chunks = length < 0 ? 1 : Math.min(pool.getParallelism(), length / minChunk);
+        if (chunks <= 1) {
+            return new Scanner(source).scanPacked();
+        }
+
+        int[] starts = new int[chunks + 1];
+        int pieces = split(source, length, chunks, starts);
+
+        Scanner[] scanners = new Scanner[pieces];
+        List<ForkJoinTask<TokenBuffer>> tasks = new ArrayList<>();
+        for (int i = 0; i < pieces; i++) {
+            scanners[i] = new Scanner(source, starts[i], starts[i + 1], 1);
+            tasks.add(pool.submit(scanners[i]::scanChunk));
+        }
+
+        TokenBuffer tokens = new TokenBuffer(source);
+        int line = 1;
+        for (int i = 0; i < pieces; ) {
+            Scanner scanner = scanners[i];
+            TokenBuffer piece = tasks.get(i).join();
+            int next = i + 1;
+            // a string goes on into the next piece, which is scanned again
+            // together with this one until one of them ends outside it
+            while (scanner.cut()) {
+                tasks.get(next).cancel(false);
+                next++;
+                scanner = new Scanner(source, starts[i], starts[next], 1);
+                piece = scanner.scanChunk();
+            }
+            tokens.addAll(piece, line - 1);
+            line += scanner.lastLine() - 1;
+            i = next;
+        }
+        tokens.add(TokenType.EOF, length, 0, line);
+        return tokens;
+    }
+
+    // Fills in where every piece starts, at most chunks of them, and returns
+    // how many there are. starts[pieces] is the end of the source.
+    private static int split(Source source, int length, int chunks, int[] starts) {
+
+        int target = length / chunks;
+        int pieces = 1;
+        starts[0] = 0;
+        for (int i = 1; i < chunks; i++) {
+            int start = Math.max(i * target, starts[pieces - 1] + 1);
+            while (start < length && source.charAt(start - 1) != '\n') {
+                start++;
+            }
+            if (start >= length) break;
+            starts[pieces++] = start;
+        }
+        starts[pieces] = length;
+        return pieces;
+    }
+}
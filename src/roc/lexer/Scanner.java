@@ -3,58 +3,235 @@ package roc.lexer;
 import roc.Roc;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
 
 public class Scanner {
 
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
+    private final Source source;
+    private Token scanned;
+    private TokenBuffer packed;
+    // set by nextType() instead of building a Token
+    private boolean bare;
+    private TokenType scannedType;
+    private int scannedLine;
     private int start = 0;
     private int current = 0;
     private int line = 1;
+    private int end = Integer.MAX_VALUE;
+    // a string literal ran past end before the source ended
+    private boolean cut = false;
+
+    private static final String UNTERMINATED = "Sir de caractere neterminat, inceput la linia ";
+
+    // an error kept with the index of the token scanned after it
+    static class Diagnostic {
+
+        final int token;
+        final int line;
+        final String message;
+        // the line the message names, 0 when it names none; kept apart from
+        // the text so a piece scanned on its own can still move it
+        final int named;
+
+        Diagnostic(int token, int line, String message, int named) {
+            this.token = token;
+            this.line = line;
+            this.message = message;
+            this.named = named;
+        }
+
+        String text() {
+            return named == 0 ? message : message + named;
+        }
+    }
 
-    private static Map<String, TokenType> keywords;
+    // text of the tokens that are always spelled the same way
+    private static final String[] spellings = new String[TokenType.values().length];
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("si", TokenType.AND);
-        keywords.put("sau", TokenType.OR);
-        keywords.put("adevarat", TokenType.ADEVARAT);
-        keywords.put("fals", TokenType.FALS);
-        keywords.put("var", TokenType.VAR);
-        keywords.put("pentru", TokenType.PENTRU);
-        keywords.put("cattimp", TokenType.CATTIMP);
-        keywords.put("daca", TokenType.DACA);
-        keywords.put("altfel", TokenType.ALTFEL);
-        keywords.put("din", TokenType.DIN);
-        keywords.put("const", TokenType.CONST);
-        keywords.put("afiseaza", TokenType.AFISEAZA);
-        keywords.put("nul", TokenType.NUL);
-        keywords.put("clasa", TokenType.CLASA);
-        keywords.put("mosteneste", TokenType.MOSTENESTE);
-        keywords.put("fun", TokenType.FUN);
-        keywords.put("returneaza", TokenType.RETURNEAZA);
-        keywords.put("super", TokenType.SUPER);
-        keywords.put("instanta", TokenType.INSTANTA);
-        keywords.put("evadeaza", TokenType.EVADEAZA);
-        keywords.put("continua", TokenType.CONTINUA);
+        spellings[TokenType.AND.ordinal()] = "si";
+        spellings[TokenType.OR.ordinal()] = "sau";
+        spellings[TokenType.ADEVARAT.ordinal()] = "adevarat";
+        spellings[TokenType.FALS.ordinal()] = "fals";
+        spellings[TokenType.VAR.ordinal()] = "var";
+        spellings[TokenType.PENTRU.ordinal()] = "pentru";
+        spellings[TokenType.CATTIMP.ordinal()] = "cattimp";
+        spellings[TokenType.DACA.ordinal()] = "daca";
+        spellings[TokenType.ALTFEL.ordinal()] = "altfel";
+        spellings[TokenType.DIN.ordinal()] = "din";
+        spellings[TokenType.CONST.ordinal()] = "const";
+        spellings[TokenType.AFISEAZA.ordinal()] = "afiseaza";
+        spellings[TokenType.NUL.ordinal()] = "nul";
+        spellings[TokenType.CLASA.ordinal()] = "clasa";
+        spellings[TokenType.MOSTENESTE.ordinal()] = "mosteneste";
+        spellings[TokenType.FUN.ordinal()] = "fun";
+        spellings[TokenType.RETURNEAZA.ordinal()] = "returneaza";
+        spellings[TokenType.SUPER.ordinal()] = "super";
+        spellings[TokenType.INSTANTA.ordinal()] = "instanta";
+        spellings[TokenType.EVADEAZA.ordinal()] = "evadeaza";
+        spellings[TokenType.CONTINUA.ordinal()] = "continua";
+
+        spellings[TokenType.PLUS.ordinal()] = "+";
+        spellings[TokenType.MINUS.ordinal()] = "-";
+        spellings[TokenType.STAR.ordinal()] = "*";
+        spellings[TokenType.SLASH.ordinal()] = "/";
+        spellings[TokenType.MODULO.ordinal()] = "%";
+        spellings[TokenType.EQUAL.ordinal()] = "=";
+        spellings[TokenType.GREATER.ordinal()] = ">";
+        spellings[TokenType.GREATER_EQUALS.ordinal()] = ">=";
+        spellings[TokenType.LESS.ordinal()] = "<";
+        spellings[TokenType.LESS_EQUALS.ordinal()] = "<=";
+        spellings[TokenType.EQUALS_EQUALS.ordinal()] = "==";
+        spellings[TokenType.EXMARK_EQUALS.ordinal()] = "!=";
+        spellings[TokenType.EXMARK.ordinal()] = "!";
+        spellings[TokenType.LEFT_BRACE.ordinal()] = "{";
+        spellings[TokenType.RIGHT_BRACE.ordinal()] = "}";
+        spellings[TokenType.LEFT_SQUARE.ordinal()] = "[";
+        spellings[TokenType.RIGHT_SQUARE.ordinal()] = "]";
+        spellings[TokenType.LEFT_ROUND.ordinal()] = "(";
+        spellings[TokenType.RIGHT_ROUND.ordinal()] = ")";
+        spellings[TokenType.SEMICOLON.ordinal()] = ";";
+        spellings[TokenType.COMMA.ordinal()] = ",";
+        spellings[TokenType.DOT.ordinal()] = ".";
+        spellings[TokenType.EOF.ordinal()] = "";
     }
 
     public Scanner(String source) {
+        this(new StringSource(source));
+    }
+
+    public Scanner(Source source) {
+        this.source = source;
+    }
+
+    // scans only [start, end), which has to begin at the start of line
+    Scanner(Source source, int start, int end, int line) {
         this.source = source;
+        this.current = start;
+        this.end = end;
+        this.line = line;
     }
 
     public List<Token> scanTokens() {
 
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+        return tokens;
+    }
+
+    // Same tokens as scanTokens(), but kept as offsets into the source
+    // instead of one object per token. The errors wait in the buffer until
+    // the parser reaches them.
+    public TokenBuffer scanPacked() {
+
+        TokenBuffer tokens = scanChunk();
+        tokens.add(TokenType.EOF, current, 0, line);
+        return tokens;
+    }
+
+    TokenBuffer scanChunk() {
+
+        packed = new TokenBuffer(source);
         while (!isAtEnd()) {
 
             start = current;
             scanToken();
         }
-        tokens.add(new Token(TokenType.EOF, "", null, line));
-        return tokens;
+        return packed;
+    }
+
+    // Hands out tokens one at a time, so the parser can start before the
+    // whole source has been read. The last token is always EOF.
+    public Iterator<Token> tokens() {
+
+        return new Iterator<>() {
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                return !done;
+            }
+
+            @Override
+            public Token next() {
+                if (done) throw new NoSuchElementException();
+                Token token = nextToken();
+                done = token.type == TokenType.EOF;
+                return token;
+            }
+        };
+    }
+
+    // The parser's input when it reads one token at a time: like tokens(),
+    // but a token is only built when the parser keeps it or reports it.
+    public TokenStream stream() {
+
+        bare = true;
+        return new Stream(this, source);
+    }
+
+    // Scans the next token without building it and returns its type; where
+    // it is stays in start(), end() and line() until the next call.
+    TokenType nextType() {
+
+        while (!isAtEnd()) {
+
+            start = current;
+            scanToken();
+            if (scannedType != null) {
+                TokenType type = scannedType;
+                scannedType = null;
+                return type;
+            }
+        }
+        start = current;
+        scannedLine = line;
+        return TokenType.EOF;
+    }
+
+    // whether scanChunk() stopped inside a string literal, which means the
+    // next chunk did not start where a token could
+    boolean cut() {
+        return cut;
+    }
+
+    // the line scanChunk() stopped on
+    int lastLine() {
+        return line;
+    }
+
+    int start() {
+        return start;
+    }
+
+    int end() {
+        return current;
+    }
+
+    int line() {
+        return scannedLine;
+    }
+
+    public Token nextToken() {
+
+        while (!isAtEnd()) {
+
+            source.release(current);
+            start = current;
+            scanToken();
+            if (scanned != null) {
+                Token token = scanned;
+                scanned = null;
+                return token;
+            }
+        }
+        return new Token(TokenType.EOF, "", null, line);
     }
 
     private void scanToken() {
@@ -136,7 +313,11 @@ public class Scanner {
                 } else if (isIdentifierChar(c)) {
                     identifier();
                 } else {
-                    Roc.error(line, "Caracter invalid " + c);
+                    // the whole character, not just its first byte
+                    while (!isAtEnd() && source.continues(current)) {
+                        advance();
+                    }
+                    error(line, "Caracter invalid " + source.text(start, current));
                 }
                 break;
         }
@@ -152,16 +333,32 @@ public class Scanner {
             if (isDigit(peekNext())) {
                 advance();
             } else {
-                Roc.error(line, "Numarul nu se poate termina in '.'");
+                error(line, "Numarul nu se poate termina in '.'");
                 return;
             }
             while (isDigit(peek())) {
                 advance();
             }
+            addToken(TokenType.DOUBLE);
+            return;
         }
 
-        double number = Double.parseDouble(source.substring(start, current));
-        addToken(TokenType.DOUBLE, number);
+        // literals too big for a long stay real numbers, like they used to be
+        if (current - start > 18 && !fitsInLong()) {
+            addToken(TokenType.DOUBLE);
+            return;
+        }
+        addToken(TokenType.INTEGER);
+    }
+
+    private boolean fitsInLong() {
+
+        try {
+            Long.parseLong(source.text(start, current));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     private void string() {
@@ -176,11 +373,15 @@ public class Scanner {
         }
 
         if (!match('"')) {
-            Roc.error(line, "Sir de caractere neterminat, inceput la linia " + startLine);
+            if (current >= end && !source.isAtEnd(current)) {
+                cut = true;
+                return;
+            }
+            error(line, UNTERMINATED, startLine);
             return;
         }
 
-        addToken(TokenType.STRING, source.substring(start + 1, current - 1));
+        addToken(TokenType.STRING);
     }
 
     private void identifier() {
@@ -189,28 +390,149 @@ public class Scanner {
             advance();
         }
 
-        String name = source.substring(start, current);
-        if (keywords.containsKey(name)) {
-            addToken(keywords.get(name));
-            return;
+        addToken(keyword());
+    }
+
+    // Recognizes keywords straight from the source characters, so the text
+    // is only copied out when the token is a real identifier.
+    private TokenType keyword() {
+
+        switch (source.charAt(start)) {
+            case 'a':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'd':
+                            return rest(2, "evarat", TokenType.ADEVARAT);
+                        case 'f':
+                            return rest(2, "iseaza", TokenType.AFISEAZA);
+                        case 'l':
+                            return rest(2, "tfel", TokenType.ALTFEL);
+                    }
+                }
+                break;
+            case 'c':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a':
+                            return rest(2, "ttimp", TokenType.CATTIMP);
+                        case 'l':
+                            return rest(2, "asa", TokenType.CLASA);
+                        case 'o':
+                            if (current - start == 5) return rest(2, "nst", TokenType.CONST);
+                            return rest(2, "ntinua", TokenType.CONTINUA);
+                    }
+                }
+                break;
+            case 'd':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a':
+                            return rest(2, "ca", TokenType.DACA);
+                        case 'i':
+                            return rest(2, "n", TokenType.DIN);
+                    }
+                }
+                break;
+            case 'e':
+                return rest(1, "vadeaza", TokenType.EVADEAZA);
+            case 'f':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'a':
+                            return rest(2, "ls", TokenType.FALS);
+                        case 'u':
+                            return rest(2, "n", TokenType.FUN);
+                    }
+                }
+                break;
+            case 'i':
+                return rest(1, "nstanta", TokenType.INSTANTA);
+            case 'm':
+                return rest(1, "osteneste", TokenType.MOSTENESTE);
+            case 'n':
+                return rest(1, "ul", TokenType.NUL);
+            case 'p':
+                return rest(1, "entru", TokenType.PENTRU);
+            case 'r':
+                return rest(1, "eturneaza", TokenType.RETURNEAZA);
+            case 's':
+                if (current - start > 1) {
+                    switch (source.charAt(start + 1)) {
+                        case 'i':
+                            return rest(2, "", TokenType.AND);
+                        case 'a':
+                            return rest(2, "u", TokenType.OR);
+                        case 'u':
+                            return rest(2, "per", TokenType.SUPER);
+                    }
+                }
+                break;
+            case 'v':
+                return rest(1, "ar", TokenType.VAR);
         }
+        return TokenType.IDENTIFIER;
+    }
 
-        addToken(TokenType.IDENTIFIER);
+    private TokenType rest(int offset, String rest, TokenType type) {
+
+        if (current - start != offset + rest.length()) return TokenType.IDENTIFIER;
+        for (int i = 0; i < rest.length(); i++) {
+            if (source.charAt(start + offset + i) != rest.charAt(i)) return TokenType.IDENTIFIER;
+        }
+        return type;
     }
 
     private void addToken(TokenType type) {
-        addToken(type, null);
+
+        if (packed != null) {
+            packed.add(type, start, current - start, line);
+            return;
+        }
+        if (bare) {
+            scannedType = type;
+            scannedLine = line;
+            return;
+        }
+        scanned = new Token(type, lexeme(source, type, start, current),
+                literal(source, type, start, current), line);
+    }
+
+    static String lexeme(Source source, TokenType type, int start, int end) {
+
+        String text = spellings[type.ordinal()];
+        return text != null ? text : source.text(start, end);
+    }
+
+    static Object literal(Source source, TokenType type, int start, int end) {
+
+        switch (type) {
+            case DOUBLE:
+                return Double.parseDouble(source.text(start, end));
+            case INTEGER:
+                return Long.parseLong(source.text(start, end));
+            case STRING:
+                return source.text(start + 1, end - 1);
+            default:
+                return null;
+        }
     }
 
-    private void addToken(TokenType type, Object literal) {
+    private void error(int line, String message) {
+        error(line, message, 0);
+    }
+
+    private void error(int line, String message, int named) {
 
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        if (packed != null) {
+            packed.error(line, message, named);
+        } else {
+            Roc.error(line, named == 0 ? message : message + named);
+        }
     }
 
     private boolean isAtEnd() {
 
-        return current >= source.length();
+        return current >= end || source.isAtEnd(current);
     }
 
     private boolean isIdentifierChar(char c) {
@@ -239,7 +561,7 @@ public class Scanner {
 
     private char peekNext() {
 
-        if (current + 1 >= source.length()) return '\0';
+        if (current + 1 >= end || source.isAtEnd(current + 1)) return '\0';
         return source.charAt(current + 1);
     }
 
@@ -251,4 +573,82 @@ public class Scanner {
         current++;
         return true;
     }
+
+    // Keeps only the current and the previous token, as their place in the
+    // source, so the whole script is never held as tokens. Everything before
+    // the previous token is released, which lets a stream drop what the
+    // parser can no longer ask for.
+    private static class Stream implements TokenStream {
+
+        private final Scanner scanner;
+        private final Source source;
+        private TokenType previousType;
+        private int previousStart;
+        private int previousEnd;
+        private int previousLine;
+        private TokenType currentType;
+        private int currentStart;
+        private int currentEnd;
+        private int currentLine;
+
+        Stream(Scanner scanner, Source source) {
+            this.scanner = scanner;
+            this.source = source;
+            scan();
+        }
+
+        private void scan() {
+
+            currentType = scanner.nextType();
+            currentStart = scanner.start();
+            currentEnd = scanner.end();
+            currentLine = scanner.line();
+        }
+
+        private Token token(TokenType type, int start, int end, int line) {
+            return new Token(type, Scanner.lexeme(source, type, start, end),
+                    Scanner.literal(source, type, start, end), line);
+        }
+
+        @Override
+        public TokenType peekType() {
+            return currentType;
+        }
+
+        @Override
+        public Token peek() {
+            return token(currentType, currentStart, currentEnd, currentLine);
+        }
+
+        @Override
+        public TokenType previousType() {
+            return previousType;
+        }
+
+        @Override
+        public Token previous() {
+            return token(previousType, previousStart, previousEnd, previousLine);
+        }
+
+        @Override
+        public Object previousLiteral() {
+            return Scanner.literal(source, previousType, previousStart, previousEnd);
+        }
+
+        @Override
+        public int previousLine() {
+            return previousLine;
+        }
+
+        @Override
+        public void advance() {
+
+            previousType = currentType;
+            previousStart = currentStart;
+            previousEnd = currentEnd;
+            previousLine = currentLine;
+            source.release(previousStart);
+            scan();
+        }
+    }
 }
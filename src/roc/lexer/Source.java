@@ -0,0 +1,25 @@
+package roc.lexer;
+
+public interface Source {
+
+    char charAt(int index);
+
+    boolean isAtEnd(int index);
+
+    String text(int start, int end);
+
+    // -1 when it is not known before reaching the end (streams)
+    default int length() {
+        return -1;
+    }
+
+    // true when index is inside a character that started before it, for
+    // the sources that see a character of several bytes as that many
+    default boolean continues(int index) {
+        return false;
+    }
+
+    // the scanner will never again look at anything before index
+    default void release(int index) {
+    }
+}
@@ -0,0 +1,92 @@
+package roc.lexer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Source for input that cannot be mapped (stdin, pipes). Only the bytes from
+// the last released position onwards are kept, so memory stays proportional
+// to the longest token instead of the whole script.
+public class StreamSource implements Source {
+
+    private static final int CHUNK = 64 * 1024;
+
+    private final InputStream in;
+    private final Charset charset;
+    private final boolean utf8;
+    private byte[] buffer = new byte[CHUNK];
+    // absolute position of buffer[0]
+    private int base = 0;
+    private int count = 0;
+    private int released = 0;
+    private boolean eof = false;
+
+    public StreamSource(InputStream in, Charset charset) {
+        this.in = in;
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public char charAt(int index) {
+        fill(index);
+        return (char) (buffer[index - base] & 0xFF);
+    }
+
+    @Override
+    public boolean isAtEnd(int index) {
+        fill(index);
+        return index >= base + count;
+    }
+
+    @Override
+    public boolean continues(int index) {
+        return utf8 && (charAt(index) & 0xC0) == 0x80;
+    }
+
+    @Override
+    public String text(int start, int end) {
+        fill(end - 1);
+        return new String(buffer, start - base, end - start, charset);
+    }
+
+    @Override
+    public void release(int index) {
+        released = index;
+    }
+
+    private void fill(int index) {
+
+        while (!eof && index >= base + count) {
+            if (count == buffer.length) {
+                makeRoom();
+            }
+            try {
+                int read = in.read(buffer, count, buffer.length - count);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    count += read;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void makeRoom() {
+
+        int keep = released - base;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, count - keep);
+            count -= keep;
+            base = released;
+        }
+        if (count > buffer.length / 2) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package roc.lexer;
+
+public class StringSource implements Source {
+
+    private final String text;
+
+    public StringSource(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return text.charAt(index);
+    }
+
+    @Override
+    public boolean isAtEnd(int index) {
+        return index >= text.length();
+    }
+
+    @Override
+    public String text(int start, int end) {
+        return text.substring(start, end);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+}
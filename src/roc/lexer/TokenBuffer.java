@@ -0,0 +1,211 @@
+package roc.lexer;
+
+import roc.Roc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Token stream packed into parallel int arrays. Only positions are stored;
+// lexemes and literals are cut out of the source when somebody asks for
+// them, which for most punctuation and keywords is never.
+public class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Source source;
+    private int[] types = new int[1024];
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[] lines = new int[1024];
+    private int size = 0;
+    // identifier names already cut out of the source, open addressing
+    private String[] names = new String[256];
+    private int named = 0;
+    // the lexer's errors, in source order, and how many have been reported
+    private final List<Scanner.Diagnostic> errors = new ArrayList<>();
+    private int reported = 0;
+
+    public TokenBuffer(Source source) {
+        this.source = source;
+    }
+
+    public void add(TokenType type, int offset, int length, int line) {
+
+        if (size == types.length) {
+            grow(size * 2);
+        }
+        types[size] = type.ordinal();
+        offsets[size] = offset;
+        lengths[size] = length;
+        lines[size] = line;
+        size++;
+    }
+
+    void error(int line, String message, int named) {
+        errors.add(new Scanner.Diagnostic(size, line, message, named));
+    }
+
+    // lines is added to the line of every token and error of other
+    public void addAll(TokenBuffer other, int lines) {
+
+        for (Scanner.Diagnostic error : other.errors) {
+            int named = error.named == 0 ? 0 : error.named + lines;
+            errors.add(new Scanner.Diagnostic(size + error.token, error.line + lines, error.message, named));
+        }
+        if (size + other.size > types.length) {
+            grow(Math.max(size + other.size, size * 2));
+        }
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.offsets, 0, offsets, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        System.arraycopy(other.lines, 0, this.lines, size, other.size);
+        if (lines != 0) {
+            for (int i = size; i < size + other.size; i++) {
+                this.lines[i] += lines;
+            }
+        }
+        size += other.size;
+    }
+
+    private void grow(int capacity) {
+
+        types = Arrays.copyOf(types, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public String lexeme(int index) {
+
+        int start = offsets[index];
+        int end = start + lengths[index];
+        if (types[index] == TokenType.IDENTIFIER.ordinal()) {
+            return name(start, end);
+        }
+        return Scanner.lexeme(source, type(index), start, end);
+    }
+
+    // A name is usually written many times, so every occurrence shares the
+    // String made for the first one instead of decoding it again.
+    private String name(int start, int end) {
+
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int mask = names.length - 1;
+        int slot = hash & mask;
+        for (String name = names[slot]; name != null; name = names[slot]) {
+            if (matches(name, start, end)) return name;
+            slot = (slot + 1) & mask;
+        }
+
+        String name = source.text(start, end);
+        names[slot] = name;
+        if (++named * 2 > names.length) {
+            rehash();
+        }
+        return name;
+    }
+
+    private boolean matches(String name, int start, int end) {
+
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private void rehash() {
+
+        String[] old = names;
+        names = new String[old.length * 2];
+        int mask = names.length - 1;
+        for (String name : old) {
+            if (name == null) continue;
+            int slot = name.hashCode() & mask;
+            while (names[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            names[slot] = name;
+        }
+    }
+
+    public Object literal(int index) {
+        return Scanner.literal(source, type(index), offsets[index], offsets[index] + lengths[index]);
+    }
+
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index]);
+    }
+
+    // Reports the errors met before the token at index, at the moment the
+    // serial scanner would: when the parser moves on to that token.
+    private void report(int index) {
+
+        while (reported < errors.size() && errors.get(reported).token <= index) {
+            Scanner.Diagnostic error = errors.get(reported++);
+            Roc.error(error.line, error.text());
+        }
+    }
+
+    // Reads the arrays by index. Only peek and previous build a Token, and
+    // the parser only calls them for a token it keeps or reports.
+    public TokenStream stream() {
+
+        report(0);
+        return new TokenStream() {
+            private int current = 0;
+
+            @Override
+            public TokenType peekType() {
+                return TYPES[types[current]];
+            }
+
+            @Override
+            public Token peek() {
+                return token(current);
+            }
+
+            @Override
+            public TokenType previousType() {
+                return TYPES[types[current - 1]];
+            }
+
+            @Override
+            public Token previous() {
+                return token(current - 1);
+            }
+
+            @Override
+            public Object previousLiteral() {
+                return literal(current - 1);
+            }
+
+            @Override
+            public int previousLine() {
+                return lines[current - 1];
+            }
+
+            @Override
+            public void advance() {
+                current++;
+                if (reported < errors.size()) report(current);
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package roc.lexer;
+
+import java.util.Iterator;
+
+// What the parser needs from its input: the type of the next token without
+// building it, and the tokens themselves only when they end up in the AST
+// or in an error message.
+public interface TokenStream {
+
+    TokenType peekType();
+
+    Token peek();
+
+    TokenType previousType();
+
+    Token previous();
+
+    // for a literal, whose token the AST does not keep
+    Object previousLiteral();
+
+    int previousLine();
+
+    void advance();
+
+    static TokenStream of(Iterator<Token> tokens) {
+        return new IteratorTokenStream(tokens);
+    }
+}
@@ -4,7 +4,7 @@ public enum TokenType {
 
     // arithmetic
     PLUS, MINUS, STAR, SLASH, STRING,
-    MODULO, DOUBLE, EQUAL,
+    MODULO, DOUBLE, INTEGER, EQUAL,
 
     // comparison
     GREATER, GREATER_EQUALS, LESS, LESS_EQUALS,
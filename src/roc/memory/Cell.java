@@ -0,0 +1,13 @@
+package roc.memory;
+
+// A local some closure captured. The frame slot and every closure that
+// captured it hold the same cell, so an assignment on either side is seen
+// by the others.
+public class Cell {
+
+    public Object value;
+
+    public Cell(Object value) {
+        this.value = value;
+    }
+}
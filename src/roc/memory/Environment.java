@@ -1,61 +1,199 @@
 package roc.memory;
 
+import roc.interpreter.Operators;
 import roc.interpreter.RuntimeError;
 import roc.lexer.Token;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+// The globals can be used before they are declared, so a name gets its
+// slot in the global table the first time it is looked up and each site
+// keeps that slot from then on. Every other scope is a frame whose slots
+// the resolver numbered, so locals are read and written without hashing
+// anything. A slot holds a Cell instead of the value once a closure
+// captured it.
+//
+// A number the type inference proved is kept unboxed next to the slots,
+// and the slot only says which kind it is. It is boxed when something
+// reads it as a value, which is when it escapes the arithmetic.
 public class Environment {
 
-    private final Map<String, Object> values = new HashMap<>();
-    public final Environment enclosing;
+    // what a global slot holds until its variable is declared
+    private static final Object UNDEFINED = new Object();
+    // what a slot holds while its number is in raw
+    private static final Object LONG = new Object();
+    private static final Object DOUBLE = new Object();
+
+    // globals only
+    private final Map<String, Integer> names;
+    private Object[] slots;
+    // frames only, the doubles by their bits
+    private final long[] raw;
+    // only changes when a FrameStack hands the frame out again
+    public Environment enclosing;
 
     public Environment() {
         enclosing = null;
+        names = new HashMap<>();
+        slots = new Object[64];
+        raw = null;
     }
 
-    public Environment(Environment enclosing) {
+    public Environment(Environment enclosing, int size) {
         this.enclosing = enclosing;
+        names = null;
+        slots = new Object[size];
+        raw = new long[size];
+    }
+
+    // the global slot of a name, whether or not it is declared yet
+    public int slot(String name) {
+        Integer slot = names.get(name);
+        if (slot != null) return slot;
+
+        slot = names.size();
+        if (slot == slots.length) slots = Arrays.copyOf(slots, slot * 2);
+        slots[slot] = UNDEFINED;
+        names.put(name, slot);
+        return slot;
     }
 
     public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
+        assign(name, slot(name.lexeme), value);
+    }
+
+    public void assign(Token name, int slot, Object value) {
+        if (slots[slot] == UNDEFINED) {
+            throw new RuntimeError(name, "Variabila nedefinita '" + name.lexeme + "'.");
+        }
+        slots[slot] = value;
+    }
+
+    public void assignAt(int distance, int slot, Object value) {
+        Object[] slots = ancestor(distance).slots;
+        if (slots[slot] instanceof Cell cell) {
+            cell.value = value;
+        } else {
+            slots[slot] = value;
+        }
+    }
+
+    public void assignLongAt(int distance, int slot, long value) {
+        Environment frame = ancestor(distance);
+        if (frame.slots[slot] instanceof Cell cell) {
+            cell.value = value;
+        } else {
+            frame.slots[slot] = LONG;
+            frame.raw[slot] = value;
         }
+    }
 
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
+    public void assignDoubleAt(int distance, int slot, double value) {
+        Environment frame = ancestor(distance);
+        if (frame.slots[slot] instanceof Cell cell) {
+            cell.value = value;
+        } else {
+            frame.slots[slot] = DOUBLE;
+            frame.raw[slot] = Double.doubleToRawLongBits(value);
         }
-        throw new RuntimeError(name, "Variabila nedefinita '" + name.lexeme + "'.");
     }
 
-    public void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+    // the cell of a local, boxing it the first time it is captured
+    public Cell capture(int distance, int slot) {
+        Environment frame = ancestor(distance);
+        if (frame.slots[slot] instanceof Cell cell) return cell;
+
+        Cell cell = new Cell(frame.value(slot));
+        frame.slots[slot] = cell;
+        return cell;
     }
 
     public void define(String name, Object value) {
 
-        values.put(name, value);
+        // the slot first, as taking it may grow the table
+        int slot = slot(name);
+        slots[slot] = value;
+    }
+
+    public void define(int slot, Object value) {
+
+        slots[slot] = value;
+    }
+
+    public void defineLong(int slot, long value) {
+
+        slots[slot] = LONG;
+        raw[slot] = value;
+    }
+
+    public void defineDouble(int slot, double value) {
+
+        slots[slot] = DOUBLE;
+        raw[slot] = Double.doubleToRawLongBits(value);
     }
 
     public Object get(Token name) {
 
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
-        }
+        return get(name, slot(name.lexeme));
+    }
 
-        if (enclosing != null) {
-            return enclosing.get(name);
+    public Object get(Token name, int slot) {
+
+        Object value = slots[slot];
+        if (value == UNDEFINED) {
+            throw new RuntimeError(name, "Variabila nedefinita '" + name.lexeme + "'");
         }
+        return value;
+    }
 
-        throw new RuntimeError(name, "Variabila nedefinita '" + name.lexeme + "'");
+    public Object getAt(int distance, int slot) {
+        Environment frame = ancestor(distance);
+        Object value = frame.slots[slot];
+        if (value instanceof Cell cell) return cell.value;
+        if (value == LONG || value == DOUBLE) return frame.value(slot);
+        return value;
+    }
+
+    // a local the type inference proved an integer, which holds a real
+    // only once it overflowed
+    public long getLongAt(int distance, int slot) {
+        Environment frame = ancestor(distance);
+        Object value = frame.slots[slot];
+        if (value == LONG) return frame.raw[slot];
+        return Operators.integer(value instanceof Cell cell ? cell.value : value);
+    }
+
+    // a local the type inference proved a number, integers widened
+    public double getDoubleAt(int distance, int slot) {
+        Environment frame = ancestor(distance);
+        Object value = frame.slots[slot];
+        if (value == DOUBLE) return Double.longBitsToDouble(frame.raw[slot]);
+        if (value == LONG) return frame.raw[slot];
+        if (value instanceof Cell cell) value = cell.value;
+        return value instanceof Long number ? number : (double) value;
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    void reuse(Environment enclosing) {
+        this.enclosing = enclosing;
+    }
+
+    void clear() {
+        Arrays.fill(slots, null);
+        enclosing = null;
     }
 
-    public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+    // the value of a slot, boxed if it was a raw number
+    private Object value(int slot) {
+        Object value = slots[slot];
+        if (value == LONG) return raw[slot];
+        if (value == DOUBLE) return Double.longBitsToDouble(raw[slot]);
+        return value;
     }
 
     private Environment ancestor(int distance) {
@@ -0,0 +1,33 @@
+package roc.memory;
+
+import java.util.Arrays;
+
+// Closures keep cells, never frames, so every frame lives and dies in call
+// and block order. They are kept on a stack and the frame object at each
+// depth is handed out again on the next push. One stack per interpreter, and
+// an interpreter only ever runs on one thread at a time.
+public class FrameStack {
+
+    private Environment[] frames = new Environment[64];
+    private int top = 0;
+
+    public Environment push(Environment enclosing, int size) {
+        if (top == frames.length) frames = Arrays.copyOf(frames, top * 2);
+
+        Environment frame = frames[top];
+        if (frame == null || frame.capacity() < size) {
+            frame = new Environment(enclosing, size);
+            frames[top] = frame;
+        } else {
+            frame.reuse(enclosing);
+        }
+        top++;
+        return frame;
+    }
+
+    // frames come back in the order they went out
+    public void pop(Environment frame) {
+        frame.clear();
+        top--;
+    }
+}
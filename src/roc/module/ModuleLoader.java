@@ -0,0 +1,120 @@
+package roc.module;
+
+import roc.Roc;
+import roc.cache.CompilationCache;
+import roc.interpreter.Interpreter;
+import roc.interpreter.RocModule;
+import roc.lexer.MappedSource;
+import roc.lexer.Scanner;
+import roc.lexer.Token;
+import roc.optimizer.Optimizer;
+import roc.parser.FlatAst;
+import roc.parser.Parser;
+import roc.parser.Stmt;
+import roc.resolver.Resolver;
+import roc.resolver.TypeInference;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+// Compiles imported modules on a worker pool. Every module gets its own
+// interpreter, so scanning, parsing and resolving one never touches
+// another, and the modules it imports are queued as soon as its resolver
+// reaches the 'din'. A file is compiled once however many times it is
+// imported.
+public class ModuleLoader {
+
+    private final boolean optimize;
+    private final boolean useCache;
+    private final Executor pool;
+    private final Map<Path, CompletableFuture<RocModule>> modules = new ConcurrentHashMap<>();
+
+    public ModuleLoader(boolean optimize, boolean useCache) {
+        this(optimize, useCache, ForkJoinPool.commonPool());
+    }
+
+    public ModuleLoader(boolean optimize, boolean useCache, Executor pool) {
+        this.optimize = optimize;
+        this.useCache = useCache;
+        this.pool = pool;
+    }
+
+    // Never waits, jobs call this for their own imports. The import is
+    // the 'din' that asked first, in the file compiling on this thread.
+    public CompletableFuture<RocModule> request(Path file, Token keyword) {
+        String importer = Roc.currentModule();
+        return modules.computeIfAbsent(file.toAbsolutePath().normalize(),
+                path -> CompletableFuture.supplyAsync(() -> compile(path, keyword, importer), pool));
+    }
+
+    public RocModule module(Path file, Token keyword) {
+        return request(file, keyword).join();
+    }
+
+    // Waits for every module queued so far, including the ones queued by
+    // modules that finished while waiting.
+    public void awaitAll() {
+        int seen;
+        do {
+            seen = modules.size();
+            for (CompletableFuture<RocModule> module : modules.values()) {
+                module.join();
+            }
+        } while (modules.size() != seen);
+    }
+
+    private RocModule compile(Path file, Token keyword, String importer) {
+
+        String name = file.getFileName().toString();
+        Interpreter interpreter = new Interpreter(this, file.getParent());
+        List<Stmt> statements = null;
+        IOException unreadable = null;
+
+        Roc.enterModule(name);
+        try {
+            statements = compile(file, interpreter);
+        } catch (IOException e) {
+            unreadable = e;
+        } finally {
+            if (!Roc.leaveModule()) statements = null;
+        }
+
+        // the error is the import's, in the file that has it
+        if (unreadable != null) {
+            Roc.enterModule(importer);
+            Roc.error(keyword, "Nu pot citi modulul: " + unreadable.getMessage());
+            Roc.leaveModule();
+        }
+        return new RocModule(name.substring(0, name.length() - ".roc".length()), interpreter, statements);
+    }
+
+    private List<Stmt> compile(Path file, Interpreter interpreter) throws IOException {
+
+        CompilationCache cache = useCache ? new CompilationCache(file, optimize) : null;
+        if (cache != null) {
+            FlatAst ast = cache.load();
+            if (ast != null) return ast.statements();
+        }
+
+        List<Stmt> statements = new Parser(new Scanner(MappedSource.open(file, Charset.defaultCharset())).stream()).parse();
+        if (Roc.moduleHadError()) return null;
+
+        if (optimize) {
+            statements = new Optimizer().optimize(statements);
+        }
+
+        new Resolver(interpreter).resolve(statements);
+        if (Roc.moduleHadError()) return null;
+
+        new TypeInference().infer(statements);
+        if (cache != null) cache.store(FlatAst.flatten(statements));
+        return statements;
+    }
+}
@@ -0,0 +1,79 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.lexer.Token;
+import roc.parser.Expr;
+
+// An assignment evaluates to nil, wherever the variable is.
+abstract class AssignNode extends ExprNode {
+
+    ExprNode value;
+
+    AssignNode(Expr source, ExprNode value) {
+        super(source);
+        this.value = adopt(value);
+    }
+
+    static AssignNode create(Expr.Assign source, ExprNode value, Interpreter interpreter) {
+        if (source.depth >= 0) return new Local(source, value, source.depth, source.slot);
+        if (source.upvalue >= 0) return new Upvalue(source, value, source.upvalue);
+        return new Global(source, value, source.name, interpreter.globals.slot(source.name.lexeme));
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (value == child) value = replacement;
+    }
+
+    static final class Local extends AssignNode {
+
+        private final int depth;
+        private final int slot;
+
+        Local(Expr source, ExprNode value, int depth, int slot) {
+            super(source, value);
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            interpreter.assignLocal(depth, slot, value.execute(interpreter));
+            return null;
+        }
+    }
+
+    static final class Upvalue extends AssignNode {
+
+        private final int index;
+
+        Upvalue(Expr source, ExprNode value, int index) {
+            super(source, value);
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            interpreter.assignUpvalue(index, value.execute(interpreter));
+            return null;
+        }
+    }
+
+    static final class Global extends AssignNode {
+
+        private final Token name;
+        private final int slot;
+
+        Global(Expr source, ExprNode value, Token name, int slot) {
+            super(source, value);
+            this.name = name;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            interpreter.globals.assign(name, slot, value.execute(interpreter));
+            return null;
+        }
+    }
+}
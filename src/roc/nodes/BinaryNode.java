@@ -0,0 +1,454 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.Operators;
+import roc.interpreter.RuntimeError;
+import roc.lexer.Token;
+import roc.lexer.TokenType;
+import roc.parser.Expr;
+
+// Starts out not knowing its operands. The first time it runs it turns
+// into the version for the values it got: two integers, two reals or a
+// string concatenation, with the operator chosen once and for all. Any
+// other pair of values, then or later, makes it the general node, which
+// does what Operators does.
+abstract class BinaryNode extends ExprNode {
+
+    ExprNode left;
+    ExprNode right;
+    final Token operator;
+
+    BinaryNode(Expr source, ExprNode left, ExprNode right, Token operator) {
+        super(source);
+        this.left = adopt(left);
+        this.right = adopt(right);
+        this.operator = operator;
+    }
+
+    static BinaryNode create(Expr.Binary source, ExprNode left, ExprNode right) {
+        return new Uninitialized(source, left, right, source.operator);
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (left == child) left = replacement;
+        if (right == child) right = replacement;
+    }
+
+    final Object generalize(Object leftValue, Object rightValue) {
+        return replace(new Generic(source, left, right, operator)).compute(leftValue, rightValue);
+    }
+
+    // the evaluated right side, for a node whose left side just disappointed it
+    final Object generalizeLeft(Interpreter interpreter, Object leftValue) {
+        return generalize(leftValue, right.execute(interpreter));
+    }
+
+    static final class Uninitialized extends BinaryNode {
+
+        Uninitialized(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object leftValue = left.execute(interpreter);
+            Object rightValue = right.execute(interpreter);
+            return specialize(leftValue, rightValue).compute(leftValue, rightValue);
+        }
+
+        private Specialized specialize(Object leftValue, Object rightValue) {
+            if (leftValue instanceof Long && rightValue instanceof Long) {
+                LongNode node = LongNode.create(source, left, right, operator);
+                if (node != null) return replace(node);
+            } else if (leftValue instanceof Double && rightValue instanceof Double) {
+                DoubleNode node = DoubleNode.create(source, left, right, operator);
+                if (node != null) return replace(node);
+            } else if (operator.type == TokenType.PLUS
+                    && (leftValue instanceof String || rightValue instanceof String)) {
+                return replace(new Concat(source, left, right, operator));
+            }
+            return replace(new Generic(source, left, right, operator));
+        }
+    }
+
+    abstract static class Specialized extends BinaryNode {
+
+        Specialized(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        // the operator on values the node already has
+        abstract Object compute(Object leftValue, Object rightValue);
+    }
+
+    static final class Generic extends Specialized {
+
+        Generic(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object leftValue = left.execute(interpreter);
+            return compute(leftValue, right.execute(interpreter));
+        }
+
+        @Override
+        Object compute(Object leftValue, Object rightValue) {
+            return Operators.binary(operator, leftValue, rightValue);
+        }
+    }
+
+    static final class Concat extends Specialized {
+
+        Concat(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object leftValue = left.execute(interpreter);
+            Object rightValue = right.execute(interpreter);
+            if (!(leftValue instanceof String) && !(rightValue instanceof String)) {
+                return generalize(leftValue, rightValue);
+            }
+            return compute(leftValue, rightValue);
+        }
+
+        @Override
+        Object compute(Object leftValue, Object rightValue) {
+            return Operators.stringify(leftValue) + Operators.stringify(rightValue);
+        }
+    }
+
+    // Two integers. The arithmetic ones hand their result up unboxed when
+    // their parent is specialized for integers as well.
+    abstract static class LongNode extends Specialized {
+
+        LongNode(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        static LongNode create(Expr source, ExprNode left, ExprNode right, Token operator) {
+            switch (operator.type) {
+                case PLUS:
+                    return new LongArithmetic(source, left, right, operator) {
+                        @Override
+                        long compute(long a, long b) {
+                            return Math.addExact(a, b);
+                        }
+                    };
+                case MINUS:
+                    return new LongArithmetic(source, left, right, operator) {
+                        @Override
+                        long compute(long a, long b) {
+                            return Math.subtractExact(a, b);
+                        }
+                    };
+                case STAR:
+                    return new LongArithmetic(source, left, right, operator) {
+                        @Override
+                        long compute(long a, long b) {
+                            return Math.multiplyExact(a, b);
+                        }
+                    };
+                case MODULO:
+                    return new LongArithmetic(source, left, right, operator) {
+                        @Override
+                        long compute(long a, long b) {
+                            if (b == 0) throw new RuntimeError(operator, "Impartire la zero");
+                            return a % b;
+                        }
+                    };
+                case LESS:
+                    return new LongComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(long a, long b) {
+                            return a < b;
+                        }
+                    };
+                case LESS_EQUALS:
+                    return new LongComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(long a, long b) {
+                            return a <= b;
+                        }
+                    };
+                case GREATER:
+                    return new LongComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(long a, long b) {
+                            return a > b;
+                        }
+                    };
+                case GREATER_EQUALS:
+                    return new LongComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(long a, long b) {
+                            return a >= b;
+                        }
+                    };
+                case EQUALS_EQUALS:
+                    return new LongComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(long a, long b) {
+                            return a == b;
+                        }
+                    };
+                case EXMARK_EQUALS:
+                    return new LongComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(long a, long b) {
+                            return a != b;
+                        }
+                    };
+                default:
+                    return null;
+            }
+        }
+    }
+
+    // A result too big for a long makes it the general node as well, which
+    // works it out in double.
+    abstract static class LongArithmetic extends LongNode {
+
+        LongArithmetic(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        // throws ArithmeticException when the result does not fit
+        abstract long compute(long a, long b);
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            long a;
+            try {
+                a = left.executeLong(interpreter);
+            } catch (UnexpectedResult e) {
+                return generalizeLeft(interpreter, e.value);
+            }
+            long b;
+            try {
+                b = right.executeLong(interpreter);
+            } catch (UnexpectedResult e) {
+                return generalize(a, e.value);
+            }
+            try {
+                return compute(a, b);
+            } catch (ArithmeticException overflow) {
+                return generalize(a, b);
+            }
+        }
+
+        @Override
+        long executeLong(Interpreter interpreter) throws UnexpectedResult {
+            long a;
+            try {
+                a = left.executeLong(interpreter);
+            } catch (UnexpectedResult e) {
+                throw new UnexpectedResult(generalizeLeft(interpreter, e.value));
+            }
+            long b;
+            try {
+                b = right.executeLong(interpreter);
+            } catch (UnexpectedResult e) {
+                throw new UnexpectedResult(generalize(a, e.value));
+            }
+            try {
+                return compute(a, b);
+            } catch (ArithmeticException overflow) {
+                throw new UnexpectedResult(generalize(a, b));
+            }
+        }
+
+        @Override
+        Object compute(Object leftValue, Object rightValue) {
+            try {
+                return compute((long) leftValue, (long) rightValue);
+            } catch (ArithmeticException overflow) {
+                return generalize(leftValue, rightValue);
+            }
+        }
+    }
+
+    abstract static class LongComparison extends LongNode {
+
+        LongComparison(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        abstract boolean compare(long a, long b);
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            long a;
+            try {
+                a = left.executeLong(interpreter);
+            } catch (UnexpectedResult e) {
+                return generalizeLeft(interpreter, e.value);
+            }
+            try {
+                return compare(a, right.executeLong(interpreter));
+            } catch (UnexpectedResult e) {
+                return generalize(a, e.value);
+            }
+        }
+
+        @Override
+        Object compute(Object leftValue, Object rightValue) {
+            return compare((long) leftValue, (long) rightValue);
+        }
+    }
+
+    // Two reals. Equality is left to the general node, where NaN equals itself.
+    abstract static class DoubleNode extends Specialized {
+
+        DoubleNode(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        static DoubleNode create(Expr source, ExprNode left, ExprNode right, Token operator) {
+            switch (operator.type) {
+                case PLUS:
+                    return new DoubleArithmetic(source, left, right, operator) {
+                        @Override
+                        double compute(double a, double b) {
+                            return a + b;
+                        }
+                    };
+                case MINUS:
+                    return new DoubleArithmetic(source, left, right, operator) {
+                        @Override
+                        double compute(double a, double b) {
+                            return a - b;
+                        }
+                    };
+                case STAR:
+                    return new DoubleArithmetic(source, left, right, operator) {
+                        @Override
+                        double compute(double a, double b) {
+                            return a * b;
+                        }
+                    };
+                case SLASH:
+                    return new DoubleArithmetic(source, left, right, operator) {
+                        @Override
+                        double compute(double a, double b) {
+                            return a / b;
+                        }
+                    };
+                case MODULO:
+                    return new DoubleArithmetic(source, left, right, operator) {
+                        @Override
+                        double compute(double a, double b) {
+                            return a % b;
+                        }
+                    };
+                case LESS:
+                    return new DoubleComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(double a, double b) {
+                            return a < b;
+                        }
+                    };
+                case LESS_EQUALS:
+                    return new DoubleComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(double a, double b) {
+                            return a <= b;
+                        }
+                    };
+                case GREATER:
+                    return new DoubleComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(double a, double b) {
+                            return a > b;
+                        }
+                    };
+                case GREATER_EQUALS:
+                    return new DoubleComparison(source, left, right, operator) {
+                        @Override
+                        boolean compare(double a, double b) {
+                            return a >= b;
+                        }
+                    };
+                default:
+                    return null;
+            }
+        }
+    }
+
+    abstract static class DoubleArithmetic extends DoubleNode {
+
+        DoubleArithmetic(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        abstract double compute(double a, double b);
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            double a;
+            try {
+                a = left.executeDouble(interpreter);
+            } catch (UnexpectedResult e) {
+                return generalizeLeft(interpreter, e.value);
+            }
+            try {
+                return compute(a, right.executeDouble(interpreter));
+            } catch (UnexpectedResult e) {
+                return generalize(a, e.value);
+            }
+        }
+
+        @Override
+        double executeDouble(Interpreter interpreter) throws UnexpectedResult {
+            double a;
+            try {
+                a = left.executeDouble(interpreter);
+            } catch (UnexpectedResult e) {
+                throw new UnexpectedResult(generalizeLeft(interpreter, e.value));
+            }
+            try {
+                return compute(a, right.executeDouble(interpreter));
+            } catch (UnexpectedResult e) {
+                throw new UnexpectedResult(generalize(a, e.value));
+            }
+        }
+
+        @Override
+        Object compute(Object leftValue, Object rightValue) {
+            return compute((double) leftValue, (double) rightValue);
+        }
+    }
+
+    abstract static class DoubleComparison extends DoubleNode {
+
+        DoubleComparison(Expr source, ExprNode left, ExprNode right, Token operator) {
+            super(source, left, right, operator);
+        }
+
+        abstract boolean compare(double a, double b);
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            double a;
+            try {
+                a = left.executeDouble(interpreter);
+            } catch (UnexpectedResult e) {
+                return generalizeLeft(interpreter, e.value);
+            }
+            try {
+                return compare(a, right.executeDouble(interpreter));
+            } catch (UnexpectedResult e) {
+                return generalize(a, e.value);
+            }
+        }
+
+        @Override
+        Object compute(Object leftValue, Object rightValue) {
+            return compare((double) leftValue, (double) rightValue);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.RocCallable;
+import roc.interpreter.RuntimeError;
+import roc.lexer.Token;
+import roc.parser.Expr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Starts out not knowing what it calls. A site that called one function
+// with the right number of arguments keeps calling it without checking
+// anything but that it is still the same function. Another callee makes
+// it the general call, which checks everything every time.
+abstract class CallNode extends ExprNode {
+
+    ExprNode callee;
+    final ExprNode[] arguments;
+    final Token paren;
+
+    CallNode(Expr source, ExprNode callee, ExprNode[] arguments, Token paren) {
+        super(source);
+        this.callee = adopt(callee);
+        this.arguments = arguments;
+        for (ExprNode argument : arguments) {
+            adopt(argument);
+        }
+        this.paren = paren;
+    }
+
+    static CallNode create(Expr.Call source, ExprNode callee, ExprNode[] arguments) {
+        return new Uninitialized(source, callee, arguments, source.paren);
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (callee == child) callee = replacement;
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] == child) arguments[i] = replacement;
+        }
+    }
+
+    final List<Object> evaluateArguments(Interpreter interpreter) {
+        List<Object> values = new ArrayList<>(arguments.length);
+        for (ExprNode argument : arguments) {
+            values.add(argument.execute(interpreter));
+        }
+        return values;
+    }
+
+    final Object generalize(Interpreter interpreter, Object function, List<Object> values) {
+        return replace(new Generic(source, callee, arguments, paren)).call(interpreter, function, values);
+    }
+
+    static final class Uninitialized extends CallNode {
+
+        Uninitialized(Expr source, ExprNode callee, ExprNode[] arguments, Token paren) {
+            super(source, callee, arguments, paren);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object function = callee.execute(interpreter);
+            List<Object> values = evaluateArguments(interpreter);
+            if (function instanceof RocCallable target && target.arity() == values.size()) {
+                return replace(new Direct(source, callee, arguments, paren, target)).target.call(interpreter, values, paren);
+            }
+            return generalize(interpreter, function, values);
+        }
+    }
+
+    static final class Direct extends CallNode {
+
+        private final RocCallable target;
+
+        Direct(Expr source, ExprNode callee, ExprNode[] arguments, Token paren, RocCallable target) {
+            super(source, callee, arguments, paren);
+            this.target = target;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object function = callee.execute(interpreter);
+            List<Object> values = evaluateArguments(interpreter);
+            if (function != target) return generalize(interpreter, function, values);
+            return target.call(interpreter, values, paren);
+        }
+    }
+
+    static final class Generic extends CallNode {
+
+        Generic(Expr source, ExprNode callee, ExprNode[] arguments, Token paren) {
+            super(source, callee, arguments, paren);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object function = callee.execute(interpreter);
+            return call(interpreter, function, evaluateArguments(interpreter));
+        }
+
+        Object call(Interpreter interpreter, Object function, List<Object> values) {
+            if (!(function instanceof RocCallable)) {
+                throw new RuntimeError(paren, "Putem apela doar functii");
+            }
+
+            RocCallable target = (RocCallable) function;
+            Interpreter.checkArity(target.arity(), values.size(), paren);
+            return target.call(interpreter, values, paren);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.parser.Expr;
+
+// A node of the executable tree built from an expression. The nodes
+// whose work depends on the values they meet start out general and
+// replace themselves in the tree with a version for the values they
+// actually saw, which only checks that it still sees them. A node whose
+// check fails replaces itself again, with something more general.
+public abstract class ExprNode {
+
+    // the expression the node was built from
+    final Expr source;
+    // null for the root, which the expression itself holds
+    ExprNode parent;
+
+    ExprNode(Expr source) {
+        this.source = source;
+    }
+
+    public abstract Object execute(Interpreter interpreter);
+
+    // Parents specialized for numbers ask for them unboxed. A child that
+    // has something else gives it back in the exception instead.
+    long executeLong(Interpreter interpreter) throws UnexpectedResult {
+        Object value = execute(interpreter);
+        if (value instanceof Long number) return number;
+        throw new UnexpectedResult(value);
+    }
+
+    double executeDouble(Interpreter interpreter) throws UnexpectedResult {
+        Object value = execute(interpreter);
+        if (value instanceof Double number) return number;
+        throw new UnexpectedResult(value);
+    }
+
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        throw new IllegalStateException("Nodul nu are copii");
+    }
+
+    final <T extends ExprNode> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+    final <T extends ExprNode> T replace(T replacement) {
+        replacement.parent = parent;
+        if (parent == null) {
+            source.node = replacement;
+        } else {
+            parent.replaceChild(this, replacement);
+        }
+        return replacement;
+    }
+}
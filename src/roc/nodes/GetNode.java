@@ -0,0 +1,112 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.PropertyCache;
+import roc.interpreter.RocInstance;
+import roc.interpreter.RocModule;
+import roc.interpreter.RuntimeError;
+import roc.lexer.Token;
+import roc.parser.Expr;
+
+// Starts out not knowing what it reads from. A site that read an
+// instance keeps to instances and reads them through its inline cache;
+// one that read a module member keeps to modules. Anything else makes it
+// the general read.
+abstract class GetNode extends ExprNode {
+
+    ExprNode object;
+    final Token name;
+
+    GetNode(Expr source, ExprNode object, Token name) {
+        super(source);
+        this.object = adopt(object);
+        this.name = name;
+    }
+
+    static GetNode create(Expr.Get source, ExprNode object) {
+        return new Uninitialized(source, object, source.name);
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (object == child) object = replacement;
+    }
+
+    static final class Uninitialized extends GetNode {
+
+        Uninitialized(Expr source, ExprNode object, Token name) {
+            super(source, object, name);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object value = object.execute(interpreter);
+            if (value instanceof RocInstance instance) {
+                return replace(new Instance(source, object, name)).read(instance);
+            }
+            if (value instanceof RocModule) return replace(new Module(source, object, name)).read(value);
+            return replace(new Generic(source, object, name)).read(value);
+        }
+    }
+
+    static final class Instance extends GetNode {
+
+        private final PropertyCache cache;
+
+        Instance(Expr source, ExprNode object, Token name) {
+            super(source, object, name);
+            cache = new PropertyCache(name);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object value = object.execute(interpreter);
+            if (!(value instanceof RocInstance instance)) {
+                return replace(new Generic(source, object, name)).read(value);
+            }
+            return read(instance);
+        }
+
+        Object read(RocInstance instance) {
+            return cache.get(instance);
+        }
+    }
+
+    static final class Module extends GetNode {
+
+        Module(Expr source, ExprNode object, Token name) {
+            super(source, object, name);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            Object value = object.execute(interpreter);
+            if (!(value instanceof RocModule)) {
+                return replace(new Generic(source, object, name)).read(value);
+            }
+            return read(value);
+        }
+
+        Object read(Object module) {
+            return ((RocModule) module).get(name);
+        }
+    }
+
+    static final class Generic extends GetNode {
+
+        Generic(Expr source, ExprNode object, Token name) {
+            super(source, object, name);
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            return read(object.execute(interpreter));
+        }
+
+        Object read(Object value) {
+            if (value instanceof RocInstance instance) return instance.get(name);
+            if (value instanceof RocModule module) return module.get(name);
+            throw new RuntimeError(name, "Poti avea proprietati doar pe instante");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.parser.Expr;
+
+final class LiteralNode extends ExprNode {
+
+    private final Object value;
+
+    LiteralNode(Expr.Literal source) {
+        super(source);
+        this.value = source.value;
+    }
+
+    @Override
+    public Object execute(Interpreter interpreter) {
+        return value;
+    }
+}
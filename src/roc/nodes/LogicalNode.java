@@ -0,0 +1,34 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.Operators;
+import roc.lexer.TokenType;
+import roc.parser.Expr;
+
+// gives back one of its operands
+final class LogicalNode extends ExprNode {
+
+    ExprNode left;
+    ExprNode right;
+    private final boolean or;
+
+    LogicalNode(Expr.Logical source, ExprNode left, ExprNode right) {
+        super(source);
+        this.left = adopt(left);
+        this.right = adopt(right);
+        this.or = source.operator.type == TokenType.OR;
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (left == child) left = replacement;
+        if (right == child) right = replacement;
+    }
+
+    @Override
+    public Object execute(Interpreter interpreter) {
+        Object value = left.execute(interpreter);
+        if (Operators.isTruthy(value) == or) return value;
+        return right.execute(interpreter);
+    }
+}
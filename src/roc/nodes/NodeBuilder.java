@@ -0,0 +1,115 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.parser.Expr;
+
+// Builds the executable tree of an expression the first time the
+// interpreter evaluates it and leaves it on the expression. Parentheses
+// take no node of their own.
+public final class NodeBuilder implements Expr.Visitor<ExprNode> {
+
+    private final Interpreter interpreter;
+
+    private NodeBuilder(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    public static ExprNode build(Expr expr, Interpreter interpreter) {
+        ExprNode node = expr.accept(new NodeBuilder(interpreter));
+        // a parenthesized expression keeps its tree on the outer expression
+        if (node.source != expr) node = new Root(expr, node);
+        expr.node = node;
+        return node;
+    }
+
+    @Override
+    public ExprNode visitAssignExpr(Expr.Assign expr) {
+        return AssignNode.create(expr, build(expr.value), interpreter);
+    }
+
+    @Override
+    public ExprNode visitBinaryExpr(Expr.Binary expr) {
+        return BinaryNode.create(expr, build(expr.left), build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitCallExpr(Expr.Call expr) {
+        // method calls are left to the interpreter, which runs them unbound
+        if (expr.calle instanceof Expr.Get || expr.calle instanceof Expr.Super) return new VisitorNode(expr);
+
+        ExprNode[] arguments = new ExprNode[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = build(expr.arguments.get(i));
+        }
+        return CallNode.create(expr, build(expr.calle), arguments);
+    }
+
+    @Override
+    public ExprNode visitGetExpr(Expr.Get expr) {
+        return GetNode.create(expr, build(expr.object));
+    }
+
+    @Override
+    public ExprNode visitGroupingExpr(Expr.Grouping expr) {
+        return build(expr.expression);
+    }
+
+    @Override
+    public ExprNode visitLiteralExpr(Expr.Literal expr) {
+        return new LiteralNode(expr);
+    }
+
+    @Override
+    public ExprNode visitLogicalExpr(Expr.Logical expr) {
+        return new LogicalNode(expr, build(expr.left), build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitSetExpr(Expr.Set expr) {
+        return new SetNode(expr, build(expr.object), build(expr.value));
+    }
+
+    @Override
+    public ExprNode visitSuperExpr(Expr.Super expr) {
+        return new VisitorNode(expr);
+    }
+
+    @Override
+    public ExprNode visitThisExpr(Expr.This expr) {
+        return new VisitorNode(expr);
+    }
+
+    @Override
+    public ExprNode visitUnaryExpr(Expr.Unary expr) {
+        return new UnaryNode(expr, build(expr.right));
+    }
+
+    @Override
+    public ExprNode visitVariableExpr(Expr.Variable expr) {
+        return VariableNode.create(expr, interpreter);
+    }
+
+    private ExprNode build(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private static final class Root extends ExprNode {
+
+        ExprNode child;
+
+        Root(Expr source, ExprNode child) {
+            super(source);
+            this.child = adopt(child);
+        }
+
+        @Override
+        void replaceChild(ExprNode node, ExprNode replacement) {
+            if (child == node) child = replacement;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            return child.execute(interpreter);
+        }
+    }
+}
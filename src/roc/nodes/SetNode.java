@@ -0,0 +1,40 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.PropertyCache;
+import roc.interpreter.RocInstance;
+import roc.interpreter.RuntimeError;
+import roc.lexer.Token;
+import roc.parser.Expr;
+
+final class SetNode extends ExprNode {
+
+    ExprNode object;
+    ExprNode value;
+    private final Token name;
+    private final PropertyCache cache;
+
+    SetNode(Expr.Set source, ExprNode object, ExprNode value) {
+        super(source);
+        this.object = adopt(object);
+        this.value = adopt(value);
+        this.name = source.name;
+        this.cache = new PropertyCache(source.name);
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (object == child) object = replacement;
+        if (value == child) value = replacement;
+    }
+
+    @Override
+    public Object execute(Interpreter interpreter) {
+        Object target = object.execute(interpreter);
+        if (!(target instanceof RocInstance instance)) {
+            throw new RuntimeError(name, "Doar instantele pot avea proprietati");
+        }
+        cache.set(instance, value.execute(interpreter));
+        return null;
+    }
+}
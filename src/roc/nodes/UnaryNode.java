@@ -0,0 +1,34 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.Operators;
+import roc.lexer.Token;
+import roc.lexer.TokenType;
+import roc.parser.Expr;
+
+final class UnaryNode extends ExprNode {
+
+    ExprNode right;
+    private final Token operator;
+    private final boolean not;
+
+    UnaryNode(Expr.Unary source, ExprNode right) {
+        super(source);
+        this.right = adopt(right);
+        this.operator = source.operator;
+        this.not = operator.type == TokenType.EXMARK;
+    }
+
+    @Override
+    void replaceChild(ExprNode child, ExprNode replacement) {
+        if (right == child) right = replacement;
+    }
+
+    @Override
+    public Object execute(Interpreter interpreter) {
+        Object value = right.execute(interpreter);
+        if (not) return !Operators.isTruthy(value);
+        if (value instanceof Long number) return Operators.negate(number);
+        return Operators.unary(operator, value);
+    }
+}
@@ -0,0 +1,14 @@
+package roc.nodes;
+
+// what a child gives back when it was asked for a kind of value it does not have
+final class UnexpectedResult extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    final Object value;
+
+    UnexpectedResult(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+}
@@ -0,0 +1,69 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.lexer.Token;
+import roc.parser.Expr;
+
+// Reads a variable where the resolver found it, so only the globals are
+// looked up, and only by their slot.
+abstract class VariableNode extends ExprNode {
+
+    VariableNode(Expr source) {
+        super(source);
+    }
+
+    static VariableNode create(Expr.Variable source, Interpreter interpreter) {
+        if (source.depth >= 0) return new Local(source, source.depth, source.slot);
+        if (source.upvalue >= 0) return new Upvalue(source, source.upvalue);
+        return new Global(source, source.name, interpreter.globals.slot(source.name.lexeme));
+    }
+
+    static final class Local extends VariableNode {
+
+        private final int depth;
+        private final int slot;
+
+        Local(Expr source, int depth, int slot) {
+            super(source);
+            this.depth = depth;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            return interpreter.local(depth, slot);
+        }
+    }
+
+    static final class Upvalue extends VariableNode {
+
+        private final int index;
+
+        Upvalue(Expr source, int index) {
+            super(source);
+            this.index = index;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            return interpreter.upvalue(index);
+        }
+    }
+
+    static final class Global extends VariableNode {
+
+        private final Token name;
+        private final int slot;
+
+        Global(Expr source, Token name, int slot) {
+            super(source);
+            this.name = name;
+            this.slot = slot;
+        }
+
+        @Override
+        public Object execute(Interpreter interpreter) {
+            return interpreter.globals.get(name, slot);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package roc.nodes;
+
+import roc.interpreter.Interpreter;
+import roc.parser.Expr;
+
+// 'instanta', 'super' and method calls, which the interpreter's visitor
+// still runs
+final class VisitorNode extends ExprNode {
+
+    VisitorNode(Expr source) {
+        super(source);
+    }
+
+    @Override
+    public Object execute(Interpreter interpreter) {
+        return source.accept(interpreter);
+    }
+}
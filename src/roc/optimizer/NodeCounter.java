@@ -0,0 +1,154 @@
+package roc.optimizer;
+
+import roc.parser.Expr;
+import roc.parser.Stmt;
+
+import java.util.List;
+
+class NodeCounter implements Expr.Visitor<Integer>, Stmt.Visitor<Integer> {
+
+    int count(Expr expr) {
+        return expr == null ? 0 : expr.accept(this);
+    }
+
+    int count(Stmt stmt) {
+        return stmt == null ? 0 : stmt.accept(this);
+    }
+
+    int count(List<? extends Stmt> statements) {
+        int nodes = 0;
+        for (Stmt statement : statements) {
+            nodes += count(statement);
+        }
+        return nodes;
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.Assign expr) {
+        return 1 + count(expr.value);
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        return 1 + count(expr.left) + count(expr.right);
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.Call expr) {
+        int nodes = 1 + count(expr.calle);
+        for (Expr argument : expr.arguments) {
+            nodes += count(argument);
+        }
+        return nodes;
+    }
+
+    @Override
+    public Integer visitGetExpr(Expr.Get expr) {
+        return 1 + count(expr.object);
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        return 1 + count(expr.expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitLogicalExpr(Expr.Logical expr) {
+        return 1 + count(expr.left) + count(expr.right);
+    }
+
+    @Override
+    public Integer visitSetExpr(Expr.Set expr) {
+        return 1 + count(expr.object) + count(expr.value);
+    }
+
+    @Override
+    public Integer visitSuperExpr(Expr.Super expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitThisExpr(Expr.This expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        return 1 + count(expr.right);
+    }
+
+    @Override
+    public Integer visitVariableExpr(Expr.Variable expr) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitBlockStmt(Stmt.Block stmt) {
+        return 1 + count(stmt.statements);
+    }
+
+    @Override
+    public Integer visitBreakStmt(Stmt.Break stmt) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitClassStmt(Stmt.Class stmt) {
+        return 1 + count(stmt.superclass) + count(stmt.methods);
+    }
+
+    @Override
+    public Integer visitContinueStmt(Stmt.Continue stmt) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitExpressionStmt(Stmt.Expression stmt) {
+        return 1 + count(stmt.expression);
+    }
+
+    @Override
+    public Integer visitForStmt(Stmt.For stmt) {
+        return 1 + count(stmt.initializer) + count(stmt.condition) + count(stmt.increment) + count(stmt.body);
+    }
+
+    @Override
+    public Integer visitFunctionStmt(Stmt.Function stmt) {
+        return 1 + count(stmt.body);
+    }
+
+    @Override
+    public Integer visitIfStmt(Stmt.If stmt) {
+        return 1 + count(stmt.condition) + count(stmt.thenBranch) + count(stmt.elseBranch);
+    }
+
+    @Override
+    public Integer visitImportStmt(Stmt.Import stmt) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitPrintStmt(Stmt.Print stmt) {
+        return 1 + count(stmt.expression);
+    }
+
+    @Override
+    public Integer visitReturnStmt(Stmt.Return stmt) {
+        return 1 + count(stmt.value);
+    }
+
+    @Override
+    public Integer visitVarStmt(Stmt.Var stmt) {
+        return 1 + count(stmt.initializer);
+    }
+
+    @Override
+    public Integer visitWhileStmt(Stmt.While stmt) {
+        return 1 + count(stmt.condition) + count(stmt.body);
+    }
+}
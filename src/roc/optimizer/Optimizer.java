@@ -0,0 +1,370 @@
+package roc.optimizer;
+
+import roc.interpreter.Operators;
+import roc.interpreter.RuntimeError;
+import roc.lexer.TokenType;
+import roc.parser.Expr;
+import roc.parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs between the parser and the resolver. Folds operators applied to
+// literals, drops identities that cannot change a number, and removes code
+// that can never run. Anything that would fail at run time is left alone
+// so the error still shows up when (and if) it is reached.
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    private final NodeCounter counter = new NodeCounter();
+    private int removed = 0;
+
+    public List<Stmt> optimize(List<Stmt> statements) {
+        // a top level 'returneaza' is an error the resolver has to see,
+        // so nothing is cut after it here
+        return optimize(statements, false);
+    }
+
+    public int removedNodes() {
+        return removed;
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        expr.value = optimize(expr.value);
+        return expr;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+
+        expr.left = optimize(expr.left);
+        expr.right = optimize(expr.right);
+
+        if (expr.left instanceof Expr.Literal && expr.right instanceof Expr.Literal) {
+            try {
+                Object value = Operators.binary(expr.operator,
+                        ((Expr.Literal) expr.left).value, ((Expr.Literal) expr.right).value);
+                removed += 2;
+                return new Expr.Literal(value);
+            } catch (RuntimeError error) {
+                return expr;
+            }
+        }
+
+        switch (expr.operator.type) {
+            case STAR:
+                if (isInteger(expr.right, 1) && isNumber(expr.left)) return keep(expr.left);
+                if (isInteger(expr.left, 1) && isNumber(expr.right)) return keep(expr.right);
+                break;
+            case MINUS:
+                if (isInteger(expr.right, 0) && isNumber(expr.left)) return keep(expr.left);
+                break;
+            case PLUS:
+                // -0.0 + 0 is 0.0, so only for operands that cannot be doubles
+                if (isInteger(expr.right, 0) && isInteger(expr.left)) return keep(expr.left);
+                if (isInteger(expr.left, 0) && isInteger(expr.right)) return keep(expr.right);
+                break;
+        }
+        return expr;
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+
+        expr.calle = optimize(expr.calle);
+        expr.arguments.replaceAll(this::optimize);
+        return expr;
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        expr.object = optimize(expr.object);
+        return expr;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        removed++;
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+
+        expr.left = optimize(expr.left);
+        expr.right = optimize(expr.right);
+
+        if (expr.left instanceof Expr.Literal) {
+            boolean truthy = Operators.isTruthy(((Expr.Literal) expr.left).value);
+            boolean decided = expr.operator.type == TokenType.OR ? truthy : !truthy;
+            if (decided) {
+                removed += 1 + counter.count(expr.right);
+                return expr.left;
+            }
+            removed += 2;
+            return expr.right;
+        }
+        return expr;
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        expr.object = optimize(expr.object);
+        expr.value = optimize(expr.value);
+        return expr;
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+
+        expr.right = optimize(expr.right);
+        if (expr.right instanceof Expr.Literal) {
+            try {
+                Object value = Operators.unary(expr.operator, ((Expr.Literal) expr.right).value);
+                removed += 1;
+                return new Expr.Literal(value);
+            } catch (RuntimeError error) {
+                return expr;
+            }
+        }
+        return expr;
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+
+        stmt.statements = optimize(stmt.statements, true);
+        if (stmt.statements.isEmpty()) {
+            removed++;
+            return null;
+        }
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+
+        for (Stmt.Function method : stmt.methods) {
+            optimize(method);
+        }
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitContinueStmt(Stmt.Continue stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+
+        stmt.expression = optimize(stmt.expression);
+        if (stmt.expression instanceof Expr.Literal) {
+            removed += 2;
+            return null;
+        }
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitForStmt(Stmt.For stmt) {
+
+        stmt.initializer = optimize(stmt.initializer);
+        stmt.condition = optimize(stmt.condition);
+        stmt.increment = optimize(stmt.increment);
+
+        if (stmt.condition instanceof Expr.Literal) {
+            if (!Operators.isTruthy(((Expr.Literal) stmt.condition).value)) {
+                // only the initializer runs, still in a scope of its own
+                removed += 1 + counter.count(stmt.condition) + counter.count(stmt.increment)
+                        + counter.count(stmt.body);
+                if (stmt.initializer == null) return null;
+                removed--;
+                List<Stmt> initializer = new ArrayList<>();
+                initializer.add(stmt.initializer);
+                return new Stmt.Block(initializer);
+            }
+            removed++;
+            stmt.condition = null;
+        }
+
+        stmt.body = optimize(stmt.body);
+        if (stmt.body == null) stmt.body = empty();
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        stmt.body = optimize(stmt.body, true);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+
+        stmt.condition = optimize(stmt.condition);
+        stmt.thenBranch = optimize(stmt.thenBranch);
+        stmt.elseBranch = optimize(stmt.elseBranch);
+
+        if (stmt.condition instanceof Expr.Literal) {
+            removed += 2;
+            if (Operators.isTruthy(((Expr.Literal) stmt.condition).value)) {
+                removed += counter.count(stmt.elseBranch);
+                return stmt.thenBranch;
+            }
+            removed += counter.count(stmt.thenBranch);
+            return stmt.elseBranch;
+        }
+
+        if (stmt.thenBranch == null) stmt.thenBranch = empty();
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitImportStmt(Stmt.Import stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        stmt.expression = optimize(stmt.expression);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        stmt.value = optimize(stmt.value);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        stmt.initializer = optimize(stmt.initializer);
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+
+        stmt.condition = optimize(stmt.condition);
+        if (stmt.condition instanceof Expr.Literal
+                && !Operators.isTruthy(((Expr.Literal) stmt.condition).value)) {
+            removed += 1 + counter.count(stmt.condition) + counter.count(stmt.body);
+            return null;
+        }
+
+        stmt.body = optimize(stmt.body);
+        if (stmt.body == null) stmt.body = empty();
+        return stmt;
+    }
+
+    private List<Stmt> optimize(List<Stmt> statements, boolean unreachableAfterReturn) {
+
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        for (int i = 0; i < statements.size(); i++) {
+            Stmt statement = optimize(statements.get(i));
+            if (statement != null) optimized.add(statement);
+
+            if (unreachableAfterReturn && (statement instanceof Stmt.Return
+                    || statement instanceof Stmt.Break || statement instanceof Stmt.Continue)) {
+                removed += counter.count(statements.subList(i + 1, statements.size()));
+                break;
+            }
+        }
+        return optimized;
+    }
+
+    private Stmt optimize(Stmt stmt) {
+        return stmt == null ? null : stmt.accept(this);
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    // the operator and the neutral literal go away
+    private Expr keep(Expr operand) {
+        removed += 2;
+        return operand;
+    }
+
+    // for branches that are still needed but were optimized away
+    private Stmt empty() {
+        removed--;
+        return new Stmt.Block(new ArrayList<>());
+    }
+
+    private static boolean isInteger(Expr expr, long value) {
+        return expr instanceof Expr.Literal
+                && ((Expr.Literal) expr).value instanceof Long
+                && (long) ((Expr.Literal) expr).value == value;
+    }
+
+    // true when the expression either produces an integer or fails
+    private static boolean isInteger(Expr expr) {
+
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Long;
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            return unary.operator.type == TokenType.MINUS && isInteger(unary.right);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case PLUS:
+                case MINUS:
+                case STAR:
+                case MODULO:
+                    return isInteger(binary.left) && isInteger(binary.right);
+            }
+        }
+        return false;
+    }
+
+    // true when the expression either produces a number or fails
+    private static boolean isNumber(Expr expr) {
+
+        if (expr instanceof Expr.Literal) return Operators.isNumber(((Expr.Literal) expr).value);
+        if (expr instanceof Expr.Unary) {
+            return ((Expr.Unary) expr).operator.type == TokenType.MINUS;
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case STAR:
+                case SLASH:
+                case MODULO:
+                    return true;
+                case PLUS:
+                    return isNumber(binary.left) && isNumber(binary.right);
+            }
+        }
+        return false;
+    }
+}
@@ -6,6 +6,9 @@ import java.util.List;
 
 public abstract class Expr {
 
+	// the executable tree built from the expression the first time it runs as one
+	public Object node;
+
 	public interface Visitor<R> {
 		R visitAssignExpr(Assign expr);
 		R visitBinaryExpr(Binary expr);
@@ -24,6 +27,10 @@ public abstract class Expr {
 
 		public Token name;
 		public Expr value;
+		public int depth = -1;
+		public int slot = -1;
+		public int upvalue = -1;
+		public transient int global = -1;
 
 		public Assign(Token name, Expr value) {
 			this.name = name;
@@ -41,6 +48,8 @@ public abstract class Expr {
 		public Expr left;
 		public Token operator;
 		public Expr right;
+		public int type;
+		public int operands;
 
 		public Binary(Expr left, Token operator, Expr right) {
 			this.left = left;
@@ -76,6 +85,7 @@ public abstract class Expr {
 
 		public Expr object;
 		public Token name;
+		public transient Object cache;
 
 		public Get(Expr object, Token name) {
 			this.object = object;
@@ -139,6 +149,7 @@ public abstract class Expr {
 		public Expr object;
 		public Token name;
 		public Expr value;
+		public transient Object cache;
 
 		public Set(Expr object, Token name, Expr value) {
 			this.object = object;
@@ -156,6 +167,12 @@ public abstract class Expr {
 
 		public Token keyword;
 		public Token method;
+		public int depth = -1;
+		public int slot = -1;
+		public int upvalue = -1;
+		public int thisDepth = -1;
+		public int thisSlot = -1;
+		public int thisUpvalue = -1;
 
 		public Super(Token keyword, Token method) {
 			this.keyword = keyword;
@@ -171,6 +188,9 @@ public abstract class Expr {
 	public static class This extends Expr {
 
 		public Token keyword;
+		public int depth = -1;
+		public int slot = -1;
+		public int upvalue = -1;
 
 		public This(Token keyword) {
 			this.keyword = keyword;
@@ -186,6 +206,7 @@ public abstract class Expr {
 
 		public Token operator;
 		public Expr right;
+		public int type;
 
 		public Unary(Token operator, Expr right) {
 			this.operator = operator;
@@ -201,6 +222,11 @@ public abstract class Expr {
 	public static class Variable extends Expr {
 
 		public Token name;
+		public int depth = -1;
+		public int slot = -1;
+		public int upvalue = -1;
+		public int type;
+		public transient int global = -1;
 
 		public Variable(Token name) {
 			this.name = name;
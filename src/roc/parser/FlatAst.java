@@ -0,0 +1,602 @@
+package roc.parser;
+
+import roc.lexer.Token;
+import roc.lexer.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// The resolved trees of a program as the compilation cache stores them.
+// Nothing walks the arrays: statements() decodes them to the object
+// trees the resolver and the engines run on.
+public class FlatAst {
+
+	public static final int STMT_BLOCK = 0;
+	public static final int STMT_BREAK = 1;
+	public static final int STMT_CLASS = 2;
+	public static final int STMT_CONTINUE = 3;
+	public static final int STMT_EXPRESSION = 4;
+	public static final int STMT_FOR = 5;
+	public static final int STMT_FUNCTION = 6;
+	public static final int STMT_IF = 7;
+	public static final int STMT_IMPORT = 8;
+	public static final int STMT_PRINT = 9;
+	public static final int STMT_RETURN = 10;
+	public static final int STMT_VAR = 11;
+	public static final int STMT_WHILE = 12;
+	public static final int EXPR_ASSIGN = 13;
+	public static final int EXPR_BINARY = 14;
+	public static final int EXPR_CALL = 15;
+	public static final int EXPR_GET = 16;
+	public static final int EXPR_GROUPING = 17;
+	public static final int EXPR_LITERAL = 18;
+	public static final int EXPR_LOGICAL = 19;
+	public static final int EXPR_SET = 20;
+	public static final int EXPR_SUPER = 21;
+	public static final int EXPR_THIS = 22;
+	public static final int EXPR_UNARY = 23;
+	public static final int EXPR_VARIABLE = 24;
+
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+	public int[] kinds = new int[256];
+	public int[] offsets = new int[256];
+	public int[] data = new int[1024];
+	// tokens: type ordinal, line, lexeme in strings, literal in constants (-1 for none)
+	public int[] tokenTypes = new int[256];
+	public int[] tokenLines = new int[256];
+	public int[] tokenLexemes = new int[256];
+	public int[] tokenLiterals = new int[256];
+	public String[] strings = new String[256];
+	public Object[] constants = new Object[64];
+	public int nodeCount;
+	public int dataCount;
+	public int tokenCount;
+	public int stringCount;
+	public int constantCount;
+	public int root = -1;
+	private Map<String, Integer> stringIndex = new HashMap<>();
+	private Object[] views;
+
+	public static FlatAst flatten(List<Stmt> statements) {
+		FlatAst ast = new FlatAst();
+		ast.root = ast.addStmts(statements);
+		ast.trim();
+		return ast;
+	}
+
+	private final Flattener flattener = new Flattener();
+
+	private class Flattener implements Stmt.Visitor<Integer>, Expr.Visitor<Integer> {
+
+		@Override
+		public Integer visitBlockStmt(Stmt.Block stmt) {
+			int node = node(STMT_BLOCK, 2);
+			int at = offsets[node];
+			set(at + 0, addStmts(stmt.statements));
+			set(at + 1, stmt.frameSize);
+			return node;
+		}
+
+		@Override
+		public Integer visitBreakStmt(Stmt.Break stmt) {
+			int node = node(STMT_BREAK, 1);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.keyword));
+			return node;
+		}
+
+		@Override
+		public Integer visitClassStmt(Stmt.Class stmt) {
+			int node = node(STMT_CLASS, 4);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.name));
+			set(at + 1, addExpr(stmt.superclass));
+			set(at + 2, addStmts(stmt.methods));
+			set(at + 3, stmt.slot);
+			return node;
+		}
+
+		@Override
+		public Integer visitContinueStmt(Stmt.Continue stmt) {
+			int node = node(STMT_CONTINUE, 1);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.keyword));
+			return node;
+		}
+
+		@Override
+		public Integer visitExpressionStmt(Stmt.Expression stmt) {
+			int node = node(STMT_EXPRESSION, 1);
+			int at = offsets[node];
+			set(at + 0, addExpr(stmt.expression));
+			return node;
+		}
+
+		@Override
+		public Integer visitForStmt(Stmt.For stmt) {
+			int node = node(STMT_FOR, 5);
+			int at = offsets[node];
+			set(at + 0, addStmt(stmt.initializer));
+			set(at + 1, addExpr(stmt.condition));
+			set(at + 2, addExpr(stmt.increment));
+			set(at + 3, addStmt(stmt.body));
+			set(at + 4, stmt.frameSize);
+			return node;
+		}
+
+		@Override
+		public Integer visitFunctionStmt(Stmt.Function stmt) {
+			int node = node(STMT_FUNCTION, 6);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.name));
+			set(at + 1, addTokens(stmt.params));
+			set(at + 2, addStmts(stmt.body));
+			set(at + 3, stmt.slot);
+			set(at + 4, stmt.frameSize);
+			set(at + 5, addInts(stmt.captures));
+			return node;
+		}
+
+		@Override
+		public Integer visitIfStmt(Stmt.If stmt) {
+			int node = node(STMT_IF, 3);
+			int at = offsets[node];
+			set(at + 0, addExpr(stmt.condition));
+			set(at + 1, addStmt(stmt.thenBranch));
+			set(at + 2, addStmt(stmt.elseBranch));
+			return node;
+		}
+
+		@Override
+		public Integer visitImportStmt(Stmt.Import stmt) {
+			int node = node(STMT_IMPORT, 3);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.keyword));
+			set(at + 1, addTokens(stmt.path));
+			set(at + 2, stmt.slot);
+			return node;
+		}
+
+		@Override
+		public Integer visitPrintStmt(Stmt.Print stmt) {
+			int node = node(STMT_PRINT, 1);
+			int at = offsets[node];
+			set(at + 0, addExpr(stmt.expression));
+			return node;
+		}
+
+		@Override
+		public Integer visitReturnStmt(Stmt.Return stmt) {
+			int node = node(STMT_RETURN, 2);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.keyword));
+			set(at + 1, addExpr(stmt.value));
+			return node;
+		}
+
+		@Override
+		public Integer visitVarStmt(Stmt.Var stmt) {
+			int node = node(STMT_VAR, 3);
+			int at = offsets[node];
+			set(at + 0, addToken(stmt.name));
+			set(at + 1, addExpr(stmt.initializer));
+			set(at + 2, stmt.slot);
+			return node;
+		}
+
+		@Override
+		public Integer visitWhileStmt(Stmt.While stmt) {
+			int node = node(STMT_WHILE, 2);
+			int at = offsets[node];
+			set(at + 0, addExpr(stmt.condition));
+			set(at + 1, addStmt(stmt.body));
+			return node;
+		}
+
+		@Override
+		public Integer visitAssignExpr(Expr.Assign expr) {
+			int node = node(EXPR_ASSIGN, 5);
+			int at = offsets[node];
+			set(at + 0, addToken(expr.name));
+			set(at + 1, addExpr(expr.value));
+			set(at + 2, expr.depth);
+			set(at + 3, expr.slot);
+			set(at + 4, expr.upvalue);
+			return node;
+		}
+
+		@Override
+		public Integer visitBinaryExpr(Expr.Binary expr) {
+			int node = node(EXPR_BINARY, 5);
+			int at = offsets[node];
+			set(at + 0, addExpr(expr.left));
+			set(at + 1, addToken(expr.operator));
+			set(at + 2, addExpr(expr.right));
+			set(at + 3, expr.type);
+			set(at + 4, expr.operands);
+			return node;
+		}
+
+		@Override
+		public Integer visitCallExpr(Expr.Call expr) {
+			int node = node(EXPR_CALL, 3);
+			int at = offsets[node];
+			set(at + 0, addExpr(expr.calle));
+			set(at + 1, addToken(expr.paren));
+			set(at + 2, addExprs(expr.arguments));
+			return node;
+		}
+
+		@Override
+		public Integer visitGetExpr(Expr.Get expr) {
+			int node = node(EXPR_GET, 2);
+			int at = offsets[node];
+			set(at + 0, addExpr(expr.object));
+			set(at + 1, addToken(expr.name));
+			return node;
+		}
+
+		@Override
+		public Integer visitGroupingExpr(Expr.Grouping expr) {
+			int node = node(EXPR_GROUPING, 1);
+			int at = offsets[node];
+			set(at + 0, addExpr(expr.expression));
+			return node;
+		}
+
+		@Override
+		public Integer visitLiteralExpr(Expr.Literal expr) {
+			int node = node(EXPR_LITERAL, 1);
+			int at = offsets[node];
+			set(at + 0, addConstant(expr.value));
+			return node;
+		}
+
+		@Override
+		public Integer visitLogicalExpr(Expr.Logical expr) {
+			int node = node(EXPR_LOGICAL, 3);
+			int at = offsets[node];
+			set(at + 0, addExpr(expr.left));
+			set(at + 1, addToken(expr.operator));
+			set(at + 2, addExpr(expr.right));
+			return node;
+		}
+
+		@Override
+		public Integer visitSetExpr(Expr.Set expr) {
+			int node = node(EXPR_SET, 3);
+			int at = offsets[node];
+			set(at + 0, addExpr(expr.object));
+			set(at + 1, addToken(expr.name));
+			set(at + 2, addExpr(expr.value));
+			return node;
+		}
+
+		@Override
+		public Integer visitSuperExpr(Expr.Super expr) {
+			int node = node(EXPR_SUPER, 8);
+			int at = offsets[node];
+			set(at + 0, addToken(expr.keyword));
+			set(at + 1, addToken(expr.method));
+			set(at + 2, expr.depth);
+			set(at + 3, expr.slot);
+			set(at + 4, expr.upvalue);
+			set(at + 5, expr.thisDepth);
+			set(at + 6, expr.thisSlot);
+			set(at + 7, expr.thisUpvalue);
+			return node;
+		}
+
+		@Override
+		public Integer visitThisExpr(Expr.This expr) {
+			int node = node(EXPR_THIS, 4);
+			int at = offsets[node];
+			set(at + 0, addToken(expr.keyword));
+			set(at + 1, expr.depth);
+			set(at + 2, expr.slot);
+			set(at + 3, expr.upvalue);
+			return node;
+		}
+
+		@Override
+		public Integer visitUnaryExpr(Expr.Unary expr) {
+			int node = node(EXPR_UNARY, 3);
+			int at = offsets[node];
+			set(at + 0, addToken(expr.operator));
+			set(at + 1, addExpr(expr.right));
+			set(at + 2, expr.type);
+			return node;
+		}
+
+		@Override
+		public Integer visitVariableExpr(Expr.Variable expr) {
+			int node = node(EXPR_VARIABLE, 5);
+			int at = offsets[node];
+			set(at + 0, addToken(expr.name));
+			set(at + 1, expr.depth);
+			set(at + 2, expr.slot);
+			set(at + 3, expr.upvalue);
+			set(at + 4, expr.type);
+			return node;
+		}
+	}
+
+	// The object tree, decoded on demand. Each node is decoded once, so
+	// asking twice for the same index gives back the same object.
+	public List<Stmt> statements() {
+		return stmtList(root);
+	}
+
+	public Stmt stmt(int node) {
+		if (node < 0) return null;
+		if (views == null) views = new Object[nodeCount];
+		if (views[node] != null) return (Stmt) views[node];
+
+		int at = offsets[node];
+		Stmt stmt;
+		switch (kinds[node]) {
+			case STMT_BLOCK:
+				stmt = new Stmt.Block(stmtList(data[at + 0]));
+				((Stmt.Block) stmt).frameSize = data[at + 1];
+				break;
+			case STMT_BREAK:
+				stmt = new Stmt.Break(token(data[at + 0]));
+				break;
+			case STMT_CLASS:
+				stmt = new Stmt.Class(token(data[at + 0]), (Expr.Variable) expr(data[at + 1]), cast(stmtList(data[at + 2])));
+				((Stmt.Class) stmt).slot = data[at + 3];
+				break;
+			case STMT_CONTINUE:
+				stmt = new Stmt.Continue(token(data[at + 0]));
+				break;
+			case STMT_EXPRESSION:
+				stmt = new Stmt.Expression(expr(data[at + 0]));
+				break;
+			case STMT_FOR:
+				stmt = new Stmt.For(stmt(data[at + 0]), expr(data[at + 1]), expr(data[at + 2]), stmt(data[at + 3]));
+				((Stmt.For) stmt).frameSize = data[at + 4];
+				break;
+			case STMT_FUNCTION:
+				stmt = new Stmt.Function(token(data[at + 0]), tokenList(data[at + 1]), stmtList(data[at + 2]));
+				((Stmt.Function) stmt).slot = data[at + 3];
+				((Stmt.Function) stmt).frameSize = data[at + 4];
+				((Stmt.Function) stmt).captures = ints(data[at + 5]);
+				break;
+			case STMT_IF:
+				stmt = new Stmt.If(expr(data[at + 0]), stmt(data[at + 1]), stmt(data[at + 2]));
+				break;
+			case STMT_IMPORT:
+				stmt = new Stmt.Import(token(data[at + 0]), tokenList(data[at + 1]));
+				((Stmt.Import) stmt).slot = data[at + 2];
+				break;
+			case STMT_PRINT:
+				stmt = new Stmt.Print(expr(data[at + 0]));
+				break;
+			case STMT_RETURN:
+				stmt = new Stmt.Return(token(data[at + 0]), expr(data[at + 1]));
+				break;
+			case STMT_VAR:
+				stmt = new Stmt.Var(token(data[at + 0]), expr(data[at + 1]));
+				((Stmt.Var) stmt).slot = data[at + 2];
+				break;
+			case STMT_WHILE:
+				stmt = new Stmt.While(expr(data[at + 0]), stmt(data[at + 1]));
+				break;
+			default:
+				throw new IllegalStateException("Nodul " + node + " nu este stmt");
+		}
+		views[node] = stmt;
+		return stmt;
+	}
+
+	public Expr expr(int node) {
+		if (node < 0) return null;
+		if (views == null) views = new Object[nodeCount];
+		if (views[node] != null) return (Expr) views[node];
+
+		int at = offsets[node];
+		Expr expr;
+		switch (kinds[node]) {
+			case EXPR_ASSIGN:
+				expr = new Expr.Assign(token(data[at + 0]), expr(data[at + 1]));
+				((Expr.Assign) expr).depth = data[at + 2];
+				((Expr.Assign) expr).slot = data[at + 3];
+				((Expr.Assign) expr).upvalue = data[at + 4];
+				break;
+			case EXPR_BINARY:
+				expr = new Expr.Binary(expr(data[at + 0]), token(data[at + 1]), expr(data[at + 2]));
+				((Expr.Binary) expr).type = data[at + 3];
+				((Expr.Binary) expr).operands = data[at + 4];
+				break;
+			case EXPR_CALL:
+				expr = new Expr.Call(expr(data[at + 0]), token(data[at + 1]), exprList(data[at + 2]));
+				break;
+			case EXPR_GET:
+				expr = new Expr.Get(expr(data[at + 0]), token(data[at + 1]));
+				break;
+			case EXPR_GROUPING:
+				expr = new Expr.Grouping(expr(data[at + 0]));
+				break;
+			case EXPR_LITERAL:
+				expr = new Expr.Literal(constants[data[at + 0]]);
+				break;
+			case EXPR_LOGICAL:
+				expr = new Expr.Logical(expr(data[at + 0]), token(data[at + 1]), expr(data[at + 2]));
+				break;
+			case EXPR_SET:
+				expr = new Expr.Set(expr(data[at + 0]), token(data[at + 1]), expr(data[at + 2]));
+				break;
+			case EXPR_SUPER:
+				expr = new Expr.Super(token(data[at + 0]), token(data[at + 1]));
+				((Expr.Super) expr).depth = data[at + 2];
+				((Expr.Super) expr).slot = data[at + 3];
+				((Expr.Super) expr).upvalue = data[at + 4];
+				((Expr.Super) expr).thisDepth = data[at + 5];
+				((Expr.Super) expr).thisSlot = data[at + 6];
+				((Expr.Super) expr).thisUpvalue = data[at + 7];
+				break;
+			case EXPR_THIS:
+				expr = new Expr.This(token(data[at + 0]));
+				((Expr.This) expr).depth = data[at + 1];
+				((Expr.This) expr).slot = data[at + 2];
+				((Expr.This) expr).upvalue = data[at + 3];
+				break;
+			case EXPR_UNARY:
+				expr = new Expr.Unary(token(data[at + 0]), expr(data[at + 1]));
+				((Expr.Unary) expr).type = data[at + 2];
+				break;
+			case EXPR_VARIABLE:
+				expr = new Expr.Variable(token(data[at + 0]));
+				((Expr.Variable) expr).depth = data[at + 1];
+				((Expr.Variable) expr).slot = data[at + 2];
+				((Expr.Variable) expr).upvalue = data[at + 3];
+				((Expr.Variable) expr).type = data[at + 4];
+				break;
+			default:
+				throw new IllegalStateException("Nodul " + node + " nu este expr");
+		}
+		views[node] = expr;
+		return expr;
+	}
+
+	private void trim() {
+		kinds = Arrays.copyOf(kinds, nodeCount);
+		offsets = Arrays.copyOf(offsets, nodeCount);
+		data = Arrays.copyOf(data, dataCount);
+		tokenTypes = Arrays.copyOf(tokenTypes, tokenCount);
+		tokenLines = Arrays.copyOf(tokenLines, tokenCount);
+		tokenLexemes = Arrays.copyOf(tokenLexemes, tokenCount);
+		tokenLiterals = Arrays.copyOf(tokenLiterals, tokenCount);
+		strings = Arrays.copyOf(strings, stringCount);
+		constants = Arrays.copyOf(constants, constantCount);
+		stringIndex = null;
+	}
+
+	private int node(int kind, int fields) {
+		if (nodeCount == kinds.length) {
+			kinds = Arrays.copyOf(kinds, nodeCount * 2);
+			offsets = Arrays.copyOf(offsets, nodeCount * 2);
+		}
+		kinds[nodeCount] = kind;
+		offsets[nodeCount] = reserve(fields);
+		return nodeCount++;
+	}
+
+	private int reserve(int slots) {
+		if (dataCount + slots > data.length) {
+			data = Arrays.copyOf(data, Math.max(dataCount + slots, data.length * 2));
+		}
+		int at = dataCount;
+		dataCount += slots;
+		return at;
+	}
+
+	private void set(int at, int value) {
+		data[at] = value;
+	}
+
+	private int addStmt(Stmt stmt) {
+		return stmt == null ? -1 : stmt.accept(flattener);
+	}
+
+	private int addExpr(Expr expr) {
+		return expr == null ? -1 : expr.accept(flattener);
+	}
+
+	private int addToken(Token token) {
+		if (token == null) return -1;
+		if (tokenCount == tokenTypes.length) {
+			tokenTypes = Arrays.copyOf(tokenTypes, tokenCount * 2);
+			tokenLines = Arrays.copyOf(tokenLines, tokenCount * 2);
+			tokenLexemes = Arrays.copyOf(tokenLexemes, tokenCount * 2);
+			tokenLiterals = Arrays.copyOf(tokenLiterals, tokenCount * 2);
+		}
+		tokenTypes[tokenCount] = token.type.ordinal();
+		tokenLines[tokenCount] = token.line;
+		tokenLexemes[tokenCount] = addString(token.lexeme);
+		tokenLiterals[tokenCount] = token.literal == null ? -1 : addConstant(token.literal);
+		return tokenCount++;
+	}
+
+	private int addString(String text) {
+		Integer index = stringIndex.get(text);
+		if (index != null) return index;
+		if (stringCount == strings.length) strings = Arrays.copyOf(strings, stringCount * 2);
+		strings[stringCount] = text;
+		stringIndex.put(text, stringCount);
+		return stringCount++;
+	}
+
+	private int addConstant(Object value) {
+		if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+		constants[constantCount] = value;
+		return constantCount++;
+	}
+
+	private int addStmts(List<? extends Stmt> statements) {
+		int[] nodes = new int[statements.size()];
+		for (int i = 0; i < nodes.length; i++) nodes[i] = addStmt(statements.get(i));
+		return addList(nodes);
+	}
+
+	private int addExprs(List<? extends Expr> expressions) {
+		int[] nodes = new int[expressions.size()];
+		for (int i = 0; i < nodes.length; i++) nodes[i] = addExpr(expressions.get(i));
+		return addList(nodes);
+	}
+
+	private int addTokens(List<Token> list) {
+		int[] indices = new int[list.size()];
+		for (int i = 0; i < indices.length; i++) indices[i] = addToken(list.get(i));
+		return addList(indices);
+	}
+
+	private int addInts(int[] elements) {
+		return elements == null ? -1 : addList(elements);
+	}
+
+	private int addList(int[] elements) {
+		int at = reserve(elements.length + 1);
+		data[at] = elements.length;
+		System.arraycopy(elements, 0, data, at + 1, elements.length);
+		return at;
+	}
+
+	private Token token(int index) {
+		if (index < 0) return null;
+		int literal = tokenLiterals[index];
+		return new Token(TOKEN_TYPES[tokenTypes[index]], strings[tokenLexemes[index]],
+				literal < 0 ? null : constants[literal], tokenLines[index]);
+	}
+
+	private List<Stmt> stmtList(int at) {
+		List<Stmt> list = new ArrayList<>(data[at]);
+		for (int i = 0; i < data[at]; i++) list.add(stmt(data[at + 1 + i]));
+		return list;
+	}
+
+	private List<Expr> exprList(int at) {
+		List<Expr> list = new ArrayList<>(data[at]);
+		for (int i = 0; i < data[at]; i++) list.add(expr(data[at + 1 + i]));
+		return list;
+	}
+
+	private int[] ints(int at) {
+		return at < 0 ? null : Arrays.copyOfRange(data, at + 1, at + 1 + data[at]);
+	}
+
+	private List<Token> tokenList(int at) {
+		List<Token> list = new ArrayList<>(data[at]);
+		for (int i = 0; i < data[at]; i++) list.add(token(data[at + 1 + i]));
+		return list;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> cast(List<?> list) {
+		return (List<T>) list;
+	}
+}
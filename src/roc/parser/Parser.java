@@ -2,12 +2,14 @@ package roc.parser;
 
 import roc.Roc;
 import roc.lexer.Token;
+import roc.lexer.TokenBuffer;
+import roc.lexer.TokenStream;
 import roc.lexer.TokenType;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
-import static java.util.Arrays.asList;
 import static roc.lexer.TokenType.*;
 
 public class Parser {
@@ -15,10 +17,23 @@ public class Parser {
     private static class ParseError extends RuntimeException {
     }
 
-    private List<Token> tokens;
-    private int current = 0;
+    // the parser never looks further back than the previous token, so the
+    // stream only has to keep a window of two
+    private final TokenStream tokens;
 
     public Parser(List<Token> tokens) {
+        this(tokens.iterator());
+    }
+
+    public Parser(Iterator<Token> tokens) {
+        this(TokenStream.of(tokens));
+    }
+
+    public Parser(TokenBuffer tokens) {
+        this(tokens.stream());
+    }
+
+    public Parser(TokenStream tokens) {
         this.tokens = tokens;
     }
 
@@ -38,6 +53,7 @@ public class Parser {
             if (match(VAR)) return varDeclaration();
             else if (match(FUN)) return function("functie");
             else if (match(CLASA)) return classDeclaration();
+            else if (match(DIN)) return importDeclaration();
             return statement();
         } catch (ParseError error) {
             synchronize();
@@ -50,24 +66,36 @@ public class Parser {
 
         Expr.Variable superclass = null;
         if (match(MOSTENESTE)) {
-            consume(IDENTIFIER, "Trebuie ca superclasa sa aiba un nume");
-            superclass = new Expr.Variable(previous());
+            superclass = new Expr.Variable(consume(IDENTIFIER, "Trebuie ca superclasa sa aiba un nume"));
         }
 
-        consume(LEFT_BRACE, "Trebuie '{' inainte de corpul clasei");
+        expect(LEFT_BRACE, "Trebuie '{' inainte de corpul clasei");
 
         List<Stmt.Function> methods = new ArrayList<>();
         while (!check(RIGHT_BRACE) && !isAtEnd()) {
             methods.add(function("metoda"));
         }
-        consume(RIGHT_BRACE, "Trebuie '}' dupa corpul clasei");
+        expect(RIGHT_BRACE, "Trebuie '}' dupa corpul clasei");
         return new Stmt.Class(name, superclass, methods);
     }
 
+    // din a.b; loads a/b.roc next to the script and binds it as 'b'
+    private Stmt importDeclaration() {
+
+        Token keyword = previous();
+        List<Token> path = new ArrayList<>();
+        do {
+            path.add(consume(IDENTIFIER, "Trebuie numele modulului dupa 'din'"));
+        } while (match(DOT));
+
+        expect(SEMICOLON, "Trebuie ';' dupa numele modulului");
+        return new Stmt.Import(keyword, path);
+    }
+
     private Stmt.Function function(String kind) {
 
         Token name = consume(IDENTIFIER, "Trebuie nume pentru " + kind);
-        consume(LEFT_ROUND, "Trebuie '(' dupa nume " + kind);
+        expect(LEFT_ROUND, "Trebuie '(' dupa nume " + kind);
 
         List<Token> parameters = new ArrayList<>();
         if (!check(RIGHT_ROUND)) {
@@ -78,9 +106,9 @@ public class Parser {
                 parameters.add(consume(IDENTIFIER, "Trebuie ca parametrul sa aiba nume"));
             } while (match(COMMA));
         }
-        consume(RIGHT_ROUND, "Trebuie ')' dupa parametri");
+        expect(RIGHT_ROUND, "Trebuie ')' dupa parametri");
 
-        consume(LEFT_BRACE, "Trebuie '{' inainte de corpul " + kind);
+        expect(LEFT_BRACE, "Trebuie '{' inainte de corpul " + kind);
         List<Stmt> body = block();
 
         return new Stmt.Function(name, parameters, body);
@@ -95,7 +123,7 @@ public class Parser {
             initializer = expression();
         }
 
-        consume(SEMICOLON, "Trebuie ';' la finalul declaratiei de variabile");
+        expect(SEMICOLON, "Trebuie ';' la finalul declaratiei de variabile");
 
         return new Stmt.Var(name, initializer);
     }
@@ -108,9 +136,25 @@ public class Parser {
         else if (match(CATTIMP)) return whileStatement();
         else if (match(PENTRU)) return forStatement();
         else if (match(RETURNEAZA)) return returnStatement();
+        else if (match(EVADEAZA)) return breakStatement();
+        else if (match(CONTINUA)) return continueStatement();
         return expressionStatement();
     }
 
+    private Stmt breakStatement() {
+
+        Token keyword = previous();
+        expect(SEMICOLON, "Trebuie ';' dupa evadeaza");
+        return new Stmt.Break(keyword);
+    }
+
+    private Stmt continueStatement() {
+
+        Token keyword = previous();
+        expect(SEMICOLON, "Trebuie ';' dupa continua");
+        return new Stmt.Continue(keyword);
+    }
+
     private Stmt returnStatement() {
 
         Token keyword = previous();
@@ -119,13 +163,13 @@ public class Parser {
             value = expression();
         }
 
-        consume(SEMICOLON, "Trebuie ';' dupa valoarea returnata");
+        expect(SEMICOLON, "Trebuie ';' dupa valoarea returnata");
         return new Stmt.Return(keyword, value);
     }
 
     private Stmt forStatement() {
 
-        consume(LEFT_ROUND, "Trebuie '(' dupa pentru");
+        expect(LEFT_ROUND, "Trebuie '(' dupa pentru");
         Stmt initializer;
         if (match(SEMICOLON)) {
             initializer = null;
@@ -138,35 +182,24 @@ public class Parser {
         if (!check(SEMICOLON)) {
             condition = expression();
         }
-        consume(SEMICOLON, "trebuie ';' dupa conditia din pentru");
+        expect(SEMICOLON, "trebuie ';' dupa conditia din pentru");
 
         Expr increment = null;
         if (!check(RIGHT_ROUND)) {
             increment = expression();
         }
-        consume(RIGHT_ROUND, "Trebuie ')' dupa expresiile din pentru");
+        expect(RIGHT_ROUND, "Trebuie ')' dupa expresiile din pentru");
 
         Stmt body = statement();
 
-        if (increment != null) {
-            body = new Stmt.Block(asList(body, new Stmt.Expression(increment)));
-        }
-
-        if (condition == null) condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
-
-        if (initializer != null) {
-            body = new Stmt.Block(asList(initializer, body));
-        }
-
-        return body;
+        return new Stmt.For(initializer, condition, increment, body);
     }
 
     private Stmt whileStatement() {
 
-        consume(LEFT_ROUND, "Trebuie '(' dupa cattimp");
+        expect(LEFT_ROUND, "Trebuie '(' dupa cattimp");
         Expr condition = expression();
-        consume(RIGHT_ROUND, "Trebuie ')' dupa conditia din cattimp");
+        expect(RIGHT_ROUND, "Trebuie ')' dupa conditia din cattimp");
         Stmt body = statement();
 
         return new Stmt.While(condition, body);
@@ -174,9 +207,9 @@ public class Parser {
 
     private Stmt ifStatement() {
 
-        consume(LEFT_ROUND, "Trebuie '(' dupa if");
+        expect(LEFT_ROUND, "Trebuie '(' dupa if");
         Expr condition = expression();
-        consume(RIGHT_ROUND, "Trebuie ')' dupa expresia din daca");
+        expect(RIGHT_ROUND, "Trebuie ')' dupa expresia din daca");
 
         Stmt thenBranch = statement();
         Stmt elseBranch = null;
@@ -194,21 +227,21 @@ public class Parser {
             statements.add(declaration());
         }
 
-        consume(RIGHT_BRACE, "Trebuie '}' la finalul blocului");
+        expect(RIGHT_BRACE, "Trebuie '}' la finalul blocului");
         return statements;
     }
 
     private Stmt printStatement() {
 
         Expr expr = expression();
-        consume(SEMICOLON, "Trebuie ';' dupa expresie");
+        expect(SEMICOLON, "Trebuie ';' dupa expresie");
         return new Stmt.Print(expr);
     }
 
     private Stmt expressionStatement() {
 
         Expr expr = expression();
-        consume(SEMICOLON, "Trebuie ';' dupa expresie");
+        expect(SEMICOLON, "Trebuie ';' dupa expresie");
         return new Stmt.Expression(expr);
     }
 
@@ -221,7 +254,7 @@ public class Parser {
         Expr expr = or();
 
         if (match(EQUAL)) {
-            Token equals = previous();
+            int line = tokens.previousLine();
             Expr value = assignment();
 
             if (expr instanceof Expr.Variable) {
@@ -232,7 +265,7 @@ public class Parser {
                 return new Expr.Set(get.object, get.name, value);
             }
 
-            error(equals, "Nu pot atribui valoare acestei entitati");
+            error(new Token(EQUAL, "=", null, line), "Nu pot atribui valoare acestei entitati");
         }
 
         return expr;
@@ -374,13 +407,13 @@ public class Parser {
         if (match(FALS)) return new Expr.Literal(false);
         if (match(NUL)) return new Expr.Literal(null);
 
-        if (match(DOUBLE) || match(STRING)) return new Expr.Literal(previous().literal);
+        if (match(DOUBLE, INTEGER, STRING)) return new Expr.Literal(tokens.previousLiteral());
 
         if (match(IDENTIFIER)) return new Expr.Variable(previous());
 
         if (match(LEFT_ROUND)) {
             Expr expression = expression();
-            consume(RIGHT_ROUND, "Trebuie ')' dupa expresie");
+            expect(RIGHT_ROUND, "Trebuie ')' dupa expresie");
             return new Expr.Grouping(expression);
         }
 
@@ -388,7 +421,7 @@ public class Parser {
 
         if (match(SUPER)) {
             Token keyword = previous();
-            consume(DOT, "Trebuie '.' dupa super");
+            expect(DOT, "Trebuie '.' dupa super");
             Token method = consume(IDENTIFIER, "Trebuie numele unei metode din superclasa");
             return new Expr.Super(keyword, method);
         }
@@ -408,30 +441,39 @@ public class Parser {
     private boolean check(TokenType type) {
 
         if (isAtEnd()) return false;
-        return tokens.get(current).type == type;
+        return tokens.peekType() == type;
     }
 
     private boolean isAtEnd() {
 
-        return peek().type == EOF;
+        return tokens.peekType() == EOF;
     }
 
-    private Token advance() {
-        if (!isAtEnd()) current++;
-        return previous();
+    private void advance() {
+        if (!isAtEnd()) tokens.advance();
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.previous();
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.peek();
     }
 
+    // for a token the AST keeps
     private Token consume(TokenType type, String message) {
 
-        if (check(type)) return advance();
+        expect(type, message);
+        return previous();
+    }
+
+    private void expect(TokenType type, String message) {
+
+        if (check(type)) {
+            advance();
+            return;
+        }
         throw error(peek(), message);
     }
 
@@ -444,12 +486,13 @@ public class Parser {
         advance();
 
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
+            if (tokens.previousType() == SEMICOLON) return;
 
-            switch (peek().type) {
+            switch (tokens.peekType()) {
                 case CLASA:
                 case FUN:
                 case VAR:
+                case DIN:
                 case PENTRU:
                 case DACA:
                 case CATTIMP:
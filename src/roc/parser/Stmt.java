@@ -8,10 +8,14 @@ public abstract class Stmt {
 
 	public interface Visitor<R> {
 		R visitBlockStmt(Block stmt);
+		R visitBreakStmt(Break stmt);
 		R visitClassStmt(Class stmt);
+		R visitContinueStmt(Continue stmt);
 		R visitExpressionStmt(Expression stmt);
+		R visitForStmt(For stmt);
 		R visitFunctionStmt(Function stmt);
 		R visitIfStmt(If stmt);
+		R visitImportStmt(Import stmt);
 		R visitPrintStmt(Print stmt);
 		R visitReturnStmt(Return stmt);
 		R visitVarStmt(Var stmt);
@@ -20,6 +24,7 @@ public abstract class Stmt {
 	public static class Block extends Stmt {
 
 		public List<Stmt> statements;
+		public int frameSize;
 
 		public Block(List<Stmt> statements) {
 			this.statements = statements;
@@ -31,11 +36,26 @@ public abstract class Stmt {
 		}
 	}
 
+	public static class Break extends Stmt {
+
+		public Token keyword;
+
+		public Break(Token keyword) {
+			this.keyword = keyword;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitBreakStmt(this);
+		}
+	}
+
 	public static class Class extends Stmt {
 
 		public Token name;
 		public Expr.Variable superclass;
 		public List<Stmt.Function> methods;
+		public int slot = -1;
 
 		public Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
 			this.name = name;
@@ -49,6 +69,20 @@ public abstract class Stmt {
 		}
 	}
 
+	public static class Continue extends Stmt {
+
+		public Token keyword;
+
+		public Continue(Token keyword) {
+			this.keyword = keyword;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitContinueStmt(this);
+		}
+	}
+
 	public static class Expression extends Stmt {
 
 		public Expr expression;
@@ -63,11 +97,35 @@ public abstract class Stmt {
 		}
 	}
 
+	public static class For extends Stmt {
+
+		public Stmt initializer;
+		public Expr condition;
+		public Expr increment;
+		public Stmt body;
+		public int frameSize;
+
+		public For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+			this.initializer = initializer;
+			this.condition = condition;
+			this.increment = increment;
+			this.body = body;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitForStmt(this);
+		}
+	}
+
 	public static class Function extends Stmt {
 
 		public Token name;
 		public List<Token> params;
 		public List<Stmt> body;
+		public int slot = -1;
+		public int frameSize;
+		public int[] captures;
 
 		public Function(Token name, List<Token> params, List<Stmt> body) {
 			this.name = name;
@@ -99,6 +157,23 @@ public abstract class Stmt {
 		}
 	}
 
+	public static class Import extends Stmt {
+
+		public Token keyword;
+		public List<Token> path;
+		public int slot = -1;
+
+		public Import(Token keyword, List<Token> path) {
+			this.keyword = keyword;
+			this.path = path;
+		}
+
+		@Override
+		public <R> R accept(Visitor<R> visitor) {
+			return visitor.visitImportStmt(this);
+		}
+	}
+
 	public static class Print extends Stmt {
 
 		public Expr expression;
@@ -133,6 +208,7 @@ public abstract class Stmt {
 
 		public Token name;
 		public Expr initializer;
+		public int slot = -1;
 
 		public Var(Token name, Expr initializer) {
 			this.name = name;
@@ -6,6 +6,7 @@ import roc.lexer.Token;
 import roc.parser.Expr;
 import roc.parser.Stmt;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,10 +15,56 @@ import java.util.Stack;
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private final Interpreter interpreter;
-    // name, is it ready? false if exists but not ready, true if is ready
-    private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+    // name -> its slot in the frame and whether its initializer is done
+    private final Stack<Map<String, Local>> scopes = new Stack<>();
+
+    private static class Local {
+        final int slot;
+        boolean ready;
+
+        Local(int slot, boolean ready) {
+            this.slot = slot;
+            this.ready = ready;
+        }
+    }
+
+    // Where a name is read from: a slot in one of the current function's
+    // frames, one of its upvalues, or the globals when both are -1.
+    private record Binding(int depth, int slot, int upvalue) {
+    }
+
+    // The function being resolved, with the scopes it owns and the locals of
+    // enclosing functions it has to capture when it is declared. The top
+    // level is the outermost one and captures nothing.
+    private static class Closure {
+        final Closure enclosing;
+        // index in scopes of the function's outermost scope
+        final int base;
+        final List<Local> upvalues = new ArrayList<>();
+        // per upvalue: the depth and slot of a local of the enclosing
+        // function, or -1 and the index of one of its upvalues
+        final List<Integer> captures = new ArrayList<>();
+
+        Closure(Closure enclosing, int base) {
+            this.enclosing = enclosing;
+            this.base = base;
+        }
+
+        int capture(Local local, int depth, int index) {
+            int upvalue = upvalues.indexOf(local);
+            if (upvalue >= 0) return upvalue;
+
+            upvalues.add(local);
+            captures.add(depth);
+            captures.add(index);
+            return upvalues.size() - 1;
+        }
+    }
 
     private FunctionType currentFunction = FunctionType.NONE;
+    // loops of the current function around the statement being resolved
+    private int loops;
+    private Closure closure = new Closure(null, 0);
 
     private enum FunctionType {
         NONE,
@@ -42,7 +89,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitAssignExpr(Expr.Assign expr) {
 
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        Binding binding = lookUp(expr.name.lexeme);
+        expr.depth = binding.depth();
+        expr.slot = binding.slot();
+        expr.upvalue = binding.upvalue();
         return null;
     }
 
@@ -103,7 +153,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             Roc.error(expr.keyword, "Nu poti folosi 'super' intr-o clasa care nu" +
                     "mosteneste pe nimeni");
         }
-        resolveLocal(expr, expr.keyword);
+        Binding superclass = lookUp("super");
+        expr.depth = superclass.depth();
+        expr.slot = superclass.slot();
+        expr.upvalue = superclass.upvalue();
+        Binding object = lookUp("this");
+        expr.thisDepth = object.depth();
+        expr.thisSlot = object.slot();
+        expr.thisUpvalue = object.upvalue();
         return null;
     }
 
@@ -115,7 +172,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             return null;
         }
 
-        resolveLocal(expr, expr.keyword);
+        Binding binding = lookUp("this");
+        expr.depth = binding.depth();
+        expr.slot = binding.slot();
+        expr.upvalue = binding.upvalue();
         return null;
     }
 
@@ -127,10 +187,14 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
+        if (!scopes.isEmpty() && scopes.peek().containsKey(expr.name.lexeme)
+                && !scopes.peek().get(expr.name.lexeme).ready) {
             Roc.error(expr.name, "Nu pot citi o variabila locala la propria initializare");
         }
-        resolveLocal(expr, expr.name);
+        Binding binding = lookUp(expr.name.lexeme);
+        expr.depth = binding.depth();
+        expr.slot = binding.slot();
+        expr.upvalue = binding.upvalue();
         return null;
     }
 
@@ -139,7 +203,16 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         beginScope();
         resolve(stmt.statements);
-        endScope();
+        stmt.frameSize = endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+
+        if (loops == 0) {
+            Roc.error(stmt.keyword, "Nu poti evada daca nu te afli intr-o bucla.");
+        }
         return null;
     }
 
@@ -149,7 +222,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
 
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         define(stmt.name);
 
         if (stmt.superclass != null && stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
@@ -163,11 +236,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         if (stmt.superclass != null) {
             beginScope();
-            scopes.peek().put("super", true);
+            scopes.peek().put("super", new Local(0, true));
         }
 
-        beginScope();
-        scopes.peek().put("this", true);
         for (Stmt.Function method : stmt.methods) {
             FunctionType declaration = FunctionType.METHOD;
             if (method.name.lexeme.equals("init")) {
@@ -175,7 +246,6 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             }
             resolveFunction(method, declaration);
         }
-        endScope();
 
         if (stmt.superclass != null) endScope();
 
@@ -183,16 +253,39 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+
+        if (loops == 0) {
+            Roc.error(stmt.keyword, "Nu poti continua daca nu te afli intr-o bucla.");
+        }
+        return null;
+    }
+
     @Override
     public Void visitExpressionStmt(Stmt.Expression stmt) {
         resolve(stmt.expression);
         return null;
     }
 
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+
+        beginScope();
+        if (stmt.initializer != null) resolve(stmt.initializer);
+        if (stmt.condition != null) resolve(stmt.condition);
+        if (stmt.increment != null) resolve(stmt.increment);
+        loops++;
+        resolve(stmt.body);
+        loops--;
+        stmt.frameSize = endScope();
+        return null;
+    }
+
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
 
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         define(stmt.name);
 
         resolveFunction(stmt, FunctionType.FUNCTION);
@@ -210,6 +303,20 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+
+        Token name = stmt.path.get(stmt.path.size() - 1);
+        stmt.slot = declare(name);
+        define(name);
+
+        // starts compiling the module while the rest of this file resolves
+        if (!interpreter.preload(stmt)) {
+            Roc.error(stmt.keyword, "Nu exista modulul '" + Interpreter.moduleName(stmt) + "'");
+        }
+        return null;
+    }
+
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         resolve(stmt.expression);
@@ -234,7 +341,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
-        declare(stmt.name);
+        stmt.slot = declare(stmt.name);
         if (stmt.initializer != null) {
             resolve(stmt.initializer);
         }
@@ -245,7 +352,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         resolve(stmt.condition);
+        loops++;
         resolve(stmt.body);
+        loops--;
         return null;
     }
 
@@ -267,44 +376,76 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         scopes.push(new HashMap<>());
     }
 
-    private void endScope() {
-        scopes.pop();
+    // the number of slots the scope's frame needs
+    private int endScope() {
+        return scopes.pop().size();
     }
 
-    private void declare(Token name) {
-        if (scopes.isEmpty()) return;
-        Map<String, Boolean> scope = scopes.peek();
+    // the slot, or -1 for a global
+    private int declare(Token name) {
+        if (scopes.isEmpty()) return -1;
+        Map<String, Local> scope = scopes.peek();
         if (scope.containsKey(name.lexeme)) {
             Roc.error(name, "Deja exista o variabila cu acest nume in blocul curent");
+            return scope.get(name.lexeme).slot;
         }
-        scope.put(name.lexeme, false);
+        int slot = scope.size();
+        scope.put(name.lexeme, new Local(slot, false));
+        return slot;
     }
 
     private void define(Token name) {
         if (scopes.isEmpty()) return;
-        scopes.peek().put(name.lexeme, true);
+        scopes.peek().get(name.lexeme).ready = true;
     }
 
-    private void resolveLocal(Expr expr, Token name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
-            }
+    private Binding lookUp(String name) {
+        for (int i = scopes.size() - 1; i >= closure.base; i--) {
+            Local local = scopes.get(i).get(name);
+            if (local != null) return new Binding(scopes.size() - 1 - i, local.slot, -1);
         }
+        return new Binding(-1, -1, upvalue(closure, name));
+    }
+
+    // The function's upvalue for a local of some enclosing function, added
+    // to every function in between, or -1 when the name is left to the
+    // globals.
+    private int upvalue(Closure function, String name) {
+        Closure enclosing = function.enclosing;
+        if (enclosing == null) return -1;
+
+        // the enclosing function's frames as they are where this one is declared
+        for (int i = function.base - 1; i >= enclosing.base; i--) {
+            Local local = scopes.get(i).get(name);
+            if (local != null) return function.capture(local, function.base - 1 - i, local.slot);
+        }
+
+        int upvalue = upvalue(enclosing, name);
+        if (upvalue < 0) return -1;
+        return function.capture(enclosing.upvalues.get(upvalue), -1, upvalue);
     }
 
     private void resolveFunction(Stmt.Function function, FunctionType type) {
 
         FunctionType enclosingFunction = currentFunction;
+        int enclosingLoops = loops;
         currentFunction = type;
+        loops = 0;
+        closure = new Closure(closure, scopes.size());
         beginScope();
+        // a method finds its instance in the first slot
+        if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) {
+            scopes.peek().put("this", new Local(0, true));
+        }
         for (Token param : function.params) {
             declare(param);
             define(param);
         }
         resolve(function.body);
-        endScope();
+        function.frameSize = endScope();
+        function.captures = closure.captures.stream().mapToInt(Integer::intValue).toArray();
+        closure = closure.enclosing;
         currentFunction = enclosingFunction;
+        loops = enclosingLoops;
     }
 }
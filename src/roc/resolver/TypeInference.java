@@ -0,0 +1,392 @@
+package roc.resolver;
+
+import roc.parser.Expr;
+import roc.parser.Stmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Finds the locals that only ever hold integers, or only reals, strings or
+// booleans, and marks the expressions over them, so the interpreter can do
+// their arithmetic on primitives without checking anything. Runs after the
+// resolver and finds variables the way the interpreter will, by frame and
+// slot. A variable's type covers every write to it anywhere in the program,
+// and the whole program is gone over again until no type widens.
+// Parameters and globals can hold anything.
+//
+// An integer is one only until it outgrows a long, when it goes on as a
+// real. Whatever computes integers unboxed checks for that and falls back
+// to the boxed values.
+public class TypeInference implements Expr.Visitor<Integer>, Stmt.Visitor<Void> {
+
+    public static final int ANY = 0;
+    public static final int INTEGER = 1;
+    public static final int REAL = 2;
+    public static final int STRING = 3;
+    public static final int BOOLEAN = 4;
+    // nothing written yet
+    private static final int UNSET = 5;
+
+    // a slot of a frame, which is how upvalues are followed back to the
+    // local they captured
+    private record Slot(int[] frame, int index) {
+    }
+
+    // the slot types of every frame the program opens, by the node opening it
+    private final Map<Object, int[]> frames = new IdentityHashMap<>();
+    // the slots some function captures, by the slot types of their frame
+    private final Map<int[], boolean[]> captured = new IdentityHashMap<>();
+    // the current function's frames, innermost last
+    private List<int[]> open = new ArrayList<>();
+    private Slot[] upvalues = new Slot[0];
+    private boolean changed;
+
+    public void infer(List<Stmt> statements) {
+        do {
+            changed = false;
+            open.clear();
+            resolve(statements);
+        } while (changed);
+    }
+
+    // The slots of the frame the node opens that only ever hold integers
+    // and that no function captures, so the VM can keep them unboxed. Null
+    // for a node that opens no frame.
+    public boolean[] unboxed(Object node) {
+        int[] types = frames.get(node);
+        if (types == null) return null;
+        boolean[] cells = captured.get(types);
+        boolean[] unboxed = new boolean[types.length];
+        for (int i = 0; i < types.length; i++) {
+            unboxed[i] = types[i] == INTEGER && (cells == null || !cells[i]);
+        }
+        return unboxed;
+    }
+
+    // what the annotations say an expression evaluates to
+    public static int typeOf(Expr expr) {
+        if (expr instanceof Expr.Binary binary) return binary.type;
+        if (expr instanceof Expr.Unary unary) return unary.type;
+        if (expr instanceof Expr.Variable variable) return variable.type;
+        if (expr instanceof Expr.Grouping grouping) return typeOf(grouping.expression);
+        if (expr instanceof Expr.Literal literal) return typeOf(literal.value);
+        return ANY;
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.Assign expr) {
+        int type = resolve(expr.value);
+        if (expr.depth >= 0) {
+            write(local(expr.depth), expr.slot, type);
+        } else if (expr.upvalue >= 0) {
+            write(upvalues[expr.upvalue].frame(), upvalues[expr.upvalue].index(), type);
+        }
+        // an assignment evaluates to nil
+        return ANY;
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        int left = resolve(expr.left);
+        int right = resolve(expr.right);
+
+        if (left == UNSET || right == UNSET) {
+            expr.operands = ANY;
+            expr.type = UNSET;
+            return UNSET;
+        }
+
+        expr.operands = ANY;
+        if (left == INTEGER && right == INTEGER) {
+            expr.operands = INTEGER;
+        } else if (isNumber(left) && isNumber(right)) {
+            expr.operands = REAL;
+        }
+
+        switch (expr.operator.type) {
+            case PLUS:
+                expr.type = left == STRING || right == STRING ? STRING : expr.operands;
+                break;
+            case MINUS:
+            case STAR:
+            case MODULO:
+                expr.type = expr.operands;
+                break;
+            case SLASH:
+                expr.type = expr.operands == ANY ? ANY : REAL;
+                break;
+            case GREATER:
+            case GREATER_EQUALS:
+            case LESS:
+            case LESS_EQUALS:
+                expr.type = expr.operands == ANY ? ANY : BOOLEAN;
+                break;
+            case EQUALS_EQUALS:
+            case EXMARK_EQUALS:
+                expr.type = BOOLEAN;
+                break;
+            default:
+                expr.type = ANY;
+        }
+        return expr.type;
+    }
+
+    @Override
+    public Integer visitCallExpr(Expr.Call expr) {
+        resolve(expr.calle);
+        for (Expr argument : expr.arguments) {
+            resolve(argument);
+        }
+        return ANY;
+    }
+
+    @Override
+    public Integer visitGetExpr(Expr.Get expr) {
+        resolve(expr.object);
+        return ANY;
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        return resolve(expr.expression);
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        return typeOf(expr.value);
+    }
+
+    @Override
+    public Integer visitLogicalExpr(Expr.Logical expr) {
+        // gives back one of its operands
+        return join(resolve(expr.left), resolve(expr.right));
+    }
+
+    @Override
+    public Integer visitSetExpr(Expr.Set expr) {
+        resolve(expr.value);
+        resolve(expr.object);
+        return ANY;
+    }
+
+    @Override
+    public Integer visitSuperExpr(Expr.Super expr) {
+        return ANY;
+    }
+
+    @Override
+    public Integer visitThisExpr(Expr.This expr) {
+        return ANY;
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        int right = resolve(expr.right);
+        switch (expr.operator.type) {
+            case MINUS:
+                expr.type = isNumber(right) || right == UNSET ? right : ANY;
+                break;
+            case EXMARK:
+                expr.type = BOOLEAN;
+                break;
+            default:
+                expr.type = ANY;
+        }
+        return expr.type;
+    }
+
+    @Override
+    public Integer visitVariableExpr(Expr.Variable expr) {
+        if (expr.depth >= 0) {
+            expr.type = local(expr.depth)[expr.slot];
+        } else if (expr.upvalue >= 0) {
+            expr.type = upvalues[expr.upvalue].frame()[upvalues[expr.upvalue].index()];
+        } else {
+            expr.type = ANY;
+        }
+        return expr.type;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        open.add(frame(stmt, stmt.frameSize));
+        resolve(stmt.statements);
+        open.remove(open.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        if (stmt.slot >= 0) write(local(0), stmt.slot, ANY);
+        if (stmt.superclass != null) {
+            resolve(stmt.superclass);
+            // the frame holding 'super' while the methods are declared
+            open.add(frame(stmt, 1));
+            write(local(0), 0, ANY);
+        }
+        for (Stmt.Function method : stmt.methods) {
+            function(method, true);
+        }
+        if (stmt.superclass != null) open.remove(open.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        open.add(frame(stmt, stmt.frameSize));
+        if (stmt.initializer != null) resolve(stmt.initializer);
+        if (stmt.condition != null) resolve(stmt.condition);
+        if (stmt.increment != null) resolve(stmt.increment);
+        resolve(stmt.body);
+        open.remove(open.size() - 1);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        if (stmt.slot >= 0) write(local(0), stmt.slot, ANY);
+        function(stmt, false);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        if (stmt.elseBranch != null) resolve(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        if (stmt.slot >= 0) write(local(0), stmt.slot, ANY);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value != null) resolve(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        int type = stmt.initializer != null ? resolve(stmt.initializer) : ANY;
+        if (stmt.slot >= 0) write(local(0), stmt.slot, type);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.body);
+        return null;
+    }
+
+    private void function(Stmt.Function function, boolean method) {
+
+        // the upvalues as the interpreter will capture them here
+        int[] captures = function.captures;
+        Slot[] captured = new Slot[captures.length / 2];
+        for (int i = 0; i < captured.length; i++) {
+            int depth = captures[2 * i];
+            int index = captures[2 * i + 1];
+            captured[i] = depth >= 0 ? new Slot(local(depth), index) : upvalues[index];
+            int[] frame = captured[i].frame();
+            this.captured.computeIfAbsent(frame, key -> new boolean[key.length])[captured[i].index()] = true;
+        }
+
+        List<int[]> enclosingFrames = open;
+        Slot[] enclosingUpvalues = upvalues;
+        open = new ArrayList<>();
+        upvalues = captured;
+
+        int[] frame = frame(function, function.frameSize);
+        open.add(frame);
+        int parameters = function.params.size() + (method ? 1 : 0);
+        for (int i = 0; i < parameters; i++) {
+            write(frame, i, ANY);
+        }
+        resolve(function.body);
+
+        open = enclosingFrames;
+        upvalues = enclosingUpvalues;
+    }
+
+    private int[] frame(Object node, int size) {
+        return frames.computeIfAbsent(node, key -> {
+            int[] types = new int[size];
+            Arrays.fill(types, UNSET);
+            return types;
+        });
+    }
+
+    private int[] local(int depth) {
+        return open.get(open.size() - 1 - depth);
+    }
+
+    private void write(int[] frame, int slot, int type) {
+        int joined = join(frame[slot], type);
+        if (joined != frame[slot]) {
+            frame[slot] = joined;
+            changed = true;
+        }
+    }
+
+    private void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            resolve(statement);
+        }
+    }
+
+    private void resolve(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private int resolve(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private static int join(int a, int b) {
+        if (a == UNSET) return b;
+        if (b == UNSET) return a;
+        return a == b ? a : ANY;
+    }
+
+    private static boolean isNumber(int type) {
+        return type == INTEGER || type == REAL;
+    }
+
+    private static int typeOf(Object value) {
+        if (value instanceof Long) return INTEGER;
+        if (value instanceof Double) return REAL;
+        if (value instanceof String) return STRING;
+        if (value instanceof Boolean) return BOOLEAN;
+        return ANY;
+    }
+}
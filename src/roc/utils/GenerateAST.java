@@ -2,6 +2,7 @@ package roc.utils;
 
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -9,33 +10,50 @@ public class GenerateAST {
 
     public static void main(String[] args) throws IOException {
 
-        defineAst(".", "Stmt", Arrays.asList(
-                "Block: List<Stmt> statements",
+        if (args.length != 1) {
+            System.err.println("Utilizare: generate_ast <director_iesire>");
+            System.exit(64);
+        }
+        String outputDir = args[0];
+
+        List<String> stmtTypes = Arrays.asList(
+                "Block: List<Stmt> statements | int frameSize",
+                "Break: Token keyword",
                 "Class: Token name, Expr.Variable superclass," +
-                        " List<Stmt.Function> methods",
+                        " List<Stmt.Function> methods | int slot = -1",
+                "Continue: Token keyword",
                 "Expression: Expr expression",
-                "Function: Token name, List<Token> params, List<Stmt> body",
+                "For: Stmt initializer, Expr condition, Expr increment, Stmt body | int frameSize",
+                "Function: Token name, List<Token> params, List<Stmt> body | int slot = -1, int frameSize, int[] captures",
                 "If: Expr condition, Stmt thenBranch, Stmt elseBranch",
+                "Import: Token keyword, List<Token> path | int slot = -1",
                 "Print: Expr expression",
                 "Return: Token keyword, Expr value",
-                "Var: Token name, Expr initializer",
+                "Var: Token name, Expr initializer | int slot = -1",
                 "While: Expr condition, Stmt body"
-        ));
+        );
 
-        defineAst(".", "Expr", Arrays.asList(
-                "Assign: Token name, Expr value",
-                "Binary: Expr left, Token operator, Expr right",
+        List<String> exprTypes = Arrays.asList(
+                "Assign: Token name, Expr value | int depth = -1, int slot = -1, int upvalue = -1,"
+                        + " transient int global = -1",
+                "Binary: Expr left, Token operator, Expr right | int type, int operands",
                 "Call: Expr calle, Token paren, List<Expr> arguments",
-                "Get: Expr object, Token name",
+                "Get: Expr object, Token name | transient Object cache",
                 "Grouping: Expr expression",
                 "Literal: Object value",
                 "Logical: Expr left, Token operator, Expr right",
-                "Set: Expr object, Token name, Expr value",
-                "Super: Token keyword, Token method",
-                "This: Token keyword",
-                "Unary: Token operator, Expr right",
-                "Variable: Token name"
-        ));
+                "Set: Expr object, Token name, Expr value | transient Object cache",
+                "Super: Token keyword, Token method | int depth = -1, int slot = -1, int upvalue = -1,"
+                        + " int thisDepth = -1, int thisSlot = -1, int thisUpvalue = -1",
+                "This: Token keyword | int depth = -1, int slot = -1, int upvalue = -1",
+                "Unary: Token operator, Expr right | int type",
+                "Variable: Token name | int depth = -1, int slot = -1, int upvalue = -1,"
+                        + " int type, transient int global = -1"
+        );
+
+        defineAst(outputDir, "Stmt", stmtTypes);
+        defineAst(outputDir, "Expr", exprTypes);
+        defineFlatAst(outputDir, stmtTypes, exprTypes);
     }
 
     private static void defineAst(
@@ -53,6 +71,12 @@ public class GenerateAST {
         writer.println("public abstract class " + baseName + " {");
         writer.println();
 
+        if (baseName.equals("Expr")) {
+            writer.println("\t// the executable tree built from the expression the first time it runs as one");
+            writer.println("\tpublic Object node;");
+            writer.println();
+        }
+
         defineVisitor(writer, baseName, types);
 
         for (String type : types) {
@@ -81,11 +105,15 @@ public class GenerateAST {
 
         String[] values = type.split(": ");
         String className = values[0];
-        String argumentList = values[1];
+        String argumentList = fields(values[1]);
         writer.println("\tpublic static class " + className + " extends " + baseName + " {");
         writer.println();
 
         generateMembers(writer, className, argumentList);
+        // filled in by later passes, not by the parser
+        for (String annotation : annotations(values[1])) {
+            writer.println("\t\tpublic " + annotation + ";");
+        }
         writer.println();
         generateConstructor(writer, className, argumentList);
         writer.println();
@@ -93,6 +121,28 @@ public class GenerateAST {
         writer.println("\t}\n");
     }
 
+    // "fields | annotations", where annotations are ints, int arrays or
+    // booleans with an optional default. Transient ones are filled in while
+    // running, can be any object and are not flattened.
+    private static String fields(String fieldList) {
+        return fieldList.split(" \\| ")[0];
+    }
+
+    private static String[] annotations(String fieldList) {
+        String[] parts = fieldList.split(" \\| ");
+        return parts.length > 1 ? parts[1].split(", ") : new String[0];
+    }
+
+    private static String[] flatAnnotations(String fieldList) {
+        return Arrays.stream(annotations(fieldList))
+                .filter(annotation -> !annotation.startsWith("transient "))
+                .toArray(String[]::new);
+    }
+
+    private static String annotationName(String annotation) {
+        return annotation.split(" ")[1];
+    }
+
     private static void generateVisitorMethod(String baseName, PrintWriter writer, String className) {
 
         writer.println("\t\t@Override");
@@ -123,4 +173,344 @@ public class GenerateAST {
         }
         writer.println("\t\t}");
     }
+
+    // The same trees as one arena: node kinds and field slots in int arrays,
+    // tokens and literal values in side tables. Every field of a node takes
+    // one slot in data: a node index, a token index, a constant index or the
+    // start of a list (its length followed by the elements).
+    //
+    // Only the compilation cache reads it. The resolver, the type inference
+    // and every engine work on the object trees, so a cached program is
+    // decoded back to them once, before it runs.
+    private static void defineFlatAst(String outputDir, List<String> stmtTypes, List<String> exprTypes)
+            throws IOException {
+        String path = outputDir + "/FlatAst.java";
+        PrintWriter writer = new PrintWriter(path, "UTF-8");
+
+        List<String[]> types = new ArrayList<>();
+        for (String type : stmtTypes) {
+            types.add(new String[]{"Stmt", type.split(": ")[0], type.split(": ")[1]});
+        }
+        for (String type : exprTypes) {
+            types.add(new String[]{"Expr", type.split(": ")[0], type.split(": ")[1]});
+        }
+
+        writer.println("package roc.parser;");
+        writer.println();
+        writer.println("import roc.lexer.Token;");
+        writer.println("import roc.lexer.TokenType;");
+        writer.println();
+        writer.println("import java.util.ArrayList;");
+        writer.println("import java.util.Arrays;");
+        writer.println("import java.util.HashMap;");
+        writer.println("import java.util.List;");
+        writer.println("import java.util.Map;");
+        writer.println();
+        writer.println("// The resolved trees of a program as the compilation cache stores them.");
+        writer.println("// Nothing walks the arrays: statements() decodes them to the object");
+        writer.println("// trees the resolver and the engines run on.");
+        writer.println("public class FlatAst {");
+        writer.println();
+
+        for (int i = 0; i < types.size(); i++) {
+            writer.println("\tpublic static final int " + kindName(types.get(i)) + " = " + i + ";");
+        }
+        writer.println();
+
+        writer.println("\tprivate static final TokenType[] TOKEN_TYPES = TokenType.values();");
+        writer.println();
+        writer.println("\tpublic int[] kinds = new int[256];");
+        writer.println("\tpublic int[] offsets = new int[256];");
+        writer.println("\tpublic int[] data = new int[1024];");
+        writer.println("\t// tokens: type ordinal, line, lexeme in strings, literal in constants (-1 for none)");
+        writer.println("\tpublic int[] tokenTypes = new int[256];");
+        writer.println("\tpublic int[] tokenLines = new int[256];");
+        writer.println("\tpublic int[] tokenLexemes = new int[256];");
+        writer.println("\tpublic int[] tokenLiterals = new int[256];");
+        writer.println("\tpublic String[] strings = new String[256];");
+        writer.println("\tpublic Object[] constants = new Object[64];");
+        writer.println("\tpublic int nodeCount;");
+        writer.println("\tpublic int dataCount;");
+        writer.println("\tpublic int tokenCount;");
+        writer.println("\tpublic int stringCount;");
+        writer.println("\tpublic int constantCount;");
+        writer.println("\tpublic int root = -1;");
+        writer.println("\tprivate Map<String, Integer> stringIndex = new HashMap<>();");
+        writer.println("\tprivate Object[] views;");
+        writer.println();
+
+        defineFlattener(writer, types);
+        defineView(writer, types);
+        defineFlatHelpers(writer);
+
+        writer.println("}");
+        writer.close();
+    }
+
+    private static String kindName(String[] type) {
+        return type[0].toUpperCase() + "_" + type[1].toUpperCase();
+    }
+
+    private static void defineFlattener(PrintWriter writer, List<String[]> types) {
+
+        writer.println("\tpublic static FlatAst flatten(List<Stmt> statements) {");
+        writer.println("\t\tFlatAst ast = new FlatAst();");
+        writer.println("\t\tast.root = ast.addStmts(statements);");
+        writer.println("\t\tast.trim();");
+        writer.println("\t\treturn ast;");
+        writer.println("\t}");
+        writer.println();
+
+        writer.println("\tprivate final Flattener flattener = new Flattener();");
+        writer.println();
+        writer.println("\tprivate class Flattener implements Stmt.Visitor<Integer>, Expr.Visitor<Integer> {");
+        for (String[] type : types) {
+            String[] fields = fields(type[2]).split(", ");
+            String[] annotations = flatAnnotations(type[2]);
+            writer.println();
+            writer.println("\t\t@Override");
+            writer.println("\t\tpublic Integer visit" + type[1] + type[0] + "(" + type[0] + "." + type[1] + " "
+                    + type[0].toLowerCase() + ") {");
+            writer.println("\t\t\tint node = node(" + kindName(type) + ", " + (fields.length + annotations.length) + ");");
+            writer.println("\t\t\tint at = offsets[node];");
+            for (int i = 0; i < fields.length; i++) {
+                String fieldType = fields[i].split(" ")[0];
+                String value = type[0].toLowerCase() + "." + fields[i].split(" ")[1];
+                writer.println("\t\t\tset(at + " + i + ", " + flattenField(fieldType, value) + ");");
+            }
+            for (int i = 0; i < annotations.length; i++) {
+                String value = type[0].toLowerCase() + "." + annotationName(annotations[i]);
+                if (annotations[i].startsWith("boolean")) value = value + " ? 1 : 0";
+                if (annotations[i].startsWith("int[]")) value = "addInts(" + value + ")";
+                writer.println("\t\t\tset(at + " + (fields.length + i) + ", " + value + ");");
+            }
+            writer.println("\t\t\treturn node;");
+            writer.println("\t\t}");
+        }
+        writer.println("\t}");
+        writer.println();
+    }
+
+    private static String flattenField(String fieldType, String value) {
+
+        if (fieldType.equals("Token")) return "addToken(" + value + ")";
+        if (fieldType.equals("Object")) return "addConstant(" + value + ")";
+        if (fieldType.equals("List<Token>")) return "addTokens(" + value + ")";
+        if (fieldType.startsWith("List<Stmt")) return "addStmts(" + value + ")";
+        if (fieldType.startsWith("List<Expr")) return "addExprs(" + value + ")";
+        if (fieldType.startsWith("Stmt")) return "addStmt(" + value + ")";
+        return "addExpr(" + value + ")";
+    }
+
+    private static void defineView(PrintWriter writer, List<String[]> types) {
+
+        writer.println("\t// The object tree, decoded on demand. Each node is decoded once, so");
+        writer.println("\t// asking twice for the same index gives back the same object.");
+        writer.println("\tpublic List<Stmt> statements() {");
+        writer.println("\t\treturn stmtList(root);");
+        writer.println("\t}");
+        writer.println();
+
+        for (String base : new String[]{"Stmt", "Expr"}) {
+            String name = base.toLowerCase();
+            writer.println("\tpublic " + base + " " + name + "(int node) {");
+            writer.println("\t\tif (node < 0) return null;");
+            writer.println("\t\tif (views == null) views = new Object[nodeCount];");
+            writer.println("\t\tif (views[node] != null) return (" + base + ") views[node];");
+            writer.println();
+            writer.println("\t\tint at = offsets[node];");
+            writer.println("\t\t" + base + " " + name + ";");
+            writer.println("\t\tswitch (kinds[node]) {");
+            for (String[] type : types) {
+                if (!type[0].equals(base)) continue;
+                String[] fields = fields(type[2]).split(", ");
+                String[] annotations = flatAnnotations(type[2]);
+                List<String> arguments = new ArrayList<>();
+                for (int i = 0; i < fields.length; i++) {
+                    arguments.add(viewField(fields[i].split(" ")[0], "data[at + " + i + "]"));
+                }
+                writer.println("\t\t\tcase " + kindName(type) + ":");
+                writer.println("\t\t\t\t" + name + " = new " + base + "." + type[1] + "("
+                        + String.join(", ", arguments) + ");");
+                for (int i = 0; i < annotations.length; i++) {
+                    String value = "data[at + " + (fields.length + i) + "]";
+                    if (annotations[i].startsWith("boolean")) value = value + " != 0";
+                    if (annotations[i].startsWith("int[]")) value = "ints(" + value + ")";
+                    writer.println("\t\t\t\t((" + base + "." + type[1] + ") " + name + ")."
+                            + annotationName(annotations[i]) + " = " + value + ";");
+                }
+                writer.println("\t\t\t\tbreak;");
+            }
+            writer.println("\t\t\tdefault:");
+            writer.println("\t\t\t\tthrow new IllegalStateException(\"Nodul \" + node + \" nu este " + name + "\");");
+            writer.println("\t\t}");
+            writer.println("\t\tviews[node] = " + name + ";");
+            writer.println("\t\treturn " + name + ";");
+            writer.println("\t}");
+            writer.println();
+        }
+    }
+
+    private static String viewField(String fieldType, String slot) {
+
+        if (fieldType.equals("Token")) return "token(" + slot + ")";
+        if (fieldType.equals("Object")) return "constants[" + slot + "]";
+        if (fieldType.equals("List<Token>")) return "tokenList(" + slot + ")";
+        if (fieldType.equals("List<Stmt>")) return "stmtList(" + slot + ")";
+        if (fieldType.equals("List<Expr>")) return "exprList(" + slot + ")";
+        if (fieldType.startsWith("List<")) {
+            String element = fieldType.substring(5, fieldType.length() - 1);
+            String base = element.startsWith("Stmt") ? "stmt" : "expr";
+            return "cast(" + base + "List(" + slot + "))";
+        }
+        if (fieldType.equals("Stmt")) return "stmt(" + slot + ")";
+        if (fieldType.equals("Expr")) return "expr(" + slot + ")";
+        String base = fieldType.startsWith("Stmt") ? "stmt" : "expr";
+        return "(" + fieldType + ") " + base + "(" + slot + ")";
+    }
+
+    private static void defineFlatHelpers(PrintWriter writer) {
+
+        String[] helpers = {
+                "private void trim() {",
+                "\tkinds = Arrays.copyOf(kinds, nodeCount);",
+                "\toffsets = Arrays.copyOf(offsets, nodeCount);",
+                "\tdata = Arrays.copyOf(data, dataCount);",
+                "\ttokenTypes = Arrays.copyOf(tokenTypes, tokenCount);",
+                "\ttokenLines = Arrays.copyOf(tokenLines, tokenCount);",
+                "\ttokenLexemes = Arrays.copyOf(tokenLexemes, tokenCount);",
+                "\ttokenLiterals = Arrays.copyOf(tokenLiterals, tokenCount);",
+                "\tstrings = Arrays.copyOf(strings, stringCount);",
+                "\tconstants = Arrays.copyOf(constants, constantCount);",
+                "\tstringIndex = null;",
+                "}",
+                "",
+                "private int node(int kind, int fields) {",
+                "\tif (nodeCount == kinds.length) {",
+                "\t\tkinds = Arrays.copyOf(kinds, nodeCount * 2);",
+                "\t\toffsets = Arrays.copyOf(offsets, nodeCount * 2);",
+                "\t}",
+                "\tkinds[nodeCount] = kind;",
+                "\toffsets[nodeCount] = reserve(fields);",
+                "\treturn nodeCount++;",
+                "}",
+                "",
+                "private int reserve(int slots) {",
+                "\tif (dataCount + slots > data.length) {",
+                "\t\tdata = Arrays.copyOf(data, Math.max(dataCount + slots, data.length * 2));",
+                "\t}",
+                "\tint at = dataCount;",
+                "\tdataCount += slots;",
+                "\treturn at;",
+                "}",
+                "",
+                "private void set(int at, int value) {",
+                "\tdata[at] = value;",
+                "}",
+                "",
+                "private int addStmt(Stmt stmt) {",
+                "\treturn stmt == null ? -1 : stmt.accept(flattener);",
+                "}",
+                "",
+                "private int addExpr(Expr expr) {",
+                "\treturn expr == null ? -1 : expr.accept(flattener);",
+                "}",
+                "",
+                "private int addToken(Token token) {",
+                "\tif (token == null) return -1;",
+                "\tif (tokenCount == tokenTypes.length) {",
+                "\t\ttokenTypes = Arrays.copyOf(tokenTypes, tokenCount * 2);",
+                "\t\ttokenLines = Arrays.copyOf(tokenLines, tokenCount * 2);",
+                "\t\ttokenLexemes = Arrays.copyOf(tokenLexemes, tokenCount * 2);",
+                "\t\ttokenLiterals = Arrays.copyOf(tokenLiterals, tokenCount * 2);",
+                "\t}",
+                "\ttokenTypes[tokenCount] = token.type.ordinal();",
+                "\ttokenLines[tokenCount] = token.line;",
+                "\ttokenLexemes[tokenCount] = addString(token.lexeme);",
+                "\ttokenLiterals[tokenCount] = token.literal == null ? -1 : addConstant(token.literal);",
+                "\treturn tokenCount++;",
+                "}",
+                "",
+                "private int addString(String text) {",
+                "\tInteger index = stringIndex.get(text);",
+                "\tif (index != null) return index;",
+                "\tif (stringCount == strings.length) strings = Arrays.copyOf(strings, stringCount * 2);",
+                "\tstrings[stringCount] = text;",
+                "\tstringIndex.put(text, stringCount);",
+                "\treturn stringCount++;",
+                "}",
+                "",
+                "private int addConstant(Object value) {",
+                "\tif (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);",
+                "\tconstants[constantCount] = value;",
+                "\treturn constantCount++;",
+                "}",
+                "",
+                "private int addStmts(List<? extends Stmt> statements) {",
+                "\tint[] nodes = new int[statements.size()];",
+                "\tfor (int i = 0; i < nodes.length; i++) nodes[i] = addStmt(statements.get(i));",
+                "\treturn addList(nodes);",
+                "}",
+                "",
+                "private int addExprs(List<? extends Expr> expressions) {",
+                "\tint[] nodes = new int[expressions.size()];",
+                "\tfor (int i = 0; i < nodes.length; i++) nodes[i] = addExpr(expressions.get(i));",
+                "\treturn addList(nodes);",
+                "}",
+                "",
+                "private int addTokens(List<Token> list) {",
+                "\tint[] indices = new int[list.size()];",
+                "\tfor (int i = 0; i < indices.length; i++) indices[i] = addToken(list.get(i));",
+                "\treturn addList(indices);",
+                "}",
+                "",
+                "private int addInts(int[] elements) {",
+                "\treturn elements == null ? -1 : addList(elements);",
+                "}",
+                "",
+                "private int addList(int[] elements) {",
+                "\tint at = reserve(elements.length + 1);",
+                "\tdata[at] = elements.length;",
+                "\tSystem.arraycopy(elements, 0, data, at + 1, elements.length);",
+                "\treturn at;",
+                "}",
+                "",
+                "private Token token(int index) {",
+                "\tif (index < 0) return null;",
+                "\tint literal = tokenLiterals[index];",
+                "\treturn new Token(TOKEN_TYPES[tokenTypes[index]], strings[tokenLexemes[index]],",
+                "\t\t\tliteral < 0 ? null : constants[literal], tokenLines[index]);",
+                "}",
+                "",
+                "private List<Stmt> stmtList(int at) {",
+                "\tList<Stmt> list = new ArrayList<>(data[at]);",
+                "\tfor (int i = 0; i < data[at]; i++) list.add(stmt(data[at + 1 + i]));",
+                "\treturn list;",
+                "}",
+                "",
+                "private List<Expr> exprList(int at) {",
+                "\tList<Expr> list = new ArrayList<>(data[at]);",
+                "\tfor (int i = 0; i < data[at]; i++) list.add(expr(data[at + 1 + i]));",
+                "\treturn list;",
+                "}",
+                "",
+                "private int[] ints(int at) {",
+                "\treturn at < 0 ? null : Arrays.copyOfRange(data, at + 1, at + 1 + data[at]);",
+                "}",
+                "",
+                "private List<Token> tokenList(int at) {",
+                "\tList<Token> list = new ArrayList<>(data[at]);",
+                "\tfor (int i = 0; i < data[at]; i++) list.add(token(data[at + 1 + i]));",
+                "\treturn list;",
+                "}",
+                "",
+                "@SuppressWarnings(\"unchecked\")",
+                "private static <T> List<T> cast(List<?> list) {",
+                "\treturn (List<T>) list;",
+                "}",
+        };
+        for (int i = 0; i < helpers.length; i++) {
+            writer.println(helpers[i].isEmpty() ? "" : "\t" + helpers[i]);
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package roc.utils;
+
+import roc.lexer.MappedSource;
+import roc.lexer.ParallelScanner;
+import roc.lexer.Scanner;
+import roc.lexer.Source;
+import roc.lexer.Token;
+import roc.lexer.TokenBuffer;
+import roc.lexer.TokenStream;
+import roc.lexer.TokenType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+// Checks that --parallel-lex hands the parser what the serial scanner does,
+// with each script cut into 2, 3 and 8 pieces however short it is: every
+// token, and every lexer error at the token it is reported before.
+// Utilizare: java roc.utils.ScanCheck <script>...
+public class ScanCheck {
+
+    private static final int[] PIECES = {2, 3, 8};
+
+    public static void main(String[] args) throws Exception {
+
+        boolean failed = false;
+        for (String file : args) {
+            Source source = MappedSource.open(Paths.get(file), Charset.defaultCharset());
+            String serial = read(new Scanner(source).scanPacked());
+            for (int pieces : PIECES) {
+                ForkJoinPool pool = new ForkJoinPool(pieces);
+                String parallel = read(ParallelScanner.scan(source, pool, 1));
+                pool.shutdown();
+                if (!parallel.equals(serial)) {
+                    System.out.println("ESUAT " + file + " in " + pieces + " bucati");
+                    failed = true;
+                }
+            }
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    // What the parser would see, with the errors in between where they are
+    // reported. They go to System.err, so it is caught for the length of it.
+    private static String read(TokenBuffer tokens) {
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(text, true, StandardCharsets.UTF_8);
+        System.setErr(out);
+        try {
+            TokenStream stream = tokens.stream();
+            while (true) {
+                Token token = stream.peek();
+                out.println(token.type + " " + token.lexeme + " " + token.literal + " " + token.line);
+                if (token.type == TokenType.EOF) break;
+                stream.advance();
+            }
+        } finally {
+            System.setErr(err);
+        }
+        return text.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package roc.utils;
+
+import roc.lexer.MappedSource;
+import roc.lexer.Scanner;
+import roc.lexer.Source;
+import roc.lexer.Token;
+import roc.lexer.TokenBuffer;
+import roc.parser.Parser;
+
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Compares the retained heap and the scan + parse time of the
+// ArrayList<Token> representation against TokenBuffer.
+// Utilizare: java roc.utils.TokenBenchmark <script> [iteratii]
+public class TokenBenchmark {
+
+    public static void main(String[] args) throws Exception {
+
+        Source source = MappedSource.open(Paths.get(args[0]), Charset.defaultCharset());
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        long base = usedMemory();
+        List<Token> list = new Scanner(source).scanTokens();
+        long listBytes = usedMemory() - base;
+        int count = list.size();
+        list = null;
+
+        base = usedMemory();
+        TokenBuffer buffer = new Scanner(source).scanPacked();
+        long bufferBytes = usedMemory() - base;
+        buffer = null;
+
+        System.out.println(count + " tokeni");
+        System.out.printf("memorie ArrayList<Token>: %,d octeti (%.1f/token)%n",
+                listBytes, (double) listBytes / count);
+        System.out.printf("memorie TokenBuffer:      %,d octeti (%.1f/token)%n",
+                bufferBytes, (double) bufferBytes / count);
+
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            list = new Scanner(source).scanTokens();
+            long scanned = System.nanoTime();
+            new Parser(list).parse();
+            long parsed = System.nanoTime();
+            list = null;
+            System.out.printf("iteratia %d: ArrayList<Token> scanare %d ms, parsare %d ms%n",
+                    i, (scanned - start) / 1_000_000, (parsed - scanned) / 1_000_000);
+
+            start = System.nanoTime();
+            buffer = new Scanner(source).scanPacked();
+            scanned = System.nanoTime();
+            new Parser(buffer).parse();
+            parsed = System.nanoTime();
+            buffer = null;
+            System.out.printf("iteratia %d: TokenBuffer      scanare %d ms, parsare %d ms%n",
+                    i, (scanned - start) / 1_000_000, (parsed - scanned) / 1_000_000);
+        }
+    }
+
+    private static long usedMemory() {
+
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
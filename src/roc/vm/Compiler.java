@@ -0,0 +1,644 @@
+package roc.vm;
+
+import roc.interpreter.PropertyCache;
+import roc.lexer.Token;
+import roc.lexer.TokenType;
+import roc.memory.Environment;
+import roc.parser.Expr;
+import roc.parser.Stmt;
+import roc.resolver.TypeInference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static roc.vm.OpCode.*;
+
+// Turns the resolved tree into prototypes. The resolver already numbered
+// every local by frame and slot and listed what each function captures;
+// here the frames of one function are laid side by side in a single frame,
+// so a (depth, slot) pair becomes one index. Globals get their slot in the
+// global table right away. Arithmetic the types say is on integers, and
+// the locals that only hold integers, go to the unboxed opcodes.
+class Compiler implements Stmt.Visitor<Void>, Expr.Visitor<Void> {
+
+    private final Environment globals;
+    private final TypeInference types;
+    private Function function;
+
+    // what is being built for the function being compiled
+    private static class Function {
+        final Function enclosing;
+        final String name;
+        final boolean isInitializer;
+        int[] code = new int[64];
+        Token[] tokens = new Token[64];
+        int size = 0;
+        final List<Object> constants = new ArrayList<>();
+        final Map<Object, Integer> constantIndex = new HashMap<>();
+        // start and size of each frame the resolver would open, innermost last
+        final List<int[]> scopes = new ArrayList<>();
+        // which slots of each of those frames are unboxed, null for none
+        final List<boolean[]> unboxed = new ArrayList<>();
+        int frameSize = 0;
+        int stack = 0;
+        int maxStack = 0;
+        Loop loop;
+        final List<LoopHead> heads = new ArrayList<>();
+
+        Function(Function enclosing, String name, boolean isInitializer) {
+            this.enclosing = enclosing;
+            this.name = name;
+            this.isInitializer = isInitializer;
+        }
+    }
+
+    // the innermost loop, with the jumps out of it and to its next round
+    // waiting for where those end up
+    private static class Loop {
+        final Loop enclosing;
+        final List<Integer> breaks = new ArrayList<>();
+        final List<Integer> continues = new ArrayList<>();
+
+        Loop(Loop enclosing) {
+            this.enclosing = enclosing;
+        }
+    }
+
+    Compiler(Environment globals, TypeInference types) {
+        this.globals = globals;
+        this.types = types;
+    }
+
+    // the top level, as a function taking nothing
+    Prototype compile(List<Stmt> statements) {
+        function = new Function(null, "script", false);
+        for (Stmt statement : statements) {
+            compile(statement);
+        }
+        emit(NIL, 1, null);
+        emit(RETURN, -1, null);
+        return prototype(0, false, new int[0], null);
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        if (expr.depth >= 0 && unboxed(expr.depth, expr.slot)) {
+            integer(expr.value);
+            emit(SET_LOCAL_LONG, 0, expr.name, local(expr.depth, expr.slot));
+            return null;
+        }
+        compile(expr.value);
+        if (expr.depth >= 0) {
+            emit(SET_LOCAL, 0, expr.name, local(expr.depth, expr.slot));
+        } else if (expr.upvalue >= 0) {
+            emit(SET_UPVALUE, 0, expr.name, expr.upvalue);
+        } else {
+            emit(SET_GLOBAL, 0, expr.name, globals.slot(expr.name.lexeme));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        if (expr.operands == TypeInference.INTEGER && arithmetic(expr.operator.type) >= 0) {
+            integer(expr);
+            emit(BOX, 0, null);
+            return null;
+        }
+        compile(expr.left);
+        compile(expr.right);
+        int op;
+        switch (expr.operator.type) {
+            case EQUALS_EQUALS: op = EQUAL; break;
+            case EXMARK_EQUALS: op = NOT_EQUAL; break;
+            case GREATER: op = GREATER; break;
+            case GREATER_EQUALS: op = GREATER_EQUAL; break;
+            case LESS: op = LESS; break;
+            case LESS_EQUALS: op = LESS_EQUAL; break;
+            case PLUS: op = ADD; break;
+            case MINUS: op = SUBTRACT; break;
+            case STAR: op = MULTIPLY; break;
+            case SLASH: op = DIVIDE; break;
+            case MODULO: op = MODULO; break;
+            default:
+                throw new IllegalStateException("Operator necunoscut " + expr.operator.lexeme);
+        }
+        emit(op, -1, expr.operator);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        compile(expr.calle);
+        for (Expr argument : expr.arguments) {
+            compile(argument);
+        }
+        emit(CALL, -expr.arguments.size(), expr.paren, expr.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        compile(expr.object);
+        emit(GET_PROPERTY, 0, expr.name, constant(new PropertyCache(expr.name)));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        compile(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            emit(NIL, 1, null);
+        } else if (expr.value instanceof Boolean value) {
+            emit(value ? TRUE : FALSE, 1, null);
+        } else {
+            emit(CONSTANT, 1, null, constant(expr.value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        compile(expr.left);
+        int jump = emit(expr.operator.type == TokenType.OR ? JUMP_IF_TRUE_KEEP : JUMP_IF_FALSE_KEEP,
+                0, expr.operator, -1);
+        emit(POP, -1, null);
+        compile(expr.right);
+        patch(jump);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        compile(expr.object);
+        // the object is checked before the value is evaluated
+        emit(CHECK_INSTANCE, 0, expr.name);
+        compile(expr.value);
+        emit(SET_PROPERTY, -1, expr.name, constant(new PropertyCache(expr.name)));
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        read(expr.keyword, expr.thisDepth, expr.thisSlot, expr.thisUpvalue);
+        read(expr.keyword, expr.depth, expr.slot, expr.upvalue);
+        emit(GET_SUPER, -1, expr.method, constant(expr.method));
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        read(expr.keyword, expr.depth, expr.slot, expr.upvalue);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        if (expr.type == TypeInference.INTEGER && expr.operator.type == TokenType.MINUS) {
+            integer(expr);
+            emit(BOX, 0, null);
+            return null;
+        }
+        compile(expr.right);
+        emit(expr.operator.type == TokenType.MINUS ? NEGATE : NOT, 0, expr.operator);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        read(expr.name, expr.depth, expr.slot, expr.upvalue);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        int[] scope = beginScope(stmt, stmt.frameSize);
+        // a function or class is stored through its slot, which must not
+        // still hold the cell of the last time round a loop
+        for (Stmt statement : stmt.statements) {
+            if (statement instanceof Stmt.Function || statement instanceof Stmt.Class) {
+                emit(CLEAR, 0, null, scope[0], scope[1]);
+                break;
+            }
+        }
+        for (Stmt statement : stmt.statements) {
+            compile(statement);
+        }
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        function.loop.breaks.add(emit(JUMP, 0, null, -1));
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        if (stmt.superclass != null) {
+            compile(stmt.superclass);
+            emit(CHECK_SUPERCLASS, 0, stmt.superclass.name);
+        }
+
+        emit(NIL, 1, null);
+        define(stmt.name, stmt.slot);
+
+        // 'super' sits in a frame of its own while the methods are declared
+        int superclass = -1;
+        if (stmt.superclass != null) {
+            superclass = beginScope(stmt, 1)[0];
+            emit(DEFINE_LOCAL, -1, null, superclass);
+        }
+
+        emit(CLASS, 1, stmt.name, constant(stmt.name.lexeme));
+        if (stmt.superclass != null) {
+            emit(GET_LOCAL, 1, null, superclass);
+            emit(INHERIT, -1, stmt.superclass.name);
+        }
+        for (Stmt.Function method : stmt.methods) {
+            closure(method, true);
+            emit(METHOD, -1, method.name, constant(method.name.lexeme));
+        }
+        if (stmt.superclass != null) endScope();
+
+        store(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitContinueStmt(Stmt.Continue stmt) {
+        function.loop.continues.add(emit(JUMP, 0, null, -1));
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        effect(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        beginScope(stmt, stmt.frameSize);
+        if (stmt.initializer != null) compile(stmt.initializer);
+
+        int start = function.size;
+        int exit = -1;
+        if (stmt.condition != null) {
+            exit = jumpIfFalse(stmt.condition);
+        }
+        Loop loop = beginLoop();
+        compile(stmt.body);
+        patch(loop.continues);
+        if (stmt.increment != null) {
+            effect(stmt.increment);
+        }
+        jumpBack(stmt, start);
+        if (exit >= 0) patch(exit);
+        endLoop(loop);
+        endScope();
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        closure(stmt, false);
+        store(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        int otherwise = jumpIfFalse(stmt.condition);
+        compile(stmt.thenBranch);
+        if (stmt.elseBranch == null) {
+            patch(otherwise);
+            return null;
+        }
+        int end = emit(JUMP, 0, null, -1);
+        patch(otherwise);
+        compile(stmt.elseBranch);
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        emit(IMPORT, 1, stmt.keyword, constant(stmt));
+        define(stmt.path.get(stmt.path.size() - 1), stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        compile(stmt.expression);
+        emit(PRINT, -1, null);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (function.isInitializer) {
+            // a constructor always gives back its instance
+            emit(GET_LOCAL, 1, null, 0);
+        } else if (stmt.value instanceof Expr.Call call) {
+            compile(call.calle);
+            for (Expr argument : call.arguments) {
+                compile(argument);
+            }
+            emit(TAIL_CALL, -call.arguments.size(), call.paren, call.arguments.size());
+        } else if (stmt.value != null) {
+            compile(stmt.value);
+        } else {
+            emit(NIL, 1, null);
+        }
+        emit(RETURN, -1, stmt.keyword);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.slot >= 0 && stmt.initializer != null && unboxed(0, stmt.slot)) {
+            integer(stmt.initializer);
+            emit(DEFINE_LOCAL_LONG, -1, stmt.name, local(0, stmt.slot));
+            return null;
+        }
+        if (stmt.initializer != null) {
+            compile(stmt.initializer);
+        } else {
+            emit(NIL, 1, null);
+        }
+        define(stmt.name, stmt.slot);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        int start = function.size;
+        int exit = jumpIfFalse(stmt.condition);
+        Loop loop = beginLoop();
+        compile(stmt.body);
+        patch(loop.continues);
+        jumpBack(stmt, start);
+        patch(exit);
+        endLoop(loop);
+        return null;
+    }
+
+    private void closure(Stmt.Function declaration, boolean method) {
+
+        // the captures name frames of the function declaring this one
+        int[] captures = new int[declaration.captures.length];
+        for (int i = 0; i < captures.length; i += 2) {
+            int depth = declaration.captures[i];
+            int index = declaration.captures[i + 1];
+            captures[i] = depth >= 0 ? 1 : 0;
+            captures[i + 1] = depth >= 0 ? local(depth, index) : index;
+        }
+
+        boolean isInitializer = method && declaration.name.lexeme.equals("init");
+        function = new Function(function, declaration.name.lexeme, isInitializer);
+        beginScope(declaration, declaration.frameSize);
+        for (Stmt statement : declaration.body) {
+            compile(statement);
+        }
+        if (isInitializer) {
+            emit(GET_LOCAL, 1, null, 0);
+        } else {
+            emit(NIL, 1, null);
+        }
+        emit(RETURN, -1, null);
+        Prototype prototype = prototype(declaration.params.size(), method, captures, declaration);
+        function = function.enclosing;
+
+        emit(CLOSURE, 1, declaration.name, constant(prototype));
+    }
+
+    private Prototype prototype(int arity, boolean method, int[] captures, Stmt.Function declaration) {
+        return new Prototype(function.name, arity, method, function.isInitializer, function.frameSize,
+                function.maxStack + 1, Arrays.copyOf(function.code, function.size),
+                Arrays.copyOf(function.tokens, function.size), function.constants.toArray(), captures,
+                declaration, function.heads.toArray(new LoopHead[0]));
+    }
+
+    // The jump back to the head of the loop, which names the loop for
+    // compiled code to take over at. The frames open here are the ones
+    // open there.
+    private void jumpBack(Stmt loop, int head) {
+        List<int[]> scopes = function.scopes;
+        int[][] frames = new int[scopes.size()][];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = scopes.get(i).clone();
+        }
+        emit(LOOP, 0, null, head, function.heads.size());
+        LoopHead entry = new LoopHead(head, loop, frames, function.unboxed.toArray(new boolean[0][]));
+        function.heads.add(entry);
+
+        // the loops of the top level it holds take over through it
+        if (function.enclosing == null && frames.length == (loop instanceof Stmt.For ? 1 : 0)) {
+            entry.exit = function.size;
+            for (LoopHead inner : function.heads) {
+                if (inner.head >= head) inner.outermost = entry;
+            }
+        }
+    }
+
+    // Leaves the value of an expression the types say is an integer in the
+    // long half of the stack. Whatever has no unboxed form is evaluated as
+    // an object and unboxed.
+    private void integer(Expr expr) {
+        if (expr instanceof Expr.Grouping grouping) {
+            integer(grouping.expression);
+        } else if (expr instanceof Expr.Literal literal && literal.value instanceof Long) {
+            emit(CONSTANT_LONG, 1, null, constant(literal.value));
+        } else if (expr instanceof Expr.Variable variable && variable.depth >= 0
+                && unboxed(variable.depth, variable.slot)) {
+            emit(GET_LOCAL_LONG, 1, variable.name, local(variable.depth, variable.slot));
+        } else if (expr instanceof Expr.Binary binary && binary.operands == TypeInference.INTEGER
+                && arithmetic(binary.operator.type) >= 0) {
+            integer(binary.left);
+            integer(binary.right);
+            emit(arithmetic(binary.operator.type), -1, binary.operator);
+        } else if (expr instanceof Expr.Unary unary && unary.type == TypeInference.INTEGER
+                && unary.operator.type == TokenType.MINUS) {
+            integer(unary.right);
+            emit(NEGATE_LONG, 0, unary.operator);
+        } else {
+            compile(expr);
+            emit(UNBOX, 0, null);
+        }
+    }
+
+    // the unboxed opcode of an operator on two integers, or -1
+    private static int arithmetic(TokenType operator) {
+        switch (operator) {
+            case PLUS: return ADD_LONG;
+            case MINUS: return SUBTRACT_LONG;
+            case STAR: return MULTIPLY_LONG;
+            case MODULO: return MODULO_LONG;
+            default: return -1;
+        }
+    }
+
+    // Compiles a condition and gives back the jump taken when it is false.
+    // Two integers compared jump on the opposite comparison, with no
+    // boolean in between.
+    private int jumpIfFalse(Expr condition) {
+        if (condition instanceof Expr.Binary binary && binary.operands == TypeInference.INTEGER) {
+            int jump;
+            switch (binary.operator.type) {
+                case EQUALS_EQUALS: jump = JUMP_IF_NOT_EQUAL_LONG; break;
+                case EXMARK_EQUALS: jump = JUMP_IF_EQUAL_LONG; break;
+                case GREATER: jump = JUMP_IF_LESS_EQUAL_LONG; break;
+                case GREATER_EQUALS: jump = JUMP_IF_LESS_LONG; break;
+                case LESS: jump = JUMP_IF_GREATER_EQUAL_LONG; break;
+                case LESS_EQUALS: jump = JUMP_IF_GREATER_LONG; break;
+                default: jump = -1;
+            }
+            if (jump >= 0) {
+                integer(binary.left);
+                integer(binary.right);
+                return emit(jump, -2, binary.operator, -1);
+            }
+        }
+        compile(condition);
+        return emit(JUMP_IF_FALSE, -1, null, -1);
+    }
+
+    // an expression whose value is dropped; an assignment to an unboxed
+    // local stores the integer and leaves nothing
+    private void effect(Expr expr) {
+        if (expr instanceof Expr.Assign assign && assign.depth >= 0 && unboxed(assign.depth, assign.slot)) {
+            integer(assign.value);
+            emit(DEFINE_LOCAL_LONG, -1, assign.name, local(assign.depth, assign.slot));
+            return;
+        }
+        compile(expr);
+        emit(POP, -1, null);
+    }
+
+    private void read(Token name, int depth, int slot, int upvalue) {
+        if (depth >= 0 && unboxed(depth, slot)) {
+            emit(GET_LOCAL_LONG, 1, name, local(depth, slot));
+            emit(BOX, 0, null);
+        } else if (depth >= 0) {
+            emit(GET_LOCAL, 1, name, local(depth, slot));
+        } else if (upvalue >= 0) {
+            emit(GET_UPVALUE, 1, name, upvalue);
+        } else {
+            emit(GET_GLOBAL, 1, name, globals.slot(name.lexeme));
+        }
+    }
+
+    // takes the value on top of the stack
+    private void define(Token name, int slot) {
+        if (slot >= 0) {
+            emit(DEFINE_LOCAL, -1, name, local(0, slot));
+        } else {
+            emit(DEFINE_GLOBAL, -1, name, globals.slot(name.lexeme));
+        }
+    }
+
+    private void store(Token name, int slot) {
+        if (slot >= 0) {
+            emit(STORE_LOCAL, -1, name, local(0, slot));
+        } else {
+            emit(DEFINE_GLOBAL, -1, name, globals.slot(name.lexeme));
+        }
+    }
+
+    private int local(int depth, int slot) {
+        List<int[]> scopes = function.scopes;
+        return scopes.get(scopes.size() - 1 - depth)[0] + slot;
+    }
+
+    private boolean unboxed(int depth, int slot) {
+        List<boolean[]> unboxed = function.unboxed;
+        boolean[] frame = unboxed.get(unboxed.size() - 1 - depth);
+        return frame != null && frame[slot];
+    }
+
+    // the node is what the types know the frame by
+    private int[] beginScope(Object node, int size) {
+        function.unboxed.add(types.unboxed(node));
+        List<int[]> scopes = function.scopes;
+        int start = 0;
+        if (!scopes.isEmpty()) {
+            int[] enclosing = scopes.get(scopes.size() - 1);
+            start = enclosing[0] + enclosing[1];
+        }
+        int[] scope = {start, size};
+        scopes.add(scope);
+        function.frameSize = Math.max(function.frameSize, start + size);
+        return scope;
+    }
+
+    private void endScope() {
+        function.scopes.remove(function.scopes.size() - 1);
+        function.unboxed.remove(function.unboxed.size() - 1);
+    }
+
+    private Loop beginLoop() {
+        function.loop = new Loop(function.loop);
+        return function.loop;
+    }
+
+    // the breaks land after the loop
+    private void endLoop(Loop loop) {
+        patch(loop.breaks);
+        function.loop = loop.enclosing;
+    }
+
+    // the index of the instruction, for patching its jump
+    private int emit(int op, int effect, Token token, int... operands) {
+        Function f = function;
+        if (f.size + 1 + operands.length > f.code.length) {
+            f.code = Arrays.copyOf(f.code, f.code.length * 2);
+            f.tokens = Arrays.copyOf(f.tokens, f.tokens.length * 2);
+        }
+        int at = f.size;
+        f.tokens[at] = token;
+        f.code[f.size++] = op;
+        for (int operand : operands) {
+            f.code[f.size++] = operand;
+        }
+        f.stack += effect;
+        f.maxStack = Math.max(f.maxStack, f.stack);
+        return at;
+    }
+
+    private void patch(int jump) {
+        function.code[jump + 1] = function.size;
+    }
+
+    private void patch(List<Integer> jumps) {
+        for (int jump : jumps) {
+            patch(jump);
+        }
+    }
+
+    private int constant(Object value) {
+        Integer index = function.constantIndex.get(value);
+        if (index != null) return index;
+        function.constants.add(value);
+        function.constantIndex.put(value, function.constants.size() - 1);
+        return function.constants.size() - 1;
+    }
+
+    private void compile(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compile(Expr expr) {
+        expr.accept(this);
+    }
+}
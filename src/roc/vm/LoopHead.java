@@ -0,0 +1,55 @@
+package roc.vm;
+
+import roc.interpreter.Interpreter;
+import roc.jit.CompiledFunction;
+import roc.jit.Jit;
+import roc.lexer.Token;
+import roc.lexer.TokenType;
+import roc.parser.Stmt;
+
+import java.util.List;
+
+// Where a loop starts over, with the start and size of each frame open
+// there, innermost last, and their unboxed slots. The compiled function
+// the loop is in can take over there.
+//
+// Nothing of the top level is compiled, so there the outermost loop
+// that opens no frame but its own is, as the body of a function of no
+// arguments: nothing else it changes outlives it. The loops inside it
+// take over through it and the code after it goes on at its exit.
+final class LoopHead {
+
+    final int head;
+    final Stmt statement;
+    final int[][] frames;
+    final boolean[][] unboxed;
+    // null inside a function
+    LoopHead outermost;
+    int exit;
+
+    // turns of the loops inside it run in the VM so far, negative once it
+    // was compiled or found it cannot be
+    private long hotness;
+    private CompiledFunction compiled;
+
+    LoopHead(int head, Stmt statement, int[][] frames, boolean[][] unboxed) {
+        this.head = head;
+        this.statement = statement;
+        this.frames = frames;
+        this.unboxed = unboxed;
+    }
+
+    // the code of the outermost loop once it got hot, if it could be compiled
+    CompiledFunction hot(Interpreter interpreter) {
+        LoopHead loop = outermost;
+        if (loop == null) return null;
+        if (loop.hotness >= 0 && ++loop.hotness >= Jit.THRESHOLD) {
+            loop.hotness = Long.MIN_VALUE;
+            Stmt.Function body = new Stmt.Function(new Token(TokenType.IDENTIFIER, "", null, 0),
+                    List.of(), List.of(loop.statement));
+            body.captures = new int[0];
+            loop.compiled = Jit.compile(interpreter, null, body);
+        }
+        return loop.compiled;
+    }
+}
@@ -0,0 +1,114 @@
+package roc.vm;
+
+// The instructions of the VM. Each one is an int in the code array,
+// followed by its operands, also ints. Jumps name the index they go to.
+final class OpCode {
+
+    private OpCode() {
+    }
+
+    // constant index
+    static final int CONSTANT = 0;
+    static final int NIL = 1;
+    static final int TRUE = 2;
+    static final int FALSE = 3;
+    static final int POP = 4;
+
+    // local index, from the start of the frame
+    static final int GET_LOCAL = 5;
+    // a new variable, stored over whatever the slot held
+    static final int DEFINE_LOCAL = 6;
+    // a function or class, stored through the cell its body may have made
+    static final int STORE_LOCAL = 7;
+    // an assignment, which leaves nil
+    static final int SET_LOCAL = 8;
+    // upvalue index
+    static final int GET_UPVALUE = 9;
+    static final int SET_UPVALUE = 10;
+    // slot in the global table
+    static final int GET_GLOBAL = 11;
+    static final int DEFINE_GLOBAL = 12;
+    static final int SET_GLOBAL = 13;
+
+    // constant index of the site's property cache
+    static final int GET_PROPERTY = 14;
+    static final int SET_PROPERTY = 15;
+    static final int CHECK_INSTANCE = 16;
+    // constant index of the name token
+    static final int GET_SUPER = 17;
+
+    static final int EQUAL = 18;
+    static final int NOT_EQUAL = 19;
+    static final int GREATER = 20;
+    static final int GREATER_EQUAL = 21;
+    static final int LESS = 22;
+    static final int LESS_EQUAL = 23;
+    static final int ADD = 24;
+    static final int SUBTRACT = 25;
+    static final int MULTIPLY = 26;
+    static final int DIVIDE = 27;
+    static final int MODULO = 28;
+    static final int NOT = 29;
+    static final int NEGATE = 30;
+    static final int PRINT = 31;
+
+    // target index
+    static final int JUMP = 32;
+    static final int JUMP_IF_FALSE = 33;
+    // the 'si'/'sau' jumps leave the operand as the result
+    static final int JUMP_IF_FALSE_KEEP = 34;
+    static final int JUMP_IF_TRUE_KEEP = 35;
+
+    // argument count
+    static final int CALL = 36;
+    // constant index of the prototype
+    static final int CLOSURE = 37;
+    static final int RETURN = 38;
+
+    // constant index of the name
+    static final int CLASS = 39;
+    static final int CHECK_SUPERCLASS = 40;
+    static final int INHERIT = 41;
+    static final int METHOD = 42;
+
+    // first local and count, emptied when a block starts over
+    static final int CLEAR = 43;
+    // constant index of the statement
+    static final int IMPORT = 44;
+
+    // argument count, a call whose result the frame returns: the callee's
+    // frame replaces this one, and only classes and natives come back to
+    // the RETURN after it
+    static final int TAIL_CALL = 45;
+
+    // Integers the types are sure of, kept unboxed: their operands and
+    // results are in the long half of the stack, at the same index an
+    // object would have, and so are the locals that only hold integers.
+    // local index
+    static final int GET_LOCAL_LONG = 46;
+    // a new variable, or an assignment whose nil nobody uses
+    static final int DEFINE_LOCAL_LONG = 47;
+    // an assignment, which leaves nil
+    static final int SET_LOCAL_LONG = 48;
+    // constant index
+    static final int CONSTANT_LONG = 49;
+    static final int ADD_LONG = 50;
+    static final int SUBTRACT_LONG = 51;
+    static final int MULTIPLY_LONG = 52;
+    static final int MODULO_LONG = 53;
+    static final int NEGATE_LONG = 54;
+    // between the two halves
+    static final int BOX = 55;
+    static final int UNBOX = 56;
+    // target index, jumping when the two integers compare so
+    static final int JUMP_IF_EQUAL_LONG = 57;
+    static final int JUMP_IF_NOT_EQUAL_LONG = 58;
+    static final int JUMP_IF_LESS_LONG = 59;
+    static final int JUMP_IF_LESS_EQUAL_LONG = 60;
+    static final int JUMP_IF_GREATER_LONG = 61;
+    static final int JUMP_IF_GREATER_EQUAL_LONG = 62;
+
+    // target index and loop index: the jump back to the head of a loop,
+    // where compiled code can take over
+    static final int LOOP = 63;
+}
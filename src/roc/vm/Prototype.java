@@ -0,0 +1,46 @@
+package roc.vm;
+
+import roc.lexer.Token;
+import roc.parser.Stmt;
+
+// A compiled function. The frame holds the instance of a method, the
+// parameters and then the locals of every block, blocks side by side
+// sharing slots.
+final class Prototype {
+
+    final String name;
+    final int arity;
+    final boolean isMethod;
+    final boolean isInitializer;
+    final int frameSize;
+    // how deep the operands above the locals can get
+    final int maxStack;
+    final int[] code;
+    // the token to blame for an error at each instruction
+    final Token[] tokens;
+    final Object[] constants;
+    // per upvalue: 1 and a local of the declaring frame, or 0 and one of
+    // its upvalues
+    final int[] captures;
+    // what the JIT compiles the function from, null for the top level
+    final Stmt.Function declaration;
+    // by the index their LOOP names
+    final LoopHead[] loops;
+
+    Prototype(String name, int arity, boolean isMethod, boolean isInitializer, int frameSize, int maxStack,
+              int[] code, Token[] tokens, Object[] constants, int[] captures, Stmt.Function declaration,
+              LoopHead[] loops) {
+        this.name = name;
+        this.arity = arity;
+        this.isMethod = isMethod;
+        this.isInitializer = isInitializer;
+        this.frameSize = frameSize;
+        this.maxStack = maxStack;
+        this.code = code;
+        this.tokens = tokens;
+        this.constants = constants;
+        this.captures = captures;
+        this.declaration = declaration;
+        this.loops = loops;
+    }
+}
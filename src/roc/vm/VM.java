@@ -0,0 +1,761 @@
+package roc.vm;
+
+import roc.Roc;
+import roc.interpreter.Completion;
+import roc.interpreter.Interpreter;
+import roc.interpreter.Operators;
+import roc.interpreter.PropertyCache;
+import roc.interpreter.RocCallable;
+import roc.interpreter.RocModule;
+import roc.interpreter.RuntimeError;
+import roc.interpreter.ShapedInstance;
+import roc.jit.CompiledFunction;
+import roc.lexer.Token;
+import roc.memory.Cell;
+import roc.memory.Environment;
+import roc.parser.Stmt;
+import roc.resolver.TypeInference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static roc.vm.OpCode.*;
+
+// Runs the compiled program on one value stack. A call frame is the callee
+// slot, then the frame's locals, then its operands. A function's
+// parameters are the arguments where the caller pushed them; a method gets
+// its instance in the callee slot, so it starts one lower. Unboxed
+// integers live in a long array alongside, at the index of their slot.
+//
+// The globals, the natives and the imported modules are the interpreter's,
+// and modules keep running in their own tree walkers. So is the JIT: a
+// function that runs hot here is compiled the same way and called
+// instead, and a hot loop goes on in the compiled code at its head.
+public class VM {
+
+    final Interpreter interpreter;
+    private final Environment globals;
+
+    private Object[] stack = new Object[1024];
+    private long[] longs = new long[1024];
+    private int sp = 0;
+
+    private VmClosure[] closures = new VmClosure[64];
+    private int[] ips = new int[64];
+    private int[] bases = new int[64];
+    // where the result of each call goes
+    private int[] slots = new int[64];
+    private int frameCount = 0;
+
+    public VM(Interpreter interpreter) {
+        this.interpreter = interpreter;
+        this.globals = interpreter.globals;
+    }
+
+    // types is what inferred the statements, or null when nothing has: a
+    // cached program comes without the slot types, so they are worked out
+    // again
+    public void interpret(List<Stmt> statements, TypeInference types) {
+        if (types == null) {
+            types = new TypeInference();
+            types.infer(statements);
+        }
+        run(new Compiler(globals, types).compile(statements));
+    }
+
+    private void run(Prototype script) {
+        try {
+            VmClosure closure = new VmClosure(this, script, new Cell[0]);
+            stack[sp++] = closure;
+            frame(closure, 0, 1, null);
+            run(0);
+        } catch (RuntimeError error) {
+            Roc.runtimeError(error);
+            sp = 0;
+            frameCount = 0;
+        }
+    }
+
+    // for callers outside the VM: the tree walker, compiled code, or a
+    // class being built, with the call site when the caller has one
+    Object call(VmClosure closure, VmInstance receiver, List<Object> arguments, Token paren) {
+        if (receiver == null) {
+            CompiledFunction compiled = closure.hot();
+            if (compiled != null) return settle(compiled(compiled, arguments, paren), paren);
+        }
+        return enter(closure, receiver, arguments, paren);
+    }
+
+    private Object enter(VmClosure closure, VmInstance receiver, List<Object> arguments, Token paren) {
+        int exit = frameCount;
+        reserve(arguments.size() + 1);
+        int slot = sp;
+        stack[sp++] = receiver != null ? receiver : closure;
+        for (Object argument : arguments) {
+            stack[sp++] = argument;
+        }
+        frame(closure, slot, receiver != null ? slot : slot + 1, paren);
+        return run(exit);
+    }
+
+    @SuppressWarnings("fallthrough")
+    private Object run(int exit) {
+
+        VmClosure closure = closures[frameCount - 1];
+        int[] code = closure.prototype.code;
+        Object[] constants = closure.prototype.constants;
+        int ip = ips[frameCount - 1];
+        int base = bases[frameCount - 1];
+        Object[] stack = this.stack;
+        long[] longs = this.longs;
+        int sp = this.sp;
+
+        for (;;) {
+            int at = ip;
+            switch (code[ip++]) {
+                case CONSTANT:
+                    stack[sp++] = constants[code[ip++]];
+                    break;
+                case NIL:
+                    stack[sp++] = null;
+                    break;
+                case TRUE:
+                    stack[sp++] = Boolean.TRUE;
+                    break;
+                case FALSE:
+                    stack[sp++] = Boolean.FALSE;
+                    break;
+                case POP:
+                    sp--;
+                    break;
+
+                case GET_LOCAL: {
+                    Object value = stack[base + code[ip++]];
+                    stack[sp++] = value instanceof Cell cell ? cell.value : value;
+                    break;
+                }
+                case DEFINE_LOCAL:
+                    stack[base + code[ip++]] = stack[--sp];
+                    break;
+                case STORE_LOCAL: {
+                    int local = base + code[ip++];
+                    if (stack[local] instanceof Cell cell) {
+                        cell.value = stack[--sp];
+                    } else {
+                        stack[local] = stack[--sp];
+                    }
+                    break;
+                }
+                case SET_LOCAL: {
+                    int local = base + code[ip++];
+                    if (stack[local] instanceof Cell cell) {
+                        cell.value = stack[sp - 1];
+                    } else {
+                        stack[local] = stack[sp - 1];
+                    }
+                    stack[sp - 1] = null;
+                    break;
+                }
+                case GET_UPVALUE:
+                    stack[sp++] = closure.upvalues[code[ip++]].value;
+                    break;
+                case SET_UPVALUE:
+                    closure.upvalues[code[ip++]].value = stack[sp - 1];
+                    stack[sp - 1] = null;
+                    break;
+                case GET_GLOBAL:
+                    stack[sp++] = globals.get(closure.prototype.tokens[at], code[ip++]);
+                    break;
+                case DEFINE_GLOBAL:
+                    globals.define(code[ip++], stack[--sp]);
+                    break;
+                case SET_GLOBAL:
+                    globals.assign(closure.prototype.tokens[at], code[ip++], stack[sp - 1]);
+                    stack[sp - 1] = null;
+                    break;
+
+                case GET_PROPERTY: {
+                    PropertyCache cache = (PropertyCache) constants[code[ip++]];
+                    Token name = closure.prototype.tokens[at];
+                    Object object = stack[sp - 1];
+                    if (object instanceof ShapedInstance instance) {
+                        stack[sp - 1] = cache.get(instance);
+                    } else if (object instanceof RocModule module) {
+                        // the module's code may run now and call back in here
+                        this.sp = sp;
+                        ips[frameCount - 1] = ip;
+                        Object value = module.get(name);
+                        stack = this.stack;
+                        longs = this.longs;
+                        stack[sp - 1] = value;
+                    } else {
+                        throw new RuntimeError(name, "Poti avea proprietati doar pe instante");
+                    }
+                    break;
+                }
+                case CHECK_INSTANCE: {
+                    Object object = stack[sp - 1];
+                    if (!(object instanceof ShapedInstance)) {
+                        throw new RuntimeError(closure.prototype.tokens[at], "Doar instantele pot avea proprietati");
+                    }
+                    break;
+                }
+                case SET_PROPERTY: {
+                    PropertyCache cache = (PropertyCache) constants[code[ip++]];
+                    Object value = stack[--sp];
+                    // both kinds of instance keep their fields the same way
+                    cache.set((ShapedInstance) stack[sp - 1], value);
+                    stack[sp - 1] = null;
+                    break;
+                }
+                case GET_SUPER: {
+                    Token name = (Token) constants[code[ip++]];
+                    VmClass superclass = (VmClass) stack[--sp];
+                    VmClosure method = superclass.findMethod(name.lexeme);
+                    if (method == null) {
+                        throw new RuntimeError(name, "Proprietate nedefinita '" + name.lexeme + "'");
+                    }
+                    stack[sp - 1] = new VmBoundMethod((VmInstance) stack[sp - 1], method);
+                    break;
+                }
+
+                case EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Operators.isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case NOT_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Operators.isEqual(stack[sp - 1], right);
+                    break;
+                }
+                case GREATER: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b ? (Object) (a > b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a > b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case GREATER_EQUAL: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b ? (Object) (a >= b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a >= b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case LESS: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b ? (Object) (a < b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a < b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case LESS_EQUAL: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b ? (Object) (a <= b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a <= b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case ADD: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b
+                            ? Operators.add(a, b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a + b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case SUBTRACT: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b
+                            ? Operators.subtract(a, b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a - b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case MULTIPLY: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b
+                            ? Operators.multiply(a, b)
+                            : left instanceof Double a && right instanceof Double b ? (Object) (a * b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case DIVIDE: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    stack[sp - 1] = left instanceof Double a && right instanceof Double b ? (Object) (a / b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case MODULO: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    // a zero divisor is left to Operators to report
+                    stack[sp - 1] = left instanceof Long a && right instanceof Long b && b != 0 ? (Object) (a % b)
+                            : Operators.binary(closure.prototype.tokens[at], left, right);
+                    break;
+                }
+                case NOT:
+                    stack[sp - 1] = !Operators.isTruthy(stack[sp - 1]);
+                    break;
+                case NEGATE:
+                    stack[sp - 1] = stack[sp - 1] instanceof Long value
+                            ? Operators.negate(value)
+                            : Operators.unary(closure.prototype.tokens[at], stack[sp - 1]);
+                    break;
+                case PRINT:
+                    System.out.println(Operators.stringify(stack[--sp]));
+                    break;
+
+                case JUMP:
+                    ip = code[ip];
+                    break;
+                case JUMP_IF_FALSE:
+                    ip = Operators.isTruthy(stack[--sp]) ? ip + 1 : code[ip];
+                    break;
+                case JUMP_IF_FALSE_KEEP:
+                    ip = Operators.isTruthy(stack[sp - 1]) ? ip + 1 : code[ip];
+                    break;
+                case JUMP_IF_TRUE_KEEP:
+                    ip = Operators.isTruthy(stack[sp - 1]) ? code[ip] : ip + 1;
+                    break;
+
+                case TAIL_CALL:
+                case CALL: {
+                    int count = code[ip++];
+                    int slot = sp - count - 1;
+                    Object callee = stack[slot];
+                    ips[frameCount - 1] = ip;
+                    this.sp = sp;
+
+                    if (code[at] == TAIL_CALL && (callee instanceof VmClosure || callee instanceof VmBoundMethod)) {
+                        slot = release(slot, count);
+                    }
+                    call(slot, count, closure.prototype.tokens[at]);
+                    if (frameCount == exit) {
+                        // compiled code finished the tail call of the frame called from outside
+                        this.sp = slot;
+                        return this.stack[slot];
+                    }
+
+                    // whichever frame is on top now carries on
+                    closure = closures[frameCount - 1];
+                    code = closure.prototype.code;
+                    constants = closure.prototype.constants;
+                    ip = ips[frameCount - 1];
+                    base = bases[frameCount - 1];
+                    stack = this.stack;
+                    longs = this.longs;
+                    sp = this.sp;
+                    break;
+                }
+                case CLOSURE: {
+                    Prototype prototype = (Prototype) constants[code[ip++]];
+                    int[] captures = prototype.captures;
+                    Cell[] upvalues = new Cell[captures.length / 2];
+                    for (int i = 0; i < upvalues.length; i++) {
+                        int index = captures[2 * i + 1];
+                        upvalues[i] = captures[2 * i] == 1 ? capture(stack, base + index) : closure.upvalues[index];
+                    }
+                    stack[sp++] = new VmClosure(this, prototype, upvalues);
+                    break;
+                }
+                case LOOP: {
+                    LoopHead loop = closure.prototype.loops[code[ip + 1]];
+                    ip = code[ip];
+                    CompiledFunction compiled = closure.hot();
+                    if (compiled == null) {
+                        compiled = loop.hot(interpreter);
+                        if (compiled == null) break;
+                        // the outermost loop of the top level it is in runs to its end compiled
+                        this.sp = sp;
+                        resume(compiled, loop, base);
+                        stack = this.stack;
+                        longs = this.longs;
+                        ip = loop.outermost.exit;
+                        break;
+                    }
+                    // the compiled function runs the rest of the call,
+                    // whose result is returned as is
+                    this.sp = sp;
+                    Object result = resume(compiled, loop, base);
+                    stack = this.stack;
+                    longs = this.longs;
+                    stack[sp++] = result;
+                }
+                // falls through
+                case RETURN: {
+                    Object result = stack[sp - 1];
+                    frameCount--;
+                    interpreter.leaveCall();
+                    sp = slots[frameCount];
+                    stack[sp++] = result;
+                    if (frameCount == exit) {
+                        this.sp = sp - 1;
+                        return result;
+                    }
+                    closure = closures[frameCount - 1];
+                    code = closure.prototype.code;
+                    constants = closure.prototype.constants;
+                    ip = ips[frameCount - 1];
+                    base = bases[frameCount - 1];
+                    break;
+                }
+
+                case CLASS:
+                    stack[sp++] = new VmClass((String) constants[code[ip++]]);
+                    break;
+                case CHECK_SUPERCLASS:
+                    if (!(stack[sp - 1] instanceof VmClass)) {
+                        throw new RuntimeError(closure.prototype.tokens[at], "Superclasa trebuie sa fie o clasa");
+                    }
+                    break;
+                case INHERIT:
+                    ((VmClass) stack[sp - 2]).inherit((VmClass) stack[--sp]);
+                    break;
+                case METHOD: {
+                    VmClosure method = (VmClosure) stack[--sp];
+                    ((VmClass) stack[sp - 1]).method((String) constants[code[ip++]], method);
+                    break;
+                }
+
+                case CLEAR: {
+                    int from = base + code[ip++];
+                    Arrays.fill(stack, from, from + code[ip++], null);
+                    break;
+                }
+                case IMPORT: {
+                    Stmt.Import statement = (Stmt.Import) constants[code[ip++]];
+                    stack[sp++] = interpreter.load(statement);
+                    break;
+                }
+
+                case GET_LOCAL_LONG: {
+                    int local = base + code[ip++];
+                    longs[sp] = longs[local];
+                    stack[sp++] = stack[local];
+                    break;
+                }
+                case DEFINE_LOCAL_LONG: {
+                    int local = base + code[ip++];
+                    longs[local] = longs[--sp];
+                    stack[local] = stack[sp];
+                    break;
+                }
+                case SET_LOCAL_LONG: {
+                    int local = base + code[ip++];
+                    longs[local] = longs[sp - 1];
+                    stack[local] = stack[sp - 1];
+                    break;
+                }
+                case CONSTANT_LONG:
+                    longs[sp] = (Long) constants[code[ip++]];
+                    stack[sp++] = null;
+                    break;
+                case ADD_LONG:
+                    if (stack[--sp] == null && stack[sp - 1] == null) {
+                        try {
+                            longs[sp - 1] = Math.addExact(longs[sp - 1], longs[sp]);
+                            break;
+                        } catch (ArithmeticException overflow) {
+                            // worked out below
+                        }
+                    }
+                    overflowed(sp - 1, Operators.binary(closure.prototype.tokens[at], boxed(sp - 1), boxed(sp)));
+                    break;
+                case SUBTRACT_LONG:
+                    if (stack[--sp] == null && stack[sp - 1] == null) {
+                        try {
+                            longs[sp - 1] = Math.subtractExact(longs[sp - 1], longs[sp]);
+                            break;
+                        } catch (ArithmeticException overflow) {
+                            // worked out below
+                        }
+                    }
+                    overflowed(sp - 1, Operators.binary(closure.prototype.tokens[at], boxed(sp - 1), boxed(sp)));
+                    break;
+                case MULTIPLY_LONG:
+                    if (stack[--sp] == null && stack[sp - 1] == null) {
+                        try {
+                            longs[sp - 1] = Math.multiplyExact(longs[sp - 1], longs[sp]);
+                            break;
+                        } catch (ArithmeticException overflow) {
+                            // worked out below
+                        }
+                    }
+                    overflowed(sp - 1, Operators.binary(closure.prototype.tokens[at], boxed(sp - 1), boxed(sp)));
+                    break;
+                case MODULO_LONG:
+                    // a zero divisor is left to Operators to report
+                    if (stack[--sp] == null && stack[sp - 1] == null && longs[sp] != 0) {
+                        longs[sp - 1] %= longs[sp];
+                        break;
+                    }
+                    overflowed(sp - 1, Operators.binary(closure.prototype.tokens[at], boxed(sp - 1), boxed(sp)));
+                    break;
+                case NEGATE_LONG:
+                    if (stack[sp - 1] == null && longs[sp - 1] != Long.MIN_VALUE) {
+                        longs[sp - 1] = -longs[sp - 1];
+                        break;
+                    }
+                    overflowed(sp - 1, Operators.unary(closure.prototype.tokens[at], boxed(sp - 1)));
+                    break;
+                case BOX:
+                    if (stack[sp - 1] == null) stack[sp - 1] = longs[sp - 1];
+                    break;
+                case UNBOX:
+                    if (stack[sp - 1] instanceof Long value) {
+                        longs[sp - 1] = value;
+                        stack[sp - 1] = null;
+                    }
+                    break;
+                case JUMP_IF_EQUAL_LONG:
+                    sp -= 2;
+                    ip = (stack[sp] == null && stack[sp + 1] == null ? longs[sp] == longs[sp + 1]
+                            : !holds(closure.prototype.tokens[at], sp)) ? code[ip] : ip + 1;
+                    break;
+                case JUMP_IF_NOT_EQUAL_LONG:
+                    sp -= 2;
+                    ip = (stack[sp] == null && stack[sp + 1] == null ? longs[sp] != longs[sp + 1]
+                            : !holds(closure.prototype.tokens[at], sp)) ? code[ip] : ip + 1;
+                    break;
+                case JUMP_IF_LESS_LONG:
+                    sp -= 2;
+                    ip = (stack[sp] == null && stack[sp + 1] == null ? longs[sp] < longs[sp + 1]
+                            : !holds(closure.prototype.tokens[at], sp)) ? code[ip] : ip + 1;
+                    break;
+                case JUMP_IF_LESS_EQUAL_LONG:
+                    sp -= 2;
+                    ip = (stack[sp] == null && stack[sp + 1] == null ? longs[sp] <= longs[sp + 1]
+                            : !holds(closure.prototype.tokens[at], sp)) ? code[ip] : ip + 1;
+                    break;
+                case JUMP_IF_GREATER_LONG:
+                    sp -= 2;
+                    ip = (stack[sp] == null && stack[sp + 1] == null ? longs[sp] > longs[sp + 1]
+                            : !holds(closure.prototype.tokens[at], sp)) ? code[ip] : ip + 1;
+                    break;
+                case JUMP_IF_GREATER_EQUAL_LONG:
+                    sp -= 2;
+                    ip = (stack[sp] == null && stack[sp + 1] == null ? longs[sp] >= longs[sp + 1]
+                            : !holds(closure.prototype.tokens[at], sp)) ? code[ip] : ip + 1;
+                    break;
+
+                default:
+                    throw new IllegalStateException("Instructiune necunoscuta " + code[at]);
+            }
+        }
+    }
+
+    // Opens a frame for the callee at slot whose locals start at base. The
+    // arguments are already in place, the rest of the locals start empty.
+    private void frame(VmClosure closure, int slot, int base, Token paren) {
+        interpreter.enterCall(paren);
+        if (frameCount == closures.length) {
+            int size = frameCount * 2;
+            closures = Arrays.copyOf(closures, size);
+            ips = Arrays.copyOf(ips, size);
+            bases = Arrays.copyOf(bases, size);
+            slots = Arrays.copyOf(slots, size);
+        }
+
+        Prototype prototype = closure.prototype;
+        int top = base + prototype.frameSize;
+        if (top + prototype.maxStack > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + prototype.maxStack));
+            longs = Arrays.copyOf(longs, stack.length);
+        }
+        Arrays.fill(stack, sp, top, null);
+
+        closures[frameCount] = closure;
+        ips[frameCount] = 0;
+        bases[frameCount] = base;
+        slots[frameCount] = slot;
+        frameCount++;
+        sp = top;
+    }
+
+    // Calls what sits at slot with the arguments above it. A function of
+    // the VM gets a frame of its own unless it is compiled, which is
+    // called right here, as are natives. A tail call the compiled code
+    // leaves to one of the VM's own functions is made in the same place.
+    private void call(int slot, int count, Token paren) {
+        for (;;) {
+            Object callee = stack[slot];
+            if (callee instanceof VmClosure function) {
+                Interpreter.checkArity(function.prototype.arity, count, paren);
+                CompiledFunction compiled = function.hot();
+                if (compiled == null) {
+                    frame(function, slot, slot + 1, paren);
+                    return;
+                }
+                Object result = compiled(compiled, Arrays.asList(Arrays.copyOfRange(stack, slot + 1, slot + 1 + count)), paren);
+                if (result == Completion.TAIL_CALL) {
+                    count = pending(slot);
+                    if (count >= 0) continue;
+                    result = interpreter.finishTailCall();
+                }
+                stack[slot] = result;
+                sp = slot + 1;
+            } else if (callee instanceof VmBoundMethod bound) {
+                Interpreter.checkArity(bound.method.prototype.arity, count, paren);
+                stack[slot] = bound.receiver;
+                frame(bound.method, slot, slot, paren);
+            } else if (callee instanceof VmClass clasa) {
+                VmInstance instance = new VmInstance(clasa);
+                stack[slot] = instance;
+                VmClosure initializer = clasa.initializer;
+                if (initializer == null) {
+                    Interpreter.checkArity(0, count, paren);
+                    sp = slot + 1;
+                } else {
+                    Interpreter.checkArity(initializer.prototype.arity, count, paren);
+                    frame(initializer, slot, slot, paren);
+                }
+            } else {
+                sp = callNative(callee, slot, count, paren);
+            }
+            return;
+        }
+    }
+
+    // Drops the running frame for the call in tail position, whose callee
+    // and arguments move down to where that frame's result goes.
+    private int release(int slot, int count) {
+        int target = slots[frameCount - 1];
+        System.arraycopy(stack, slot, stack, target, count + 1);
+        frameCount--;
+        interpreter.leaveCall();
+        sp = target + count + 1;
+        return target;
+    }
+
+    // The tail call compiled code left pending, moved to slot when its
+    // callee is a function of the VM. The count of its arguments, or -1
+    // for anything else, which finishTailCall makes.
+    private int pending(int slot) {
+        Object callee = interpreter.tailCallee();
+        if (!(callee instanceof VmClosure || callee instanceof VmBoundMethod)) return -1;
+        List<Object> arguments = interpreter.takeTailArguments();
+        sp = slot;
+        reserve(arguments.size() + 1);
+        stack[sp++] = callee;
+        for (Object argument : arguments) {
+            stack[sp++] = argument;
+        }
+        return arguments.size();
+    }
+
+    // what compiled code called from outside the VM returned, with the
+    // An integer on the long half of the stack is the long there while its
+    // slot on the object half is null. A result too big for a long is
+    // worked out in double and left on the object half instead, and so is
+    // a local it is stored in; the unboxed opcodes go through Operators
+    // whenever they meet one.
+    private Object boxed(int index) {
+        return stack[index] != null ? stack[index] : (Object) longs[index];
+    }
+
+    private void overflowed(int index, Object value) {
+        if (value instanceof Long number) {
+            longs[index] = number;
+            stack[index] = null;
+        } else {
+            stack[index] = value;
+        }
+    }
+
+    // whether the comparison a fused jump was made from holds for the two
+    // integers at the index, one of which overflowed
+    private boolean holds(Token operator, int index) {
+        return Operators.isTruthy(Operators.binary(operator, boxed(index), boxed(index + 1)));
+    }
+
+    // tail calls it left made
+    private Object settle(Object result, Token paren) {
+        while (result == Completion.TAIL_CALL) {
+            if (!(interpreter.tailCallee() instanceof VmClosure function)) return interpreter.finishTailCall();
+            List<Object> arguments = interpreter.takeTailArguments();
+            CompiledFunction compiled = function.hot();
+            if (compiled == null) return enter(function, null, arguments, paren);
+            result = compiled(compiled, arguments, paren);
+        }
+        return result;
+    }
+
+    // Compiled code recurses on the Java stack, so it is counted like a
+    // frame would be, and running out of stack fails the same way.
+    private Object compiled(CompiledFunction compiled, List<Object> arguments, Token paren) {
+        interpreter.enterCall(paren);
+        Object result;
+        try {
+            result = compiled.call(arguments);
+        } catch (StackOverflowError e) {
+            if (paren == null) throw e;
+            throw Interpreter.tooManyCalls(paren);
+        }
+        interpreter.leaveCall();
+        return result;
+    }
+
+    // Hands the loop over to compiled code, with the locals in frames the
+    // way the tree walker keeps them, and returns what the rest of the
+    // call does.
+    private Object resume(CompiledFunction compiled, LoopHead loop, int base) {
+        Environment frame = globals;
+        for (int i = 0; i < loop.frames.length; i++) {
+            int start = base + loop.frames[i][0];
+            int size = loop.frames[i][1];
+            boolean[] unboxed = loop.unboxed[i];
+            frame = new Environment(frame, size);
+            for (int slot = 0; slot < size; slot++) {
+                if (unboxed != null && unboxed[slot] && stack[start + slot] == null) {
+                    frame.defineLong(slot, longs[start + slot]);
+                } else {
+                    frame.define(slot, stack[start + slot]);
+                }
+            }
+        }
+        return settle(compiled.resume(loop.statement, frame), null);
+    }
+
+    // anything else callable: natives, and whatever the tree walker of an
+    // imported module hands out
+    private int callNative(Object callee, int slot, int count, Token paren) {
+        if (!(callee instanceof RocCallable function)) {
+            throw new RuntimeError(paren, "Putem apela doar functii");
+        }
+        Interpreter.checkArity(function.arity(), count, paren);
+
+        List<Object> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            arguments.add(stack[slot + 1 + i]);
+        }
+        Object result = function.call(interpreter, arguments, paren);
+        stack[slot] = result;
+        return slot + 1;
+    }
+
+    private void reserve(int count) {
+        if (sp + count > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, sp + count));
+            longs = Arrays.copyOf(longs, stack.length);
+        }
+    }
+
+    // the cell of a local, boxing it the first time it is captured
+    private static Cell capture(Object[] stack, int local) {
+        if (stack[local] instanceof Cell cell) return cell;
+        Cell cell = new Cell(stack[local]);
+        stack[local] = cell;
+        return cell;
+    }
+}
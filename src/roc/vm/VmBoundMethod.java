@@ -0,0 +1,38 @@
+package roc.vm;
+
+import roc.interpreter.Interpreter;
+import roc.lexer.Token;
+import roc.interpreter.RocCallable;
+
+import java.util.List;
+
+final class VmBoundMethod implements RocCallable {
+
+    final VmInstance receiver;
+    final VmClosure method;
+
+    VmBoundMethod(VmInstance receiver, VmClosure method) {
+        this.receiver = receiver;
+        this.method = method;
+    }
+
+    @Override
+    public int arity() {
+        return method.prototype.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return method.vm.call(method, receiver, arguments, null);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        return method.vm.call(method, receiver, arguments, paren);
+    }
+
+    @Override
+    public String toString() {
+        return method.toString();
+    }
+}
@@ -0,0 +1,55 @@
+package roc.vm;
+
+import roc.interpreter.Interpreter;
+import roc.interpreter.RocCallable;
+import roc.interpreter.Shape;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class VmClass implements RocCallable {
+
+    final String name;
+    // its own methods over the ones it inherits, copied down before its
+    // own are added, so a lookup is one step however deep the hierarchy
+    private final Map<String, VmClosure> methods = new HashMap<>();
+    VmClosure initializer;
+    // the shape its instances start on
+    final Shape shape = new Shape();
+
+    VmClass(String name) {
+        this.name = name;
+    }
+
+    void inherit(VmClass superclass) {
+        methods.putAll(superclass.methods);
+        initializer = superclass.initializer;
+    }
+
+    void method(String name, VmClosure method) {
+        methods.put(name, method);
+        if (name.equals("init")) initializer = method;
+    }
+
+    VmClosure findMethod(String name) {
+        return methods.get(name);
+    }
+
+    @Override
+    public int arity() {
+        return initializer == null ? 0 : initializer.prototype.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        VmInstance instance = new VmInstance(this);
+        if (initializer != null) initializer.vm.call(initializer, instance, arguments, null);
+        return instance;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
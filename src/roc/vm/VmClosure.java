@@ -0,0 +1,67 @@
+package roc.vm;
+
+import roc.interpreter.Interpreter;
+import roc.lexer.Token;
+import roc.interpreter.RocCallable;
+import roc.jit.CompiledFunction;
+import roc.jit.Jit;
+import roc.memory.Cell;
+
+import java.util.List;
+
+// A function value of the VM. It can still be handed to code the tree
+// walker runs, such as an imported module, which calls it like any other.
+final class VmClosure implements RocCallable {
+
+    final VM vm;
+    final Prototype prototype;
+    final Cell[] upvalues;
+
+    // calls and turns of its loops run in the VM so far, negative once it
+    // was compiled or found it cannot be
+    private long hotness;
+    private CompiledFunction compiled;
+
+    VmClosure(VM vm, Prototype prototype, Cell[] upvalues) {
+        this.vm = vm;
+        this.prototype = prototype;
+        this.upvalues = upvalues;
+    }
+
+    // Counts a call or a turn of a loop, and gives back the code to run
+    // instead once the function got hot, if it could be compiled.
+    CompiledFunction hot() {
+        if (hotness >= 0 && ++hotness >= Jit.THRESHOLD) compile();
+        return compiled;
+    }
+
+    // Compiled once or never, by the tree walker's JIT, which takes the
+    // same functions: ones that capture and declare nothing. Methods are
+    // not, like there.
+    private void compile() {
+        hotness = Long.MIN_VALUE;
+        if (prototype.declaration != null && !prototype.isMethod) {
+            compiled = Jit.compile(vm.interpreter, this, prototype.declaration);
+        }
+    }
+
+    @Override
+    public int arity() {
+        return prototype.arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return vm.call(this, null, arguments, null);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+        return vm.call(this, null, arguments, paren);
+    }
+
+    @Override
+    public String toString() {
+        return "<functia " + prototype.name + ">";
+    }
+}
@@ -0,0 +1,28 @@
+package roc.vm;
+
+import roc.interpreter.ShapedInstance;
+
+final class VmInstance extends ShapedInstance {
+
+    final VmClass clasa;
+
+    VmInstance(VmClass clasa) {
+        super(clasa.shape);
+        this.clasa = clasa;
+    }
+
+    @Override
+    protected Object findMethod(String name) {
+        return clasa.findMethod(name);
+    }
+
+    @Override
+    protected Object bind(Object method) {
+        return new VmBoundMethod(this, (VmClosure) method);
+    }
+
+    @Override
+    public String toString() {
+        return "Instanta a clasei " + clasa.name;
+    }
+}
@@ -0,0 +1,58 @@
+// Methods called in place, and the same methods taken off their instance.
+
+clasa Contor {
+    init(pas) {
+        this.n = 0;
+        this.pas = pas;
+    }
+
+    inc(k) {
+        this.n = this.n + k * this.pas;
+        returneaza this;
+    }
+}
+
+var c = Contor(1);
+pentru (var i = 0; i < 100000; i = i + 1) c.inc(1);
+afiseaza c.n;
+
+// chained calls on what the method returns
+afiseaza Contor(2).inc(1).inc(2).inc(3).n;
+
+// a method taken off keeps its instance
+var d = Contor(10);
+var inc = d.inc;
+inc(1);
+inc(2);
+afiseaza d.n;
+afiseaza inc;
+
+// and can be called from a hot loop, or stored on another instance
+var e = Contor(100);
+e.alt = d.inc;
+pentru (var i = 0; i < 3000; i = i + 1) e.alt(1);
+afiseaza d.n;
+afiseaza e.n;
+
+// a function kept in a field is called without an instance
+fun liber(x) {
+    returneaza x + 1;
+}
+e.liber = liber;
+afiseaza e.liber(41);
+
+// the receiver is evaluated once, before the arguments
+var evaluari = "";
+fun primeste() {
+    evaluari = evaluari + "r";
+    returneaza c;
+}
+fun argument() {
+    evaluari = evaluari + "a";
+    returneaza 0;
+}
+primeste().inc(argument());
+afiseaza evaluari;
+
+// calling something that is not a function
+e.n(1);
@@ -0,0 +1,117 @@
+// Closures keep what they capture, and only that, after their frame is gone.
+
+fun contor() {
+    var n = 0;
+    fun creste() {
+        n = n + 1;
+        returneaza n;
+    }
+    returneaza creste;
+}
+var a = contor();
+var b = contor();
+a();
+a();
+afiseaza a();
+afiseaza b();
+
+// two closures over the same variable see each other's writes
+var citeste = nul;
+var scrie = nul;
+fun pereche(initial) {
+    var valoare = initial;
+    fun get() {
+        returneaza valoare;
+    }
+    fun set(v) {
+        valoare = v;
+    }
+    citeste = get;
+    scrie = set;
+}
+pereche("unu");
+scrie("doi");
+afiseaza citeste();
+
+// a parameter, captured three levels down
+fun adunator(x) {
+    fun mijloc(y) {
+        fun interior(z) {
+            returneaza x + y + z;
+        }
+        returneaza interior;
+    }
+    returneaza mijloc;
+}
+afiseaza adunator(1)(20)(300);
+
+// captured after it changed, and changed after it was captured
+fun ordine() {
+    var s = "inainte";
+    fun arata() {
+        returneaza s;
+    }
+    s = "dupa";
+    returneaza arata;
+}
+afiseaza ordine()();
+
+// frames that are reused must not leak into the closures made in them
+fun simplu(x) {
+    returneaza x * 2;
+}
+fun capteaza(x) {
+    var dublu = simplu(x);
+    fun f() {
+        returneaza dublu;
+    }
+    returneaza f;
+}
+var f1 = capteaza(1);
+var f2 = capteaza(2);
+simplu(100);
+afiseaza f1() + f2();
+
+// recursion that captures on the way down
+fun lant(n, urmator) {
+    fun pas() {
+        daca (urmator == nul) returneaza n;
+        returneaza n + urmator();
+    }
+    daca (n == 0) returneaza pas;
+    returneaza lant(n - 1, pas);
+}
+afiseaza lant(100, nul)();
+
+// closures made in a hot function, each over its own locals
+fun fabrica(i) {
+    var patrat = i * i;
+    var nefolosit = "mare";
+    fun f() {
+        returneaza patrat;
+    }
+    returneaza f;
+}
+var s = 0;
+pentru (var i = 0; i < 5000; i = i + 1) {
+    s = s + fabrica(i)();
+}
+afiseaza s;
+
+// a method closing over its instance
+clasa Cont {
+    init(sold) {
+        this.sold = sold;
+    }
+
+    depune() {
+        fun cu(suma) {
+            this.sold = this.sold + suma;
+            returneaza this.sold;
+        }
+        returneaza cu;
+    }
+}
+var depune = Cont(10).depune();
+depune(5);
+afiseaza depune(7);
@@ -0,0 +1,88 @@
+// 'returneaza', 'evadeaza' and 'continua' from every kind of nesting.
+
+fun primul(n, cautat) {
+    pentru (var i = 0; i < n; i = i + 1) {
+        pentru (var j = 0; j < n; j = j + 1) {
+            daca (i * j == cautat) returneaza i * 100 + j;
+        }
+    }
+    returneaza -1;
+}
+afiseaza primul(10, 12);
+afiseaza primul(10, 1000);
+
+fun impare(n) {
+    var s = 0;
+    var i = 0;
+    cattimp (adevarat) {
+        i = i + 1;
+        daca (i > n) evadeaza;
+        daca (i % 2 == 0) continua;
+        s = s + i;
+    }
+    returneaza s;
+}
+afiseaza impare(9);
+afiseaza impare(100001);
+
+// 'continua' in 'pentru' still runs the step
+var pasi = 0;
+pentru (var i = 0; i < 10; i = i + 1) {
+    daca (i < 8) continua;
+    pasi = pasi + i;
+}
+afiseaza pasi;
+
+// 'evadeaza' leaves only the innermost loop
+var iesiri = 0;
+pentru (var i = 0; i < 3; i = i + 1) {
+    cattimp (adevarat) {
+        iesiri = iesiri + 1;
+        evadeaza;
+    }
+}
+afiseaza iesiri;
+
+// a return inside a block inside a loop inside a block
+fun adanc(x) {
+    {
+        cattimp (x < 100) {
+            {
+                daca (x > 5) {
+                    returneaza "adanc " + "iesit";
+                }
+            }
+            x = x + 1;
+        }
+    }
+    returneaza "la final";
+}
+afiseaza adanc(0);
+afiseaza adanc(200);
+
+// without a value, and from a method
+fun nimic() {
+    returneaza;
+}
+afiseaza nimic();
+
+clasa Cautator {
+    init(limita) {
+        this.limita = limita;
+        returneaza;
+    }
+
+    cauta(pas) {
+        var i = 0;
+        cattimp (adevarat) {
+            i = i + pas;
+            daca (i >= this.limita) returneaza i;
+        }
+    }
+}
+afiseaza Cautator(10).cauta(3);
+var c = Cautator(1000);
+var s = 0;
+pentru (var i = 1; i < 3000; i = i + 1) s = s + c.cauta(i);
+afiseaza s;
+
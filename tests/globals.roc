@@ -0,0 +1,52 @@
+// Globals through the slot table and the per-site caches.
+
+// used by a function before it is defined
+fun citeste() {
+    returneaza tarziu;
+}
+var tarziu = "definit dupa";
+afiseaza citeste();
+
+// defined again, the sites see the new value
+var x = 1;
+fun ia() {
+    returneaza x;
+}
+pentru (var i = 0; i < 3000; i = i + 1) ia();
+var x = "a doua";
+afiseaza ia();
+
+// written from a function, read at the top level
+var contor = 0;
+fun numara() {
+    contor = contor + 1;
+}
+pentru (var i = 0; i < 5000; i = i + 1) numara();
+afiseaza contor;
+
+// a local with the same name hides it
+fun umbra() {
+    var contor = "local";
+    returneaza contor;
+}
+afiseaza umbra();
+afiseaza contor;
+
+// functions and classes are globals too
+fun unu() {
+    returneaza 1;
+}
+fun cheama() {
+    returneaza unu();
+}
+afiseaza cheama();
+fun unu() {
+    returneaza "unu redefinit";
+}
+afiseaza cheama();
+
+// the natives
+afiseaza clock() > 0;
+
+// a global that was never defined
+afiseaza nicaieri;
@@ -0,0 +1,94 @@
+// Functions that get hot enough to be compiled, and what they meet after.
+
+fun aduna(a, b) {
+    returneaza a + b;
+}
+var s = 0;
+pentru (var i = 0; i < 5000; i = i + 1) s = aduna(s, i);
+afiseaza s;
+afiseaza aduna(1.5, 2);
+afiseaza aduna("x", "y");
+afiseaza aduna(9223372036854775807, 1);
+
+// a compiled comparison on values of every kind
+fun egal(a, b) {
+    returneaza a == b;
+}
+var egale = 0;
+pentru (var i = 0; i < 3000; i = i + 1) {
+    daca (egal(i % 3, 1)) egale = egale + 1;
+}
+afiseaza egale;
+afiseaza egal(1, 1.0);
+afiseaza egal("a", "a");
+afiseaza egal(nul, fals);
+afiseaza egal(nul, nul);
+
+// truthiness in compiled branches
+fun adevar(x) {
+    daca (x) returneaza "da";
+    returneaza "nu";
+}
+pentru (var i = 0; i < 3000; i = i + 1) adevar(i);
+afiseaza adevar(0);
+afiseaza adevar(nul);
+afiseaza adevar(fals);
+afiseaza adevar("");
+
+// globals and closures from compiled code
+var global = 1;
+fun cu_global(n) {
+    global = global + n;
+    returneaza global;
+}
+pentru (var i = 0; i < 3000; i = i + 1) cu_global(1);
+afiseaza global;
+var global = "redefinit";
+afiseaza cu_global("!");
+
+fun aplica(f, x) {
+    returneaza f(x);
+}
+fun dublu(x) {
+    returneaza x * 2;
+}
+fun pastreaza(x) {
+    fun f(y) {
+        returneaza x + y;
+    }
+    returneaza f;
+}
+var r = 0;
+pentru (var i = 0; i < 3000; i = i + 1) r = r + aplica(dublu, i) + aplica(pastreaza(i), 1);
+afiseaza r;
+
+// one call, one long loop, compiled from the middle of the call
+fun lung(n) {
+    var s = 0;
+    var i = 0;
+    cattimp (i < n) {
+        s = s + i % 5;
+        i = i + 1;
+    }
+    returneaza s;
+}
+afiseaza lung(300000);
+
+// the loop's locals change kind after it has been compiled
+fun schimba(n) {
+    var x = 0;
+    pentru (var i = 0; i < n; i = i + 1) {
+        daca (i == n - 2) x = x + 0.5;
+        daca (i == n - 1) x = "gata " + "la " + "final";
+        daca (i < n - 2) x = x + 1;
+    }
+    returneaza x;
+}
+afiseaza schimba(100000);
+
+// an error in compiled code reports the line it is on
+fun imparte(a, b) {
+    returneaza a - b;
+}
+pentru (var i = 0; i < 3000; i = i + 1) imparte(i, 1);
+afiseaza imparte("a", 1);
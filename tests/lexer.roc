@@ -0,0 +1,31 @@
+// Names that start like keywords, or are keywords with something added.
+
+var dac = 1;
+var daca1 = 2;
+var dacaa = 3;
+var variabila = 4;
+var si_ = 5;
+var sau2 = 6;
+var funny = 7;
+var clase = 8;
+var in = 9;
+var d = 10;
+var _ = 11;
+var Daca = 12;
+afiseaza dac + daca1 + dacaa + variabila + si_ + sau2 + funny + clase + in + d + _ + Daca;
+
+var adevarat_ = "nu e adevarat";
+afiseaza adevarat_;
+afiseaza adevarat si !fals;
+
+// comments // inside comments, and "quotes" in them
+afiseaza "// nu e comentariu";
+afiseaza "sir
+pe doua linii";
+afiseaza "dupa" + "sir";
+
+// numbers
+afiseaza 007;
+afiseaza 1.25;
+afiseaza 12345678901234567890;
+afiseaza 3 .lungime;
@@ -0,0 +1,102 @@
+// Method lookup through inheritance, and call sites that see many classes.
+
+clasa Animal {
+    init(nume) {
+        this.nume = nume;
+    }
+
+    sunet() {
+        returneaza "...";
+    }
+
+    vorbeste() {
+        returneaza this.nume + " zice " + this.sunet();
+    }
+}
+
+clasa Caine mosteneste Animal {
+    sunet() {
+        returneaza "ham";
+    }
+}
+
+clasa Catel mosteneste Caine {
+    init(nume) {
+        super.init(nume + " mic");
+    }
+
+    sunet() {
+        returneaza super.sunet() + " " + super.sunet();
+    }
+}
+
+clasa Pisica mosteneste Animal {
+    sunet() {
+        returneaza "miau";
+    }
+}
+
+clasa Peste mosteneste Animal {}
+
+clasa Vaca mosteneste Animal {
+    sunet() {
+        returneaza "muu";
+    }
+}
+
+afiseaza Animal("a").vorbeste();
+afiseaza Caine("rex").vorbeste();
+afiseaza Catel("rex").vorbeste();
+afiseaza Pisica("tom").vorbeste();
+afiseaza Peste("nemo").vorbeste();
+
+// one call site, five classes, hot
+var animale = 0;
+fun lungime(a) {
+    returneaza a.sunet();
+}
+var toate = nul;
+pentru (var i = 0; i < 5000; i = i + 1) {
+    var a = nul;
+    var k = i % 5;
+    daca (k == 0) a = Animal("x");
+    daca (k == 1) a = Caine("x");
+    daca (k == 2) a = Catel("x");
+    daca (k == 3) a = Pisica("x");
+    daca (k == 4) a = Vaca("x");
+    daca (lungime(a) == "ham") animale = animale + 1;
+}
+afiseaza animale;
+
+// an inherited method found from a site that first saw the subclass
+fun vorbeste(a) {
+    returneaza a.vorbeste();
+}
+pentru (var i = 0; i < 2000; i = i + 1) vorbeste(Catel("c"));
+afiseaza vorbeste(Peste("p"));
+
+// super resolves from the class the method is in, not the instance's
+clasa A {
+    cine() {
+        returneaza "A";
+    }
+}
+clasa B mosteneste A {
+    cine() {
+        returneaza "B>" + super.cine();
+    }
+}
+clasa C mosteneste B {
+    cine() {
+        returneaza "C>" + super.cine();
+    }
+}
+afiseaza C().cine();
+
+// init returns the instance even when called again
+var catel = Catel("bob");
+afiseaza catel.init("rex") == catel;
+afiseaza catel.nume;
+
+// a missing method
+afiseaza Peste("p").zboara();
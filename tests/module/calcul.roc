@@ -0,0 +1,17 @@
+// Imports numere, which the script has already imported.
+
+din numere;
+
+afiseaza "calcul ruleaza";
+
+var PI = 3.5;
+
+clasa Cerc {
+    init(raza) {
+        this.raza = raza;
+    }
+
+    arie() {
+        returneaza PI * numere.patrat(this.raza);
+    }
+}
@@ -0,0 +1,9 @@
+// Imports the script that imports it.
+
+din ciclu_b;
+
+var nume = "ciclu";
+
+fun vecin() {
+    returneaza ciclu_b.nume;
+}
@@ -0,0 +1,7 @@
+din ciclu;
+
+var nume = "ciclu_b";
+
+fun vecin() {
+    returneaza ciclu.nume;
+}
@@ -0,0 +1,16 @@
+// Imported by modules.roc, and by calcul.roc as well.
+
+afiseaza "numere ruleaza";
+
+var apeluri = 0;
+
+fun patrat(x) {
+    apeluri = apeluri + 1;
+    returneaza x * x;
+}
+
+fun suma(n) {
+    var s = 0;
+    pentru (var i = 1; i <= n; i = i + 1) s = s + i;
+    returneaza s;
+}
@@ -0,0 +1,7 @@
+// A module in a directory of its own.
+
+fun repeta(s, n) {
+    var r = "";
+    pentru (var i = 0; i < n; i = i + 1) r = r + s;
+    returneaza r;
+}
@@ -0,0 +1,4 @@
+// A module that is not there stops the script before it runs.
+
+afiseaza "niciodata";
+din module.lipsa;
@@ -0,0 +1,32 @@
+// Modules imported with 'din', from tests/module/.
+
+din module.numere;
+din module.calcul;
+din module.text.sir;
+
+// nothing in a module runs before something is read from it
+afiseaza "inainte";
+afiseaza numere.patrat(7);
+afiseaza numere.suma(100);
+afiseaza numere.apeluri;
+
+// calcul imports numere too, and gets the same module
+var c = calcul.Cerc(2);
+afiseaza c.arie();
+afiseaza numere.apeluri;
+
+fun arii(n) {
+    var s = 0;
+    pentru (var i = 0; i < n; i = i + 1) s = s + calcul.Cerc(i).arie();
+    returneaza s;
+}
+afiseaza arii(2000);
+afiseaza numere.apeluri;
+
+// modules importing each other
+din module.ciclu;
+afiseaza ciclu.vecin();
+afiseaza ciclu.nume;
+
+afiseaza sir.repeta("ab", 3);
+afiseaza numere;
@@ -0,0 +1,65 @@
+// Integers stay integers, reals stay reals, and the two mix into reals.
+
+afiseaza 7 + 3;
+afiseaza 7 - 10;
+afiseaza 7 * 3;
+afiseaza 7 / 2;
+afiseaza -7 / 2;
+afiseaza 7 % 3;
+afiseaza -7 % 3;
+afiseaza 7.0 / 2;
+afiseaza 7 / 2.0;
+afiseaza 1.5 + 1;
+afiseaza 2 * 0.5;
+afiseaza 0.1 + 0.2;
+afiseaza 1 == 1.0;
+afiseaza 3 < 3.5;
+afiseaza 9223372036854775807;
+afiseaza 9223372036854775808;
+afiseaza -(-9223372036854775807 - 1);
+
+// the same operations on locals the types are known for
+fun integers(a, b) {
+    var s = a + b;
+    var d = a - b;
+    var p = a * b;
+    var q = a / b;
+    var r = a % b;
+    afiseaza s;
+    afiseaza d;
+    afiseaza p;
+    afiseaza q;
+    afiseaza r;
+    returneaza s + d + p + q + r;
+}
+afiseaza integers(17, 5);
+afiseaza integers(17.0, 5);
+
+// a local that starts as an integer and becomes a real
+fun mixed(n) {
+    var x = 1;
+    pentru (var i = 0; i < n; i = i + 1) {
+        daca (i == 3) x = x + 0.5;
+        x = x * 2;
+    }
+    returneaza x;
+}
+afiseaza mixed(3);
+afiseaza mixed(6);
+
+// hot enough to be compiled, then called with reals and strings
+fun aduna(a, b) {
+    returneaza a + b;
+}
+var total = 0;
+pentru (var i = 0; i < 3000; i = i + 1) {
+    total = aduna(total, i);
+}
+afiseaza total;
+afiseaza aduna(0.25, 0.5);
+afiseaza aduna("a", "b");
+afiseaza aduna(1, 0.5);
+
+// dividing by zero
+afiseaza 1.0 / 0;
+afiseaza 1 / 0;
@@ -0,0 +1,51 @@
+// What the optimizer folds or removes has to behave as if it ran.
+
+afiseaza 2 + 3 * 4;
+afiseaza (2 + 3) * 4;
+afiseaza 10 / 4 - 0.5;
+afiseaza "a" + "b" + "c";
+afiseaza 1 < 2 si 3 > 4;
+afiseaza !adevarat == fals;
+afiseaza -(-5);
+afiseaza 4611686018427387904 * 2;
+
+var urme = 0;
+fun urma() {
+    urme = urme + 1;
+    returneaza adevarat;
+}
+
+// operands that are not literals are still evaluated, and only once
+var x = 5;
+afiseaza x * 1;
+afiseaza 1 * x;
+afiseaza x - 0;
+afiseaza 0 + x;
+afiseaza -0.0 + 0;
+afiseaza fals si urma();
+afiseaza adevarat sau urma();
+afiseaza adevarat si urma();
+afiseaza urme;
+
+// branches that can never run are dropped, errors inside them included
+daca (fals) {
+    afiseaza "a" - 1;
+} altfel {
+    afiseaza "altfel";
+}
+cattimp (fals) {
+    afiseaza nedefinit;
+}
+pentru (var i = 0; fals; i = i + 1) {
+    afiseaza "niciodata";
+}
+
+fun dupa() {
+    returneaza 1;
+    afiseaza "niciodata";
+}
+afiseaza dupa();
+
+// an error in a constant is still reported, when it is reached
+afiseaza "inainte";
+afiseaza "a" * 2;
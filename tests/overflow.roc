@@ -0,0 +1,58 @@
+// Integers that no longer fit in a long go on as reals, on every engine.
+
+fun fact(n) {
+    daca (n <= 1) returneaza 1;
+    returneaza n * fact(n - 1);
+}
+afiseaza fact(20);
+afiseaza fact(25);
+afiseaza 10000000000 * 10000000000;
+
+// a local the types say is an integer, overflowing in a loop
+fun iter(n) {
+    var p = 1;
+    pentru (var i = 1; i <= n; i = i + 1) {
+        p = p * i;
+    }
+    returneaza p;
+}
+afiseaza iter(20);
+afiseaza iter(25);
+
+// hot enough to be compiled before it overflows
+fun grow(n) {
+    var p = 1;
+    var i = 0;
+    cattimp (i < n) {
+        p = p * 3;
+        i = i + 1;
+    }
+    daca (p > 1000) p = p - 1;
+    returneaza -p;
+}
+var k = 0;
+var total = 0;
+cattimp (k < 2000) {
+    total = total + grow(10);
+    k = k + 1;
+}
+afiseaza total;
+afiseaza grow(50);
+
+// overflowing halfway through a loop running compiled
+fun climb() {
+    var s = 9223372036854770000;
+    var k = 0;
+    cattimp (k < 5000) {
+        s = s + 2;
+        k = k + 1;
+    }
+    afiseaza s;
+    afiseaza s - 9223372036854770000;
+    daca (s >= 9223372036854775807) afiseaza "depasit";
+}
+climb();
+
+var m = -9223372036854775807 - 1;
+afiseaza -m;
+afiseaza m - 1;
@@ -0,0 +1,72 @@
+// 'pentru' in every shape it can be written in.
+
+pentru (var i = 0; i < 3; i = i + 1) afiseaza i;
+
+var j = 10;
+pentru (; j < 13; j = j + 1) afiseaza j;
+afiseaza j;
+
+pentru (j = 0; j < 2;) {
+    afiseaza "fara pas " + "x";
+    j = j + 1;
+}
+
+var k = 0;
+pentru (;;) {
+    k = k + 1;
+    daca (k == 4) evadeaza;
+}
+afiseaza k;
+
+// the loop variable belongs to the loop
+var i = "global";
+pentru (var i = 0; i < 2; i = i + 1) {
+    var i2 = i * 10;
+    afiseaza i2;
+}
+afiseaza i;
+
+// nested, with the inner loop reading the outer variable
+var perechi = 0;
+pentru (var a = 0; a < 4; a = a + 1) {
+    pentru (var b = a; b < 4; b = b + 1) {
+        perechi = perechi + 1;
+    }
+}
+afiseaza perechi;
+
+// closures made in the body
+var functii = nul;
+fun pastreaza(f, urmator) {
+    fun nod() {
+        returneaza f;
+    }
+    fun rest() {
+        returneaza urmator;
+    }
+    fun lista(alege) {
+        daca (alege) returneaza nod;
+        returneaza rest;
+    }
+    returneaza lista;
+}
+pentru (var n = 0; n < 3; n = n + 1) {
+    var copie = n;
+    fun arata() {
+        afiseaza copie;
+    }
+    functii = pastreaza(arata, functii);
+}
+pentru (var l = functii; l != nul; l = l(fals)()) {
+    l(adevarat)()();
+}
+
+// a long one, hot enough for the compiled and the unboxed paths
+fun suma(n) {
+    var s = 0;
+    pentru (var i = 0; i < n; i = i + 1) {
+        s = s + i;
+    }
+    returneaza s;
+}
+afiseaza suma(100000);
@@ -0,0 +1,20 @@
+// Every engine allows the same number of nested calls, and reports the
+// same error past it instead of running out of Java stack.
+
+fun g(n) {
+    daca (n == 0) returneaza 0;
+    returneaza 1 + g(n - 1);
+}
+
+clasa Numarator {
+    coboara(n) {
+        daca (n == 0) returneaza 0;
+        returneaza 1 + this.coboara(n - 1);
+    }
+}
+
+afiseaza g(1000);
+afiseaza g(90000);
+afiseaza Numarator().coboara(90000);
+afiseaza g(200000);
+afiseaza "nu ajunge aici";
@@ -0,0 +1,63 @@
+#!/bin/sh
+# Runs every script in tests/ on every engine, with and without the JIT,
+# and compares what it prints, errors included, with the .out next to it.
+# The scripts are copied out first so the cache files land elsewhere.
+# Each one also runs twice with the cache, once writing the .rocc and
+# once reading it back, and both have to print the same. The .rocc has
+# to be there exactly when the script compiled.
+#
+#   tests/run.sh [script.roc ...]
+
+cd "$(dirname "$0")/.." || exit 1
+
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+
+javac -d "$work/classes" $(find src -name '*.java') || exit 1
+cp -r tests "$work/tests"
+
+if [ $# -eq 0 ]; then
+    set -- tests/*.roc
+fi
+
+failed=0
+for script in "$@"; do
+    name=$(basename "$script" .roc)
+    expected="tests/$name.out"
+    for engine in ast vm nodes; do
+        for jit in "" --no-jit; do
+            actual=$(cd "$work/tests" && java -cp "$work/classes" roc.Roc --no-cache --engine=$engine $jit "$name.roc" 2>&1)
+            if [ "$actual" != "$(cat "$expected")" ]; then
+                echo "ESUAT $name --engine=$engine $jit"
+                printf '%s\n' "$actual" | diff "$expected" - | head -20
+                failed=1
+            fi
+        done
+    done
+    rm -f "$work/tests/$name.rocc"
+    for run in scrie citeste; do
+        actual=$(cd "$work/tests" && java -cp "$work/classes" roc.Roc "$name.roc" 2>&1)
+        if [ "$actual" != "$(cat "$expected")" ]; then
+            echo "ESUAT $name cache $run"
+            printf '%s\n' "$actual" | diff "$expected" - | head -20
+            failed=1
+        fi
+    done
+    # only a program that compiled is kept
+    compiled=da
+    grep -q '^\[.*\] Eroare' "$expected" && compiled=nu
+    cached=nu
+    [ -f "$work/tests/$name.rocc" ] && cached=da
+    if [ $compiled != $cached ]; then
+        echo "ESUAT $name compilat: $compiled, .rocc scris: $cached"
+        failed=1
+    fi
+done
+
+# the pieces --parallel-lex cuts a script into, down to a few lines each
+java -cp "$work/classes" roc.utils.ScanCheck "$@" || failed=1
+
+if [ $failed -eq 0 ]; then
+    echo "Toate testele au trecut"
+fi
+exit $failed
@@ -0,0 +1,101 @@
+// Fields read and written through sites that see many layouts.
+
+clasa Obiect {}
+
+fun fa(ordine) {
+    var o = Obiect();
+    daca (ordine == 0) {
+        o.a = 1;
+        o.b = 2;
+    } altfel daca (ordine == 1) {
+        o.b = 20;
+        o.a = 10;
+    } altfel daca (ordine == 2) {
+        o.c = 0;
+        o.a = 100;
+        o.b = 200;
+    } altfel daca (ordine == 3) {
+        o.d = 0;
+        o.b = 2000;
+        o.a = 1000;
+    } altfel daca (ordine == 4) {
+        o.e = 0;
+        o.c = 0;
+        o.a = 10000;
+        o.b = 20000;
+    } altfel {
+        o.b = 200000;
+        o.f = 0;
+        o.a = 100000;
+    }
+    returneaza o;
+}
+
+// one site, the same fields at different places, more layouts than it keeps
+fun suma(o) {
+    returneaza o.a + o.b;
+}
+var total = 0;
+pentru (var i = 0; i < 6000; i = i + 1) {
+    total = total + suma(fa(i % 6));
+}
+afiseaza total;
+
+// one write site, moving instances between layouts
+fun pune(o, v) {
+    o.x = v;
+    returneaza o;
+}
+var s = 0;
+pentru (var i = 0; i < 3000; i = i + 1) {
+    var o = pune(fa(i % 6), i);
+    pune(o, o.x + 1);
+    s = s + o.x;
+}
+afiseaza s;
+
+// the same field names on instances of other classes
+clasa Alta {
+    init() {
+        this.b = -1;
+        this.a = -2;
+    }
+}
+afiseaza suma(Alta());
+afiseaza suma(fa(0));
+
+// a field that shadows a method, added after the site saw the method
+clasa Salut {
+    spune() {
+        returneaza "metoda";
+    }
+}
+fun spune(o) {
+    returneaza o.spune();
+}
+var salut = Salut();
+pentru (var i = 0; i < 2000; i = i + 1) spune(salut);
+afiseaza spune(salut);
+fun inlocuitor() {
+    returneaza "camp";
+}
+salut.spune = inlocuitor;
+afiseaza spune(salut);
+afiseaza spune(Salut());
+
+// many instances, all with the same layout
+fun punct(x, y) {
+    var p = Obiect();
+    p.x = x;
+    p.y = y;
+    returneaza p;
+}
+var puncte = 0;
+pentru (var i = 0; i < 200000; i = i + 1) {
+    var p = punct(i, 2 * i);
+    puncte = puncte + p.y - p.x;
+}
+afiseaza puncte;
+
+// a field no instance has
+afiseaza fa(0).z;
@@ -0,0 +1,51 @@
+// Sites that specialize on what they see first, then see something else.
+
+fun op(a, b) {
+    afiseaza a + b;
+    afiseaza a - b;
+    afiseaza a * b;
+    afiseaza a < b;
+    afiseaza a == b;
+}
+fun incalzeste(n) {
+    var s = 0;
+    pentru (var i = 0; i < n; i = i + 1) s = s + i * 2 - 1;
+    returneaza s;
+}
+
+op(7, 2);
+op(7.5, 2);
+op(7, 2.5);
+op(2.5, 2.5);
+op(9223372036854775807, -1);
+afiseaza incalzeste(5000);
+
+// a site that turned generic still does integers right
+fun plus(a, b) {
+    returneaza a + b;
+}
+afiseaza plus("a", 1);
+afiseaza plus(1, "a");
+afiseaza plus(nul, "a");
+afiseaza plus(2, 3);
+afiseaza plus(0.5, 3);
+
+// logic on every kind
+fun si_sau(a, b) {
+    afiseaza a si b;
+    afiseaza a sau b;
+    afiseaza !a;
+}
+si_sau(adevarat, 1);
+si_sau(0, nul);
+si_sau(nul, "b");
+si_sau(fals, fals);
+
+// negating, each kind once
+fun minus(x) {
+    returneaza -x;
+}
+afiseaza minus(5);
+afiseaza minus(-9223372036854775807 - 1);
+afiseaza minus(0.0);
+afiseaza minus("x");
@@ -0,0 +1,84 @@
+// Strings and comments across the places --parallel-lex cuts a script.
+// tests/run.sh also scans every script with roc.utils.ScanCheck.
+
+var a0 = 0; // "ghilimele" in comentariu 0
+var a1 = 1; // "ghilimele" in comentariu 1
+var a2 = 2; // "ghilimele" in comentariu 2
+var a3 = 3; // "ghilimele" in comentariu 3
+var a4 = 4; // "ghilimele" in comentariu 4
+var a5 = 5; // "ghilimele" in comentariu 5
+var lung = "inceput
+linia 0 din sir // nu e comentariu
+linia 1 din sir // nu e comentariu
+linia 2 din sir // nu e comentariu
+linia 3 din sir // nu e comentariu
+linia 4 din sir // nu e comentariu
+linia 5 din sir // nu e comentariu
+linia 6 din sir // nu e comentariu
+linia 7 din sir // nu e comentariu
+linia 8 din sir // nu e comentariu
+linia 9 din sir // nu e comentariu
+linia 10 din sir // nu e comentariu
+linia 11 din sir // nu e comentariu
+linia 12 din sir // nu e comentariu
+linia 13 din sir // nu e comentariu
+linia 14 din sir // nu e comentariu
+linia 15 din sir // nu e comentariu
+linia 16 din sir // nu e comentariu
+linia 17 din sir // nu e comentariu
+linia 18 din sir // nu e comentariu
+linia 19 din sir // nu e comentariu
+linia 20 din sir // nu e comentariu
+linia 21 din sir // nu e comentariu
+linia 22 din sir // nu e comentariu
+linia 23 din sir // nu e comentariu
+linia 24 din sir // nu e comentariu
+linia 25 din sir // nu e comentariu
+linia 26 din sir // nu e comentariu
+linia 27 din sir // nu e comentariu
+linia 28 din sir // nu e comentariu
+linia 29 din sir // nu e comentariu
+sfarsit";
+var x = @;
+afiseaza a0 + 0; // "0
+afiseaza a1 + 1; // "1
+afiseaza a2 + 2; // "2
+afiseaza a3 + 3; // "3
+afiseaza a4 + 4; // "4
+afiseaza a5 + 5; // "5
+afiseaza a0 + 6; // "6
+afiseaza a1 + 7; // "7
+afiseaza a2 + 8; // "8
+afiseaza a3 + 9; // "9
+afiseaza a4 + 10; // "10
+afiseaza a5 + 11; // "11
+afiseaza a0 + 12; // "12
+afiseaza a1 + 13; // "13
+afiseaza a2 + 14; // "14
+afiseaza a3 + 15; // "15
+afiseaza a4 + 16; // "16
+afiseaza a5 + 17; // "17
+afiseaza a0 + 18; // "18
+afiseaza a1 + 19; // "19
+afiseaza a2 + 20; // "20
+afiseaza a3 + 21; // "21
+afiseaza a4 + 22; // "22
+afiseaza a5 + 23; // "23
+afiseaza a0 + 24; // "24
+afiseaza a1 + 25; // "25
+afiseaza a2 + 26; // "26
+afiseaza a3 + 27; // "27
+afiseaza a4 + 28; // "28
+afiseaza a5 + 29; // "29
+afiseaza a0 + 30; // "30
+afiseaza a1 + 31; // "31
+afiseaza a2 + 32; // "32
+afiseaza a3 + 33; // "33
+afiseaza a4 + 34; // "34
+afiseaza a5 + 35; // "35
+afiseaza a0 + 36; // "36
+afiseaza a1 + 37; // "37
+afiseaza a2 + 38; // "38
+afiseaza a3 + 39; // "39
+var neterminat = "de la linia asta
+pana la final
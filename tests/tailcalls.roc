@@ -0,0 +1,65 @@
+// Calls in tail position run at any depth, far past the call limit.
+
+fun numara(n, acc) {
+    daca (n == 0) returneaza acc;
+    returneaza numara(n - 1, acc + 1);
+}
+afiseaza numara(1000000, 0);
+
+fun par(n) {
+    daca (n == 0) returneaza adevarat;
+    returneaza impar(n - 1);
+}
+fun impar(n) {
+    daca (n == 0) returneaza fals;
+    returneaza par(n - 1);
+}
+afiseaza par(1000001);
+afiseaza impar(1000001);
+
+// the arguments are all evaluated before any parameter changes
+fun schimba(a, b, n) {
+    daca (n == 0) returneaza a + "-" + b;
+    returneaza schimba(b, a, n - 1);
+}
+afiseaza schimba("a", "b", 300001);
+
+// a tail call to a closure, each one made by the call before
+fun pasul(n) {
+    fun urmatorul() {
+        returneaza pasul(n - 1);
+    }
+    daca (n == 0) returneaza "gata";
+    returneaza urmatorul();
+}
+afiseaza pasul(200000);
+
+// to a method, and to a class
+clasa Numarator {
+    init(pana) {
+        this.pana = pana;
+    }
+
+    mergi(n) {
+        daca (n >= this.pana) returneaza n;
+        returneaza this.mergi(n + 1);
+    }
+}
+afiseaza Numarator(500000).mergi(0);
+
+clasa Punct {
+    init(x) {
+        this.x = x;
+    }
+}
+fun fa(x) {
+    returneaza Punct(x);
+}
+afiseaza fa(3).x;
+
+// a call that only looks like one in tail position
+fun nu_e_coada(n) {
+    daca (n == 0) returneaza 0;
+    returneaza 1 + nu_e_coada(n - 1);
+}
+afiseaza nu_e_coada(1000);
@@ -0,0 +1,91 @@
+// Locals whose kind the type inference cannot, or must not, assume.
+
+// written by a closure behind the function's back
+fun ascuns() {
+    var n = 0;
+    fun strica() {
+        n = "sir";
+    }
+    pentru (var i = 0; i < 10; i = i + 1) {
+        n = n + 1;
+        daca (i == 5) strica();
+        daca (i == 5) n = n + "!";
+        daca (i == 5) evadeaza;
+    }
+    returneaza n;
+}
+afiseaza ascuns();
+
+// declared without a value, then a number
+fun tarziu(n) {
+    var x;
+    afiseaza x;
+    x = 0;
+    pentru (var i = 0; i < n; i = i + 1) x = x + i;
+    returneaza x;
+}
+afiseaza tarziu(10);
+
+// a number in one branch, a string in the other
+fun ramuri(b) {
+    var x = 1;
+    daca (b) x = "unu";
+    returneaza x + x;
+}
+afiseaza ramuri(fals);
+afiseaza ramuri(adevarat);
+
+// parameters can be anything
+fun negativ(x) {
+    returneaza -x;
+}
+afiseaza negativ(3);
+afiseaza negativ(2.5);
+
+// integer locals in every operator, unboxed, in a hot loop
+fun operatii(n) {
+    var a = 0;
+    var b = 1;
+    var c = 0;
+    pentru (var i = 1; i <= n; i = i + 1) {
+        a = a + i * 3 - i % 4;
+        b = -b;
+        daca (a > c si i != 7) c = a / i;
+        daca (!(i < n)) c = c + b;
+    }
+    afiseaza a;
+    afiseaza b;
+    returneaza c;
+}
+afiseaza operatii(10000);
+
+// reals throughout, with an integer added in
+fun medie(n) {
+    var s = 0.0;
+    pentru (var i = 0; i < n; i = i + 1) s = s + i;
+    returneaza s / n;
+}
+afiseaza medie(1001);
+
+// a captured integer read by a closure after the loop changed it
+fun captura() {
+    var k = 0;
+    fun citeste() {
+        returneaza k;
+    }
+    pentru (var i = 0; i < 5000; i = i + 1) k = k + 2;
+    returneaza citeste();
+}
+afiseaza captura();
+
+// booleans kept in locals
+fun logic(n) {
+    var par = adevarat;
+    var schimbari = 0;
+    pentru (var i = 0; i < n; i = i + 1) {
+        par = !par;
+        daca (par) schimbari = schimbari + 1;
+    }
+    returneaza par == (n % 2 == 0) si schimbari == n / 2;
+}
+afiseaza logic(3000);